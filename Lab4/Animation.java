@@ -0,0 +1,79 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+//A looping sprite animation whose frames are shared by everything that shows it.
+//Frames are loaded once, copied into images the screen can draw quickly, and never changed afterwards.
+//Time comes from one clock for the whole game, advanced once a frame, so an animated entity only keeps
+//the clock time it started at: getFrame(start) works out its frame without allocating anything.
+public class Animation {
+
+	private static double clock;  //seconds, advanced by advance()
+
+	private final BufferedImage[] frames;
+	private final double framesPerSecond;
+
+	//Constructor.  frames must not be changed afterwards.
+	public Animation(BufferedImage[] frames, double framesPerSecond) {
+		this.frames = frames;
+		this.framesPerSecond = framesPerSecond;
+	}
+
+	//Loads every frame of a numbered set of images, such as "wormhole.png" for wormhole1.png, wormhole2.png, ...
+	//through EasyWindow.loadImages, and copies them into images compatible with the screen.
+	//Returns null if there were no frames.
+	public static Animation load(String filename, double framesPerSecond) {
+		BufferedImage[] loaded = EasyWindow.loadImages(filename);
+		if (loaded.length == 0)
+			return null;
+		BufferedImage[] frames = new BufferedImage[loaded.length];
+		for (int i = 0; i < loaded.length; i++)
+			frames[i] = toCompatible(loaded[i]);
+		return new Animation(frames, framesPerSecond);
+	}
+
+	//Copies an image into one in the screen's own pixel format, with transparency, so drawing it needs no conversion.
+	//Without a screen, the copy is a plain ARGB image.
+	public static BufferedImage toCompatible(BufferedImage image) {
+		BufferedImage copy;
+		if (GraphicsEnvironment.isHeadless()) {
+			copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		} else {
+			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration();
+			copy = gc.createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.TRANSLUCENT);
+		}
+		Graphics2D g = copy.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return copy;
+	}
+
+	//Moves the clock for every animation forward.  Call once a frame.
+	public static void advance(double deltaTime) {
+		clock += deltaTime;
+	}
+
+	//Gets the clock, such as to remember as the start of an entity's animation
+	public static double getTime() {
+		return clock;
+	}
+
+	//Gets the frame to show now for an animation started at the given clock time
+	public BufferedImage getFrame(double start) {
+		int frame = (int) ((clock - start) * framesPerSecond) % frames.length;
+		return frames[frame < 0 ? frame + frames.length : frame];
+	}
+
+	//Simple get method
+	public int getFrameCount() {
+		return frames.length;
+	}
+
+	//Simple get method
+	public double getFramesPerSecond() {
+		return framesPerSecond;
+	}
+}
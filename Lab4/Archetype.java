@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+//All the entities in an EcsWorld that have exactly the same components, stored as columns of primitive arrays.
+//Row i of every column belongs to the same entity, so a system can walk straight down the arrays it needs.
+//Columns only exist for fields of components the archetype has; the rest are null.
+public class Archetype {
+
+	private final int mask;  //the components, as EcsWorld component bits
+	private final double[][] doubles = new double[EcsWorld.DOUBLE_FIELDS][];
+	private final int[][] ints = new int[EcsWorld.INT_FIELDS][];
+	private int[] ids;
+	private boolean[] dead;
+	private int count;
+
+	//Constructor
+	public Archetype(int mask) {
+		this.mask = mask;
+		int capacity = 16;
+		for (int f = 0; f < EcsWorld.DOUBLE_FIELDS; f++)
+			if ((EcsWorld.DOUBLE_FIELD_COMPONENTS[f] & mask) != 0)
+				doubles[f] = new double[capacity];
+		for (int f = 0; f < EcsWorld.INT_FIELDS; f++)
+			if ((EcsWorld.INT_FIELD_COMPONENTS[f] & mask) != 0)
+				ints[f] = new int[capacity];
+		ids = new int[capacity];
+		dead = new boolean[capacity];
+	}
+
+	//Adds a row for an entity, with every field 0, and returns it
+	int add(int id) {
+		if (count == ids.length)
+			grow(count * 2);
+		ids[count] = id;
+		dead[count] = false;
+		for (double[] column : doubles)
+			if (column != null)
+				column[count] = 0;
+		for (int[] column : ints)
+			if (column != null)
+				column[count] = 0;
+		return count++;
+	}
+
+	//Removes a row by moving the last row into it.  Returns the id of the entity that moved, or -1 if it was the last row.
+	int remove(int row) {
+		int last = --count;
+		if (row == last)
+			return -1;
+		ids[row] = ids[last];
+		dead[row] = dead[last];
+		for (double[] column : doubles)
+			if (column != null)
+				column[row] = column[last];
+		for (int[] column : ints)
+			if (column != null)
+				column[row] = column[last];
+		return ids[row];
+	}
+
+	private void grow(int capacity) {
+		for (int f = 0; f < doubles.length; f++)
+			if (doubles[f] != null)
+				doubles[f] = Arrays.copyOf(doubles[f], capacity);
+		for (int f = 0; f < ints.length; f++)
+			if (ints[f] != null)
+				ints[f] = Arrays.copyOf(ints[f], capacity);
+		ids = Arrays.copyOf(ids, capacity);
+		dead = Arrays.copyOf(dead, capacity);
+	}
+
+	//True if this archetype has every component in the mask
+	public boolean has(int components) {
+		return (mask & components) == components;
+	}
+
+	//Gets the column of a double field, such as EcsWorld.X.  Only valid until entities are next added.
+	public double[] getDoubles(int field) {
+		return doubles[field];
+	}
+
+	//Gets the column of an int field, such as EcsWorld.TARGET.  Only valid until entities are next added.
+	public int[] getInts(int field) {
+		return ints[field];
+	}
+
+	//The entity id of each row
+	public int[] getIds() {
+		return ids;
+	}
+
+	//Rows marked to be removed by the next EcsWorld.removeDead()
+	public boolean[] getDead() {
+		return dead;
+	}
+
+	//Simple get method
+	public int getMask() {
+		return mask;
+	}
+
+	//How many rows there are
+	public int getCount() {
+		return count;
+	}
+}
@@ -13,6 +13,9 @@ public class Asteroid extends Entity {
 	double yVel;        //The y velocity of the asteroid
 	double speed; //The speed of the asteroid.  I recommend setting it randomly.  It should be high, around 100.
 	Entity target;        //The target of the asteroid (will be the wormhole)
+	TargetIndex targets;  //When not null, the asteroid homes on whichever of these targets is nearest
+	GravityField gravity; //When not null, the asteroid falls under gravity instead of flying straight at its target
+	int body;             //The asteroid's body in gravity
 	
 	
 	//Loads the asteroid image.  WIll only be called once by Lab4
@@ -30,7 +33,13 @@ public class Asteroid extends Entity {
 	public Asteroid(double xCenter, double yCenter, double width, double height, Entity target) {
 		super(xCenter, yCenter, width, height);
 		this.target = target ;
-		speed = Math.random() * 50 + 50;
+		speed = SimRandom.nextDouble(50, 100);
+	}
+	
+	//Constructor for an asteroid that homes on the nearest of many targets
+	public Asteroid(double xCenter, double yCenter, double width, double height, TargetIndex targets) {
+		this(xCenter, yCenter, width, height, targets.nearest(xCenter, yCenter));
+		this.targets = targets;
 	}
 	
 	
@@ -41,11 +50,10 @@ public class Asteroid extends Entity {
 	  return new Point2D.Double(dx / distance, dy / distance);
 	}
 	
-	//Will tell if asteroid intersects the center of Entity e. 
-	//You'll want to make a new Point class out of e.getXCenter() and e.getYCenter() for it.  
-	//Rectangle has a method called contains to do this for you, if you call getHitbox() first
+	//Will tell if asteroid intersects the center of Entity e at any point during this step,
+	//so a fast asteroid (or a long step) can't jump right over its target.
 	public boolean collision(Entity e) {
-		return getHitbox().contains(e.getXCenter(), e.getYCenter());
+		return sweptContains(e);
 		
 	}
 	
@@ -54,12 +62,27 @@ public class Asteroid extends Entity {
 	//Will set kill to true if the collision method returns true, 
 	//where the Entity e parameter is the asteroid's target.
 	public void update(EasyWindow ew) {
+		update(ew, ew.getDeltaTime());
+	}
+	
+	//Same as update(ew), but moves as if deltaTime seconds had passed
+	@Override
+	public void update(EasyWindow ew, double deltaTime) {
+		
+		retarget();
+		if (target == null)
+			return;
 		
-		xVel = getDirection().getX() * speed;
-		yVel =  getDirection().getY() * speed;
+		if (gravity != null) {
+			xVel += gravity.getAccelX(body) * deltaTime;
+			yVel += gravity.getAccelY(body) * deltaTime;
+		} else {
+			xVel = getDirection().getX() * speed;
+			yVel =  getDirection().getY() * speed;
+		}
 		
-		setXCenter(getXCenter() +  xVel * ew.getDeltaTime());
-		setYCenter(getYCenter() +  yVel * ew.getDeltaTime());
+		setXCenter(getXCenter() +  xVel * deltaTime);
+		setYCenter(getYCenter() +  yVel * deltaTime);
 		
 		
 		//double xPos = xVel * ew.getDeltaTime();
@@ -73,6 +96,23 @@ public class Asteroid extends Entity {
 		
 	}
 	
+	//Switches target to whichever of targets is nearest now, if the asteroid has a TargetIndex
+	void retarget() {
+		if (targets != null) {
+			Entity nearest = targets.nearest(getXCenter(), getYCenter());
+			if (nearest != null)
+				target = nearest;
+		}
+	}
+	
+	//Makes the asteroid fall under gravity, using the acceleration of the given body after each gravity.solve(),
+	//or fly straight at its target again if gravity is null.
+	//An asteroid that starts falling keeps the velocity it had.
+	public void setGravity(GravityField gravity, int body) {
+		this.gravity = gravity;
+		this.body = body;
+	}
+	
 	//draws the asteroid image
 	@Override
 	public void draw(Graphics g) {
@@ -0,0 +1,213 @@
+import java.util.List;
+
+//Moves many asteroids at once, with their positions, velocities and targets copied into plain double arrays.
+//Asteroid.update does the same math one object at a time; here each step is a simple loop over arrays,
+//with no objects or branches in the way, which the JIT can turn into SIMD instructions on its own.
+//Each frame: load the asteroids (after the targets have moved), step, then store the results back.
+//Each asteroid moves for its own time, so far ones updated less often can catch up like they do in Asteroid.update.
+//Run it with "java AsteroidKernel [count]" to compare how many asteroids per second each way can move.
+public class AsteroidKernel {
+
+	private Asteroid[] asteroids = new Asteroid[256];
+	private double[] xs = new double[256];
+	private double[] ys = new double[256];
+	private double[] lastXs = new double[256];
+	private double[] lastYs = new double[256];
+	private double[] xVels = new double[256];
+	private double[] yVels = new double[256];
+	private double[] speeds = new double[256];
+	private double[] halfWidths = new double[256];
+	private double[] halfHeights = new double[256];
+	private double[] targetXs = new double[256];
+	private double[] targetYs = new double[256];
+	private double[] lastTargetXs = new double[256];
+	private double[] lastTargetYs = new double[256];
+	private double[] deltaTimes = new double[256];  //seconds each asteroid moves this step
+	private boolean[] hits = new boolean[256];
+	private int count;
+
+	//Copies every asteroid that flies straight at its target (not falling under gravity, and not dead) into the arrays,
+	//each to be moved deltaTime seconds
+	public void load(List<Entity> entities, double deltaTime) {
+		clear();
+		for (Entity e : entities)
+			if (handles(e))
+				add((Asteroid) e, deltaTime);
+	}
+
+	//Empties the arrays, to add asteroids one at a time
+	public void clear() {
+		count = 0;
+	}
+
+	//Copies one asteroid into the arrays, to be moved deltaTime seconds, such as a far one catching up on the frames it sat out.
+	//Asteroids that are dead, falling under gravity or have nothing to aim for are left out.
+	public void add(Asteroid a, double deltaTime) {
+		if (a.getKill() || a.gravity != null)
+			return;
+		a.retarget();
+		if (a.target == null) {
+			a.setPendingTime(0);
+			return;
+		}
+		if (count == asteroids.length)
+			grow(count * 2);
+		asteroids[count] = a;
+		xs[count] = a.getXCenter();
+		ys[count] = a.getYCenter();
+		lastXs[count] = a.getLastXCenter();
+		lastYs[count] = a.getLastYCenter();
+		speeds[count] = a.speed;
+		halfWidths[count] = a.getWidth() / 2;
+		halfHeights[count] = a.getHeight() / 2;
+		targetXs[count] = a.target.getXCenter();
+		targetYs[count] = a.target.getYCenter();
+		lastTargetXs[count] = a.target.getLastXCenter();
+		lastTargetYs[count] = a.target.getLastYCenter();
+		deltaTimes[count] = deltaTime;
+		count++;
+	}
+
+	//True if the kernel moves this entity, so the usual update should skip it
+	public static boolean handles(Entity e) {
+		return e instanceof Asteroid && ((Asteroid) e).gravity == null;
+	}
+
+	//Moves every loaded asteroid toward its target for the time it was added with, then checks which ones hit it
+	public void step() {
+		int n = count;
+		double[] x = xs;
+		double[] y = ys;
+		double[] vx = xVels;
+		double[] vy = yVels;
+		double[] s = speeds;
+		double[] tx = targetXs;
+		double[] ty = targetYs;
+		double[] dt = deltaTimes;
+		for (int i = 0; i < n; i++) {
+			double dx = tx[i] - x[i];
+			double dy = ty[i] - y[i];
+			double scale = s[i] / Math.max(Math.sqrt(dx * dx + dy * dy), 0.000001);
+			vx[i] = dx * scale;
+			vy[i] = dy * scale;
+			x[i] += vx[i] * dt[i];
+			y[i] += vy[i] * dt[i];
+		}
+		//Same test as Entity.sweptContains: the target's path relative to the asteroid, against its hitbox
+		for (int i = 0; i < n; i++) {
+			double x1 = lastTargetXs[i] - lastXs[i];
+			double y1 = lastTargetYs[i] - lastYs[i];
+			double mx = (tx[i] - x[i]) - x1;
+			double my = (ty[i] - y[i]) - y1;
+			double tMin = 0;
+			double tMax = 1;
+			boolean hit = true;
+			if (mx == 0) {
+				hit = x1 >= -halfWidths[i] && x1 <= halfWidths[i];
+			} else {
+				double t1 = (-halfWidths[i] - x1) / mx;
+				double t2 = (halfWidths[i] - x1) / mx;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			}
+			if (my == 0) {
+				hit &= y1 >= -halfHeights[i] && y1 <= halfHeights[i];
+			} else {
+				double t1 = (-halfHeights[i] - y1) / my;
+				double t2 = (halfHeights[i] - y1) / my;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			}
+			hits[i] = hit && tMin <= tMax;
+		}
+	}
+
+	//Writes the new positions and velocities back into the asteroids, and kills the ones that hit their target
+	public void store() {
+		for (int i = 0; i < count; i++) {
+			Asteroid a = asteroids[i];
+			a.setXCenter(xs[i]);
+			a.setYCenter(ys[i]);
+			a.xVel = xVels[i];
+			a.yVel = yVels[i];
+			a.setPendingTime(0);
+			if (hits[i])
+				a.setKill(true);
+			asteroids[i] = null;
+		}
+	}
+
+	//How many asteroids were loaded
+	public int size() {
+		return count;
+	}
+
+	private void grow(int size) {
+		Asteroid[] bigger = new Asteroid[size];
+		System.arraycopy(asteroids, 0, bigger, 0, asteroids.length);
+		asteroids = bigger;
+		xs = grow(xs, size);
+		ys = grow(ys, size);
+		lastXs = grow(lastXs, size);
+		lastYs = grow(lastYs, size);
+		xVels = grow(xVels, size);
+		yVels = grow(yVels, size);
+		speeds = grow(speeds, size);
+		halfWidths = grow(halfWidths, size);
+		halfHeights = grow(halfHeights, size);
+		targetXs = grow(targetXs, size);
+		targetYs = grow(targetYs, size);
+		lastTargetXs = grow(lastTargetXs, size);
+		lastTargetYs = grow(lastTargetYs, size);
+		deltaTimes = grow(deltaTimes, size);
+		boolean[] biggerHits = new boolean[size];
+		System.arraycopy(hits, 0, biggerHits, 0, hits.length);
+		hits = biggerHits;
+	}
+
+	private static double[] grow(double[] array, int size) {
+		double[] bigger = new double[size];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	//Compares moving asteroids one object at a time with Asteroid.update against moving them with the kernel.
+	//The asteroids start far from the wormhole so none of them die while it runs.
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int steps = 200;
+		double deltaTime = 1 / 60.0;
+		java.util.ArrayList<Entity> entities = new java.util.ArrayList<Entity>();
+		Wormhole target = new Wormhole(0, 0, 100, 100);
+		target.setParked(true);
+		for (int i = 0; i < n; i++)
+			entities.add(new Asteroid(100000 + SimRandom.nextDouble() * 10000, 100000 + SimRandom.nextDouble() * 10000, 50, 50, target));
+		AsteroidKernel kernel = new AsteroidKernel();
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int s = 0; s < steps; s++)
+				for (Entity e : entities) {
+					e.beginStep();
+					e.update(null, deltaTime);
+				}
+			double objects = (double) n * steps / ((System.nanoTime() - start) / 1000000000.0);
+			start = System.nanoTime();
+			for (int s = 0; s < steps; s++) {
+				for (Entity e : entities)
+					e.beginStep();
+				kernel.load(entities, deltaTime);
+				kernel.step();
+				kernel.store();
+			}
+			double whole = (double) n * steps / ((System.nanoTime() - start) / 1000000000.0);
+			kernel.load(entities, deltaTime);
+			start = System.nanoTime();
+			for (int s = 0; s < steps; s++)
+				kernel.step();
+			double stepOnly = (double) n * steps / ((System.nanoTime() - start) / 1000000000.0);
+			kernel.store();
+			System.out.printf("Objects: %.1fM/s   Kernel with load and store: %.1fM/s   Kernel step alone: %.1fM/s%n",
+					objects / 1e6, whole / 1e6, stepOnly / 1e6);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * AudioSink
+ *
+ * Where a {@link SoftwareMixer} sends its mixed audio.
+ * Audio always arrives as 16-bit signed little-endian PCM in the mixer's format.
+ *
+ */
+public interface AudioSink {
+
+	/**
+	 * Writes mixed audio.  May block until the audio can be accepted, which is what paces a running mixer.
+	 * @param buffer The PCM bytes.
+	 * @param offset Where the bytes start in buffer.
+	 * @param length How many bytes to write.
+	 * @throws IOException If the audio could not be written.
+	 */
+	void write(byte[] buffer, int offset, int length) throws IOException;
+
+	/**
+	 * Finishes writing and releases whatever the sink holds.
+	 * @throws IOException If the sink could not be closed cleanly.
+	 */
+	void close() throws IOException;
+
+	/**
+	 * Plays audio through a SourceDataLine.
+	 */
+	public static class LineSink implements AudioSink {
+		private final SourceDataLine line;
+
+		/**
+		 * Opens a line on the default audio device.
+		 * @param format The format of the audio that will be written.
+		 * @param bufferBytes How many bytes the line buffers.  Smaller is lower latency but easier to underrun.
+		 * @throws LineUnavailableException If there is no audio device that can play the format.
+		 */
+		public LineSink(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+			line = AudioSystem.getSourceDataLine(format);
+			line.open(format, bufferBytes);
+			line.start();
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			line.write(buffer, offset, length);
+		}
+
+		@Override
+		public void close() {
+			line.drain();
+			line.stop();
+			line.close();
+		}
+	}
+
+	/**
+	 * Writes raw PCM to an OutputStream.  Never blocks on anything but the stream.
+	 */
+	public static class StreamSink implements AudioSink {
+		private final OutputStream out;
+
+		public StreamSink(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a WAV file.  The header is filled in with the final length when the sink is closed.
+	 */
+	public static class WavFileSink implements AudioSink {
+		private static final int HEADER_BYTES = 44;
+
+		private final File file;
+		private final AudioFormat format;
+		private final OutputStream out;
+		private long dataBytes;
+
+		public WavFileSink(String filename, AudioFormat format) throws IOException {
+			this.file = new File(filename);
+			this.format = format;
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			out.write(new byte[HEADER_BYTES]);
+			dataBytes = 0;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+			dataBytes += length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+			int channels = format.getChannels();
+			int sampleRate = (int) format.getSampleRate();
+			int bits = format.getSampleSizeInBits();
+			int blockAlign = channels * bits / 8;
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.writeBytes("RIFF");
+				raf.writeInt(Integer.reverseBytes((int) (dataBytes + HEADER_BYTES - 8)));
+				raf.writeBytes("WAVEfmt ");
+				raf.writeInt(Integer.reverseBytes(16));
+				raf.writeShort(Short.reverseBytes((short) 1));
+				raf.writeShort(Short.reverseBytes((short) channels));
+				raf.writeInt(Integer.reverseBytes(sampleRate));
+				raf.writeInt(Integer.reverseBytes(sampleRate * blockAlign));
+				raf.writeShort(Short.reverseBytes((short) blockAlign));
+				raf.writeShort(Short.reverseBytes((short) bits));
+				raf.writeBytes("data");
+				raf.writeInt(Integer.reverseBytes((int) dataBytes));
+			} finally {
+				raf.close();
+			}
+		}
+	}
+
+	/**
+	 * Throws the audio away.  Used when there is no audio device.
+	 * Given a format, each write waits until as much real time has passed as the audio written so far would take to play,
+	 * the way a real line would, so a mixer running on its own thread keeps to real time instead of spinning.
+	 */
+	public static class NullSink implements AudioSink {
+		private static final long MAX_BEHIND_NANO = 100000000L;  //how far behind real time writes can fall before the clock starts over
+
+		private final double bytesPerSecond;
+		private long startNano;
+		private long bytesWritten;
+
+		/**
+		 * Creates a NullSink that never waits, for a mixer stepped by hand.
+		 */
+		public NullSink() {
+			bytesPerSecond = 0;
+		}
+
+		/**
+		 * Creates a NullSink that takes as long to write to as playing the audio would.
+		 * @param format The format of the audio that will be written.
+		 */
+		public NullSink(AudioFormat format) {
+			bytesPerSecond = format.getFrameRate() * format.getFrameSize();
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			if (bytesPerSecond <= 0)
+				return;
+			long now = System.nanoTime();
+			long due = startNano + (long) (bytesWritten / bytesPerSecond * 1e9);
+			if (bytesWritten == 0 || now - due > MAX_BEHIND_NANO) {
+				//Like a line that ran dry, start counting again from now rather than rushing to catch up
+				startNano = now;
+				bytesWritten = 0;
+			}
+			bytesWritten += length;
+			due = startNano + (long) (bytesWritten / bytesPerSecond * 1e9);
+			while ((now = System.nanoTime()) < due)
+				LockSupport.parkNanos(due - now);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
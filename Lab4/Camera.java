@@ -0,0 +1,96 @@
+import java.awt.Graphics;
+
+//The part of the world that is on screen.
+//x and y are the world position of the top-left corner of the screen.
+//Used to skip drawing entities that can't be seen, and to find entities so far away
+//that they can be updated less often.
+public class Camera {
+
+	private double x;       //world x of the left edge of the view
+	private double y;       //world y of the top edge of the view
+	private double width;   //width of the view
+	private double height;  //height of the view
+
+	//Constructor
+	public Camera(double x, double y, double width, double height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	//True if any part of the entity's hitbox is inside the view
+	public boolean isVisible(Entity e) {
+		return distanceOutside(e) == 0;
+	}
+
+	//How far the entity's hitbox is from the edge of the view, or 0 if they overlap
+	public double distanceOutside(Entity e) {
+		double halfW = e.getWidth() / 2;
+		double halfH = e.getHeight() / 2;
+		double dx = Math.max(0, Math.max(x - (e.getXCenter() + halfW), (e.getXCenter() - halfW) - (x + width)));
+		double dy = Math.max(0, Math.max(y - (e.getYCenter() + halfH), (e.getYCenter() - halfH) - (y + height)));
+		if (dx == 0)
+			return dy;
+		if (dy == 0)
+			return dx;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	//Moves g so that drawing at world coordinates lands in the right place on screen.
+	//Undo it with end(g) once the world has been drawn.
+	public void begin(Graphics g) {
+		g.translate(-getScreenOffsetX(), -getScreenOffsetY());
+	}
+
+	//Undoes begin(g)
+	public void end(Graphics g) {
+		g.translate(getScreenOffsetX(), getScreenOffsetY());
+	}
+
+	//The view's left edge, rounded to a whole pixel
+	public int getScreenOffsetX() {
+		return (int) Math.floor(x);
+	}
+
+	//The view's top edge, rounded to a whole pixel
+	public int getScreenOffsetY() {
+		return (int) Math.floor(y);
+	}
+
+	//Converts a position on screen, such as the mouse, to a world position
+	public double toWorldX(double screenX) {
+		return screenX + getScreenOffsetX();
+	}
+
+	//Converts a position on screen, such as the mouse, to a world position
+	public double toWorldY(double screenY) {
+		return screenY + getScreenOffsetY();
+	}
+
+	//Simple set method
+	public void setPosition(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	//Simple get method
+	public double getX() {
+		return x;
+	}
+
+	//Simple get method
+	public double getY() {
+		return y;
+	}
+
+	//Simple get method
+	public double getWidth() {
+		return width;
+	}
+
+	//Simple get method
+	public double getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+
+//Opens thousands of loopback connections to one hosting EasyWindow in each connection mode, and reports
+//how many threads, how much heap and how much CPU the host uses as they pile up and while they sit idle.
+//Every client sends the host one Integer and gets one back, to check each connection really works.
+//The clients are plain sockets, so all the threads counted belong to the host.
+//Exits with 1 if any mode breaks a limit below: a connection that doesn't work, more threads or heap per connection
+//than the mode should need, idle CPU that grows with the connections, or threads left behind after closing.
+//Usage: java ConnectionLoadTest [connections] [port]
+public class ConnectionLoadTest {
+
+	private static final String[] MODE_NAMES = { "threads", "pooled", "virtual" };
+	private static final int STEPS = 4;  //times to report while the connections are opened
+	private static final long IDLE_MILLIS = 1000;
+
+	//Limits.  Threads and pooled both block a platform thread on every connection, so they may use one each;
+	//virtual threads share a few carrier threads, so the host's platform threads should barely grow.
+	private static final double[] MAX_THREADS_PER_CONNECTION = { 1.05, 1.05, 0.05 };
+	private static final double MAX_HEAP_KB_PER_CONNECTION = 64;
+	private static final double MAX_IDLE_CPU_PERCENT = 10;  //of one core, with every connection open and idle
+
+	private static boolean virtualThreads = true;
+	private static int failures;
+
+	//What report measured at one point
+	private static class Sample {
+		int threads;
+		double heapMB;
+		double idleCpuPercent;  //-1 if this JVM can't tell
+	}
+
+	//One client end of a connection
+	private static class Client {
+		final Socket socket;
+		final ObjectOutputStream out;
+		ObjectInputStream in;
+
+		Client(int port) throws IOException {
+			socket = new Socket("127.0.0.1", port);
+			out = new ObjectOutputStream(socket.getOutputStream());
+			out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5100;
+		System.out.printf("%,d connections in each mode, %d cores%n", connections, Runtime.getRuntime().availableProcessors());
+		try {
+			java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			System.out.println("No virtual threads before Java 21, so \"virtual\" runs pooled and is held to the pooled limits");
+			virtualThreads = false;
+		}
+		System.out.printf("Limits: threads per connection %.2f (threads, pooled) and %.2f (virtual), %.0f KB heap per connection, "
+				+ "%.0f%% idle CPU%n", MAX_THREADS_PER_CONNECTION[0], MAX_THREADS_PER_CONNECTION[2], MAX_HEAP_KB_PER_CONNECTION,
+				MAX_IDLE_CPU_PERCENT);
+		System.out.printf("%-8s %12s %8s %10s %10s%n", "mode", "connections", "threads", "heap MB", "idle CPU");
+		double[] threadsPer = new double[MODE_NAMES.length];
+		double[] heapPer = new double[MODE_NAMES.length];
+		for (int mode = 0; mode < MODE_NAMES.length; mode++)
+			run(mode, connections, port + mode, threadsPer, heapPer);
+
+		System.out.printf("%-8s %12s %10s%n", "mode", "threads/conn", "heap KB/conn");
+		for (int mode = 0; mode < MODE_NAMES.length; mode++)
+			System.out.printf("%-8s %12.3f %10.1f%n", MODE_NAMES[mode], threadsPer[mode], heapPer[mode]);
+		if (failures > 0) {
+			System.out.println(failures + " limits broken");
+			System.exit(1);
+		}
+		System.out.println("All modes within limits");
+	}
+
+	//Runs one mode, and fills in its threads and heap KB per connection
+	private static void run(int mode, int connections, int port, double[] threadsPer, double[] heapPer) throws Exception {
+		EasyWindow host = new EasyWindow("ConnectionLoadTest", false, EasyWindow.MODE_PACK, true);
+		host.setConnectionMode(mode);
+		host.host(port);
+		ArrayList<Client> clients = new ArrayList<Client>(connections);
+		Sample empty = report(mode, 0);
+		Sample full = empty;
+		for (int step = 1; step <= STEPS; step++) {
+			int target = connections * step / STEPS;
+			while (clients.size() < target)
+				clients.add(new Client(port));
+			waitFor(host, target);
+			full = report(mode, target);
+		}
+		threadsPer[mode] = (full.threads - empty.threads) / (double) connections;
+		heapPer[mode] = (full.heapMB - empty.heapMB) * 1024 / connections;
+		double maxThreads = MAX_THREADS_PER_CONNECTION[mode == EasyWindow.CONNECTION_VIRTUAL && !virtualThreads ? EasyWindow.CONNECTION_POOLED : mode];
+		check(mode, threadsPer[mode] <= maxThreads, String.format("%.3f threads per connection, limit %.2f", threadsPer[mode], maxThreads));
+		check(mode, heapPer[mode] <= MAX_HEAP_KB_PER_CONNECTION,
+				String.format("%.1f KB heap per connection, limit %.0f", heapPer[mode], MAX_HEAP_KB_PER_CONNECTION));
+		check(mode, full.idleCpuPercent <= MAX_IDLE_CPU_PERCENT,
+				String.format("%.1f%% idle CPU with %,d connections, limit %.0f%%", full.idleCpuPercent, connections, MAX_IDLE_CPU_PERCENT));
+
+		//Every connection sends the host one Integer, and the host sends one back on each
+		for (int i = 0; i < clients.size(); i++) {
+			clients.get(i).out.writeObject(i);
+			clients.get(i).out.flush();
+		}
+		int received = 0;
+		long deadline = System.currentTimeMillis() + 30000;
+		String[] hosted = host.getConnections();
+		boolean[] done = new boolean[hosted.length];
+		while (received < hosted.length && System.currentTimeMillis() < deadline) {
+			for (int c = 0; c < hosted.length; c++)
+				if (!done[c] && host.receive(hosted[c]) != null) {
+					done[c] = true;
+					received++;
+					host.send(hosted[c], c);
+				}
+			Thread.sleep(1);
+		}
+		int answered = 0;
+		for (Client client : clients) {
+			client.socket.setSoTimeout(5000);
+			try {
+				client.in = new ObjectInputStream(client.socket.getInputStream());
+				if (client.in.readObject() instanceof Integer)
+					answered++;
+			} catch (IOException e) {
+			}
+		}
+		System.out.printf("%-8s %,d of %,d received by the host, %,d answered%n", MODE_NAMES[mode], received, connections, answered);
+		check(mode, received == connections && answered == connections, "not every connection worked");
+
+		host.closeAllConnections();
+		for (Client client : clients)
+			client.socket.close();
+		Thread.sleep(500);
+		int left = ManagementFactory.getThreadMXBean().getThreadCount();
+		System.out.printf("%-8s closed: %d threads left%n", MODE_NAMES[mode], left);
+		check(mode, left <= empty.threads, String.format("%d threads left after closing, %d before opening", left, empty.threads));
+	}
+
+	//Counts and prints a broken limit
+	private static void check(int mode, boolean ok, String message) {
+		if (!ok) {
+			System.out.println(MODE_NAMES[mode] + " FAILED: " + message);
+			failures++;
+		}
+	}
+
+	//Waits until the host has accepted the given number of connections
+	private static void waitFor(EasyWindow host, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (host.getConnections().length < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+	}
+
+	//Prints and returns the live platform threads, the heap in use after a collection, and the CPU the process uses while idle
+	private static Sample report(int mode, int connections) throws InterruptedException {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		System.gc();
+		Runtime rt = Runtime.getRuntime();
+		double heap = (rt.totalMemory() - rt.freeMemory()) / 1048576.0;
+		long cpuStart = processCpuNanos();
+		long start = System.nanoTime();
+		Thread.sleep(IDLE_MILLIS);
+		long cpu = processCpuNanos() - cpuStart;
+		Sample sample = new Sample();
+		sample.threads = threads.getThreadCount();
+		sample.heapMB = heap;
+		sample.idleCpuPercent = cpuStart < 0 ? -1 : 100.0 * cpu / (System.nanoTime() - start);
+		String idle = cpuStart < 0 ? "n/a" : String.format("%.1f%%", sample.idleCpuPercent);
+		System.out.printf("%-8s %,12d %8d %10.1f %10s%n", MODE_NAMES[mode], connections, sample.threads, heap, idle);
+		return sample;
+	}
+
+	//Gets the CPU time used by the whole process, or -1 if this JVM can't tell
+	private static long processCpuNanos() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean)
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+		return -1;
+	}
+}
@@ -0,0 +1,165 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+//Collects debug shapes (rectangles, lines and points) during a frame, then draws them all at once
+//straight into the pixels of an int ARGB image.  With many thousands of hitboxes this is much cheaper
+//than a g.drawRect per shape, which goes through all of Java2D's checks every single call.
+//Shapes are stored in plain int arrays that are reused from frame to frame.
+public class DebugDraw {
+
+	private static final int RECT_INTS = 5;   //x, y, width, height, color
+	private static final int LINE_INTS = 5;   //x1, y1, x2, y2, color
+	private static final int POINT_INTS = 3;  //x, y, color
+
+	private int[] rects = new int[RECT_INTS * 256];
+	private int rectCount;
+	private int[] lines = new int[LINE_INTS * 64];
+	private int lineCount;
+	private int[] points = new int[POINT_INTS * 256];
+	private int pointCount;
+	private int color = 0xFFFFFFFF;  //white, like a new Graphics
+	private int offsetX;
+	private int offsetY;
+
+	//Sets the color of the shapes added from now on, as 0xAARRGGBB.  Shapes are drawn opaque.
+	public void setColor(int argb) {
+		color = argb | 0xFF000000;
+	}
+
+	//Moves every shape added from now on by (-x, -y), such as to draw in world coordinates with a camera
+	public void setOffset(int x, int y) {
+		offsetX = x;
+		offsetY = y;
+	}
+
+	//Adds the outline of a rectangle, covering the same pixels as g.drawRect(x, y, width, height)
+	public void addRect(int x, int y, int width, int height) {
+		if (width < 0 || height < 0)
+			return;
+		if ((rectCount + 1) * RECT_INTS > rects.length)
+			rects = grow(rects);
+		int i = rectCount++ * RECT_INTS;
+		rects[i] = x - offsetX;
+		rects[i + 1] = y - offsetY;
+		rects[i + 2] = width;
+		rects[i + 3] = height;
+		rects[i + 4] = color;
+	}
+
+	//Adds a line, covering the same pixels as g.drawLine(x1, y1, x2, y2)
+	public void addLine(int x1, int y1, int x2, int y2) {
+		if ((lineCount + 1) * LINE_INTS > lines.length)
+			lines = grow(lines);
+		int i = lineCount++ * LINE_INTS;
+		lines[i] = x1 - offsetX;
+		lines[i + 1] = y1 - offsetY;
+		lines[i + 2] = x2 - offsetX;
+		lines[i + 3] = y2 - offsetY;
+		lines[i + 4] = color;
+	}
+
+	//Adds a single pixel
+	public void addPoint(int x, int y) {
+		if ((pointCount + 1) * POINT_INTS > points.length)
+			points = grow(points);
+		int i = pointCount++ * POINT_INTS;
+		points[i] = x - offsetX;
+		points[i + 1] = y - offsetY;
+		points[i + 2] = color;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] bigger = new int[array.length * 2];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	//How many shapes are waiting to be drawn
+	public int getShapeCount() {
+		return rectCount + lineCount + pointCount;
+	}
+
+	//Forgets every shape without drawing it
+	public void clear() {
+		rectCount = 0;
+		lineCount = 0;
+		pointCount = 0;
+	}
+
+	//Draws every shape into the image, then forgets them.
+	//The image must be TYPE_INT_ARGB or TYPE_INT_RGB, like the canvas in Lab4.
+	public void flush(BufferedImage target) {
+		int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+		int w = target.getWidth();
+		int h = target.getHeight();
+		for (int r = 0; r < rectCount; r++) {
+			int i = r * RECT_INTS;
+			drawRect(pixels, w, h, rects[i], rects[i + 1], rects[i + 2], rects[i + 3], rects[i + 4]);
+		}
+		for (int l = 0; l < lineCount; l++) {
+			int i = l * LINE_INTS;
+			drawLine(pixels, w, h, lines[i], lines[i + 1], lines[i + 2], lines[i + 3], lines[i + 4]);
+		}
+		for (int p = 0; p < pointCount; p++) {
+			int i = p * POINT_INTS;
+			int x = points[i];
+			int y = points[i + 1];
+			if (x >= 0 && y >= 0 && x < w && y < h)
+				pixels[y * w + x] = points[i + 2];
+		}
+		clear();
+	}
+
+	//The outline is two clipped horizontal runs and two clipped vertical runs
+	private static void drawRect(int[] pixels, int w, int h, int x, int y, int width, int height, int c) {
+		int x2 = x + width;
+		int y2 = y + height;
+		if (x2 < 0 || y2 < 0 || x >= w || y >= h)
+			return;
+		int left = Math.max(0, x);
+		int right = Math.min(w - 1, x2);
+		int top = Math.max(0, y);
+		int bottom = Math.min(h - 1, y2);
+		if (y >= 0)
+			fillRun(pixels, y * w + left, right - left + 1, c);
+		if (y2 < h && y2 != y)
+			fillRun(pixels, y2 * w + left, right - left + 1, c);
+		if (x >= 0)
+			for (int row = top; row <= bottom; row++)
+				pixels[row * w + x] = c;
+		if (x2 < w && x2 != x)
+			for (int row = top; row <= bottom; row++)
+				pixels[row * w + x2] = c;
+	}
+
+	private static void fillRun(int[] pixels, int start, int length, int c) {
+		for (int i = start, end = start + length; i < end; i++)
+			pixels[i] = c;
+	}
+
+	//Bresenham, skipping pixels that fall outside the image
+	private static void drawLine(int[] pixels, int w, int h, int x1, int y1, int x2, int y2, int c) {
+		if ((x1 < 0 && x2 < 0) || (y1 < 0 && y2 < 0) || (x1 >= w && x2 >= w) || (y1 >= h && y2 >= h))
+			return;
+		int dx = Math.abs(x2 - x1);
+		int dy = -Math.abs(y2 - y1);
+		int sx = x1 < x2 ? 1 : -1;
+		int sy = y1 < y2 ? 1 : -1;
+		int err = dx + dy;
+		while (true) {
+			if (x1 >= 0 && y1 >= 0 && x1 < w && y1 < h)
+				pixels[y1 * w + x1] = c;
+			if (x1 == x2 && y1 == y2)
+				break;
+			int e2 = 2 * err;
+			if (e2 >= dy) {
+				err += dy;
+				x1 += sx;
+			}
+			if (e2 <= dx) {
+				err += dx;
+				y1 += sy;
+			}
+		}
+	}
+}
@@ -16,8 +16,14 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
 import java.awt.event.WindowListener;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -27,11 +33,16 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -40,11 +51,6 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 
 import javax.imageio.ImageIO;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -85,29 +91,45 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  public static int MODE_FULLSCREEN = 5;
  public static int MODE_FULLSCREEN_STRETCH = 6;
  
+ public static int CONNECTION_THREADS = 0;
+ public static int CONNECTION_POOLED = 1;
+ public static int CONNECTION_VIRTUAL = 2;
+ 
+ public static int PRESENT_SYNC = 0;
+ public static int PRESENT_ASYNC = 1;
+ 
 
  
  private static int MOUSE_BUTTON_COUNT = 5;
  private static int KEYBOARD_KEY_COUNT = 128;
  private static boolean QUEUED_INPUT = true; // If true, makes EasyWindow more resistant to lag.
  private static int DEFAULT_MODE = MODE_PACK;
+ private static int DEFAULT_CONNECTION_MODE = CONNECTION_THREADS;
+ private static int RECORDING_MAGIC = 0x45575243; // "EWRC"
+ private static int RECORDING_VERSION = 1;
+ private static int RECORD_MOUSE = 1;
+ private static int RECORD_BUTTONS = 2;
+ private static int RECORD_KEYS = 4;
+ private static int RECORD_WHEEL = 8;
+ private static int RECORD_QUIT = 16;
+ private static int RECORD_TEXT_SENT = 32;
 
  private EasyWindow lastState;
  private JFrame frame;
  private boolean quit;
  private boolean focus;
- private double lastTime;
+ private long lastTime;
  private double deltaTime;
  private int mouseX;
  private int mouseY;
  private int mouseWheelDelta;
- private int imageWidth;
- private int imageHeight;
+ private volatile int imageWidth;
+ private volatile int imageHeight;
  private int stretchWidth;
  private int stretchHeight;
  private int displayMode;
- private int xBorder;
- private int yBorder;
+ private volatile int xBorder;
+ private volatile int yBorder;
  
  private boolean firstUpdate;
  private boolean strongQuit;
@@ -119,13 +141,35 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  private boolean[] keysEnd;
  private LinkedList<Boolean>[] keyUpdates;
  private LinkedList<Boolean>[] mouseButtonsUpdates;
- private HashMap<String, ServerSocket> serverSockets;
- private HashMap<String, Socket> externalSockets;
- private HashMap<String, ObjectInputStream> externalSocketInputStreams;
- private HashMap<String, ObjectOutputStream> externalSocketOutputStreams;
- private HashMap<String, LinkedList<Object>> receivedObjects;
- private ArrayList<Clip> soundClips;
- private BufferedImage contents;
+ private Map<String, ServerSocket> serverSockets;
+ private Map<String, Socket> externalSockets;
+ private Map<String, ObjectInputStream> externalSocketInputStreams;
+ private Map<String, ObjectOutputStream> externalSocketOutputStreams;
+ private Map<String, LinkedList<Object>> receivedObjects;
+ private int connectionMode;
+ private boolean quitHandled;  //true once quitting has closed every connection and the software mixer, so it's only done once
+ private ExecutorService connectionExecutor;
+ private SoundEngine soundEngine;
+ private SoftwareMixer softwareMixer;
+ private FramePacer framePacer;
+ private FramePresenter framePresenter;
+ private ImageScaler imageScaler;
+ private SharedFramebuffer framebufferOut;
+ private FrameStreamer frameStreamer;
+ private DataOutputStream recordOut;
+ private long recordedFrames;
+ private int recordedMouseX;
+ private int recordedMouseY;
+ private int recordedButtons;
+ private long[] recordedKeys;
+ private DataInputStream replayIn;
+ private boolean replaying;
+ private long replayedFrames;
+ private int replayMouseX;
+ private int replayMouseY;
+ private boolean[] replayButtonsLive;
+ private boolean[] replayKeysLive;
+ private volatile BufferedImage contents;
  
  private char activeTextSendKey = 13;
  private char activeTextCancelKey = 27;
@@ -175,27 +219,42 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   * Creates a new EasyWindow with the given name and other parameters - chances are, you should be using a simpler constructor than this.
   * strongQuit is true in other constructors, and will make the program end abruptly when you close the window.
   * pack is true in the other constructors and guarantees that the window is not stretched larger than your image.
+  * @param windowName The name for the window
+  * @param strongQuit If set to true, will guarantee the program closes when you hit X.
+  * @param displayMode The mode for the window (shrink to fit, stretch, etc.  Refer to constants MODE_...
+  */
+ public EasyWindow(String windowName, boolean strongQuit, int displayMode)
+ {
+  this(windowName, strongQuit, displayMode, false);
+ }
+ 
+ /**
+  * Creates a new EasyWindow with the given name and other parameters - chances are, you should be using a simpler constructor than this.
+  * A headless EasyWindow never creates a frame, so it works where there is no display.  It gets no live input; use {@link startReplay} to feed it recorded input instead.
   * Suppresses unchecked warnings where keyUpdates and mouseButtonUpdates arrays are made.
   * @param windowName The name for the window
   * @param strongQuit If set to true, will guarantee the program closes when you hit X.
   * @param displayMode The mode for the window (shrink to fit, stretch, etc.  Refer to constants MODE_...
+  * @param headless If set to true, no frame is created.
   */
  @SuppressWarnings("unchecked")
- public EasyWindow(String windowName, boolean strongQuit, int displayMode)
+ public EasyWindow(String windowName, boolean strongQuit, int displayMode, boolean headless)
  {  
+  BufferedImage bi = generateDefaultImage();
+  contents = bi;
+  imageWidth = bi.getWidth();
+  imageHeight = bi.getHeight();
+  this.strongQuit = strongQuit;
   //Set up Frame
+  if(!headless)
+  {
   frame = new JFrame(windowName);
-  this.strongQuit = strongQuit;
   if(strongQuit)
    frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
   else
    frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
   frame.addWindowListener(this);
   frame.addComponentListener(this);
-  BufferedImage bi = generateDefaultImage();
-  contents = bi;
-  imageWidth = bi.getWidth();
-  imageHeight = bi.getHeight();
   JLabel label = new JLabel(new ImageIcon(bi));
   label.addMouseListener(this);
   label.setHorizontalAlignment(JLabel.LEFT);
@@ -210,6 +269,9 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   frame.pack();
 
   frame.setVisible(true);
+  }
+  else
+   frame = null;
   
   //Initialize Vital Variables
   lastState = null;
@@ -234,15 +296,18 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
    mouseButtonsUpdates[i] = new LinkedList<Boolean>();
   for(int i = 0; i < keyUpdates.length; i++)
    keyUpdates[i] = new LinkedList<Boolean>();
-  serverSockets = new HashMap<String, ServerSocket>();
-  externalSockets = new HashMap<String, Socket>();
-  externalSocketInputStreams = new HashMap<String, ObjectInputStream>();
-  externalSocketOutputStreams = new HashMap<String, ObjectOutputStream>();
-  receivedObjects = new HashMap<String, LinkedList<Object>>();
+  serverSockets = new ConcurrentHashMap<String, ServerSocket>();
+  externalSockets = new ConcurrentHashMap<String, Socket>();
+  externalSocketInputStreams = new ConcurrentHashMap<String, ObjectInputStream>();
+  externalSocketOutputStreams = new ConcurrentHashMap<String, ObjectOutputStream>();
+  receivedObjects = new ConcurrentHashMap<String, LinkedList<Object>>();
+  connectionMode = DEFAULT_CONNECTION_MODE;
+  connectionExecutor = null;
   keysLive = new boolean[KEYBOARD_KEY_COUNT];
   keysBegin = new boolean[KEYBOARD_KEY_COUNT];
   keysEnd = new boolean[KEYBOARD_KEY_COUNT];
-  soundClips = new ArrayList<Clip>();
+  soundEngine = null;
+  softwareMixer = null;
   xBorder = 0;
   yBorder = 0;
   
@@ -317,8 +382,8 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   }
   activeTextSent = ew.activeTextSent;
   
-  double thisTime = System.nanoTime();
-  double deltaTimeNano = thisTime - ew.lastTime;
+  long thisTime = System.nanoTime();
+  long deltaTimeNano = thisTime - ew.lastTime;
   deltaTime = deltaTimeNano / 1000000000.0;
   lastTime = thisTime;
   ew.lastTime = thisTime;
@@ -530,7 +595,14 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public void update(BufferedImage bi)
  {
-  setImage(bi);
+  if(framebufferOut != null)
+   framebufferOut.write(bi);
+  if(frameStreamer != null)
+   frameStreamer.stream(bi);
+  if(framePresenter != null && frame != null)
+   framePresenter.submit(bi);
+  else
+   setImage(bi);
   if(QUEUED_INPUT)
   {
   for(int i = 0; i < keyUpdates.length; i++)
@@ -539,7 +611,14 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
    keysLive[i] = keyUpdates[i].remove();
   }
   }
+  if(framePacer != null && !replaying)
+   framePacer.waitForNextFrame();
+  EasyWindow previousState = lastState;
   lastState = new EasyWindow(this);
+  if(replayIn != null)
+   replayFrameHelper(previousState);
+  if(recordOut != null)
+   recordFrameHelper();
   mouseWheelDelta = 0;
   activeTextSent = false;
   firstUpdate = false;
@@ -563,6 +642,397 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   return lastState.mouseWheelDelta;
  }
  
+ /**
+  * Sets how {@link update} shows frames.
+  * PRESENT_SYNC - update scales and shows the frame before it returns.  This is the default.
+  * PRESENT_ASYNC - update copies the frame and returns right away.  The newest copied frame is scaled and shown later on the Swing event thread, and frames the screen could not keep up with are dropped.
+  * @param mode The new mode to use, as an int constant (one of the PRESENTs).
+  */
+ public void setPresentMode(int mode)
+ {
+  if(mode == PRESENT_ASYNC && framePresenter == null)
+   framePresenter = new FramePresenter(this);
+  else if(mode != PRESENT_ASYNC)
+   framePresenter = null;
+ }
+ 
+ /**
+  * Gets the current present mode.  See setPresentMode for details on the various modes.
+  * @return an int representing the current present mode.
+  */
+ public int getPresentMode()
+ {
+  return framePresenter == null ? PRESENT_SYNC : PRESENT_ASYNC;
+ }
+ 
+ /**
+  * Gets the FramePresenter used in PRESENT_ASYNC mode, for its presented and dropped frame counts.
+  * @return The FramePresenter, or null in PRESENT_SYNC mode.
+  */
+ public FramePresenter getFramePresenter()
+ {
+  return framePresenter;
+ }
+ 
+ /**
+  * FOR INTERNAL USE ONLY - Shows a frame handed over by the FramePresenter.  Called on the Swing event thread.
+  * @param bi The BufferedImage to display.
+  */
+ void presentImage(BufferedImage bi)
+ {
+  setImage(bi);
+ }
+ 
+ /**
+  * Starts writing every frame given to {@link update} into a memory-mapped file as well, for another process to read with no copying (see {@link SharedFramebuffer}).
+  * Frames of any other size than the one given are skipped.  Works in headless windows too.
+  * @param filename The file to write to.  It is overwritten.
+  * @param width The width of the frames.
+  * @param height The height of the frames.
+  * @param slots How many frames the file holds before the oldest is written over.
+  * @return Returns true if the file was created, or false if it could not be.
+  */
+ public boolean startFramebufferOutput(String filename, int width, int height, int slots)
+ {
+  stopFramebufferOutput();
+  try {
+   framebufferOut = new SharedFramebuffer(filename, width, height, slots);
+  } catch (IOException e) {
+   System.err.println("Failed to start framebuffer output: " + filename);
+   e.printStackTrace();
+   return false;
+  }
+  return true;
+ }
+ 
+ /**
+  * Stops writing frames to the framebuffer file.  Does nothing if not writing them.
+  */
+ public void stopFramebufferOutput()
+ {
+  if(framebufferOut == null)
+   return;
+  framebufferOut.close();
+  framebufferOut = null;
+ }
+ 
+ /**
+  * Gets the SharedFramebuffer frames are being written to, for its frame counts.
+  * @return The SharedFramebuffer, or null if startFramebufferOutput has not been called.
+  */
+ public SharedFramebuffer getFramebufferOutput()
+ {
+  return framebufferOut;
+ }
+ 
+ /**
+  * Starts sending every frame given to {@link update} to every connection, as the tiles that changed since the last frame (see {@link FrameStreamer}).
+  * Watch them with a {@link FrameViewer} connected to a port this window is hosting on.
+  * @param tileSize The width and height of the tiles, in pixels, such as FrameStreamer.DEFAULT_TILE_SIZE.
+  */
+ public void startFrameStreaming(int tileSize)
+ {
+  stopFrameStreaming();
+  frameStreamer = new FrameStreamer(this, tileSize);
+ }
+ 
+ /**
+  * Stops sending frames to connections, once the frame being sent (if any) is done.  Does nothing if not streaming.
+  */
+ public void stopFrameStreaming()
+ {
+  if(frameStreamer == null)
+   return;
+  frameStreamer.close();
+  frameStreamer = null;
+ }
+ 
+ /**
+  * Gets the FrameStreamer sending frames, for how many bytes it sends and how long it takes.
+  * @return The FrameStreamer, or null if startFrameStreaming has not been called.
+  */
+ public FrameStreamer getFrameStreamer()
+ {
+  return frameStreamer;
+ }
+ 
+ /**
+  * Caps how many times per second {@link update} returns, so a loop does not spin a whole core.
+  * update sleeps (and spins for the last fraction of a millisecond) until the next frame is due.  Frames that run too long are counted as skipped rather than rushed.
+  * @param fps The target number of updates per second, or 0 to let update return as fast as it can.
+  */
+ public void setTargetFps(double fps)
+ {
+  if(fps <= 0)
+   framePacer = null;
+  else if(framePacer == null)
+   framePacer = new FramePacer(fps);
+  else
+   framePacer.setTargetFps(fps);
+ }
+ 
+ /**
+  * Gets the FramePacer holding update to the target frame rate, for its skipped frame count and other statistics.
+  * @return The FramePacer, or null if there is no target frame rate.
+  */
+ public FramePacer getFramePacer()
+ {
+  return framePacer;
+ }
+ 
+ /**
+  * Starts recording the input of every update to a file: the delta-time, mouse position, mouse buttons, mouse wheel, keys, and quit.
+  * Only what changed since the previous update is written, so recordings stay small.  Play one back with {@link startReplay}.
+  * @param filename The file to record to.  It is overwritten.
+  * @return Returns true if recording started, or false if the file could not be opened.
+  */
+ public synchronized boolean startRecording(String filename)
+ {
+  stopRecording();
+  try {
+   recordOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+   recordOut.writeInt(RECORDING_MAGIC);
+   recordOut.writeInt(RECORDING_VERSION);
+  } catch (IOException e) {
+   System.err.println("Failed to start recording: " + filename);
+   e.printStackTrace();
+   recordOut = null;
+   return false;
+  }
+  recordedFrames = 0;
+  recordedKeys = new long[(KEYBOARD_KEY_COUNT + 63) / 64];
+  return true;
+ }
+ 
+ /**
+  * Stops recording and closes the recording file.  Does nothing if not recording.
+  */
+ public synchronized void stopRecording()
+ {
+  if(recordOut == null)
+   return;
+  try {
+   recordOut.close();
+  } catch (IOException e) {
+   System.err.println("Failed to finish recording");
+   e.printStackTrace();
+  }
+  recordOut = null;
+ }
+ 
+ /**
+  * Gets whether or not input is being recorded.
+  * @return True if startRecording was called and stopRecording has not been.
+  */
+ public boolean getRecording()
+ {
+  return recordOut != null;
+ }
+ 
+ /**
+  * Starts playing back a recording made by {@link startRecording}.
+  * From the next update on, the delta-time and all input come from the recording instead of from the clock, mouse, and keyboard.
+  * Updates no longer wait on anything, so a replay runs as fast as the program can go.  When the recording runs out, quit is set to true.
+  * @param filename The file to play back.
+  * @return Returns true if the replay started, or false if the file could not be read.
+  */
+ public boolean startReplay(String filename)
+ {
+  stopReplay();
+  try {
+   replayIn = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+   if(replayIn.readInt() != RECORDING_MAGIC || replayIn.readInt() != RECORDING_VERSION)
+   {
+    System.err.println("Not a recording: " + filename);
+    stopReplay();
+    return false;
+   }
+  } catch (IOException e) {
+   System.err.println("Failed to start replay: " + filename);
+   e.printStackTrace();
+   stopReplay();
+   return false;
+  }
+  replaying = true;
+  replayedFrames = 0;
+  replayMouseX = 0;
+  replayMouseY = 0;
+  replayButtonsLive = new boolean[MOUSE_BUTTON_COUNT];
+  replayKeysLive = new boolean[KEYBOARD_KEY_COUNT];
+  return true;
+ }
+ 
+ /**
+  * Stops playing back a recording, going back to live input.  Does nothing if not replaying.
+  */
+ public void stopReplay()
+ {
+  replaying = false;
+  if(replayIn == null)
+   return;
+  try {
+   replayIn.close();
+  } catch (IOException e) {
+  }
+  replayIn = null;
+ }
+ 
+ /**
+  * Gets whether or not a recording is being played back.
+  * @return True if input currently comes from a recording.
+  */
+ public boolean getReplaying()
+ {
+  return replaying;
+ }
+ 
+ /**
+  * Gets how many updates have been played back from the current recording.
+  * @return The number of replayed updates.
+  */
+ public long getReplayedFrames()
+ {
+  return replayedFrames;
+ }
+ 
+ /**
+  * FOR INTERNAL USE ONLY - Writes the input of the update that just happened to the recording.
+  */
+ private synchronized void recordFrameHelper()
+ {
+  if(recordOut == null)
+   return;
+  int mx = getMouseX();
+  int my = getMouseY();
+  int buttons = 0;
+  for(int i = 0; i < MOUSE_BUTTON_COUNT; i++)
+   if(lastState.mouseButtonsLive[i])
+    buttons |= 1 << i;
+  long[] keys = new long[recordedKeys.length];
+  for(int i = 0; i < KEYBOARD_KEY_COUNT; i++)
+   if(lastState.keysLive[i])
+    keys[i / 64] |= 1L << (i % 64);
+  boolean first = recordedFrames == 0;
+  int flags = 0;
+  if(first || mx != recordedMouseX || my != recordedMouseY)
+   flags |= RECORD_MOUSE;
+  if(first || buttons != recordedButtons)
+   flags |= RECORD_BUTTONS;
+  if(first || !Arrays.equals(keys, recordedKeys))
+   flags |= RECORD_KEYS;
+  if(lastState.mouseWheelDelta != 0)
+   flags |= RECORD_WHEEL;
+  if(lastState.quit)
+   flags |= RECORD_QUIT;
+  if(lastState.activeTextSent)
+   flags |= RECORD_TEXT_SENT;
+  try {
+   recordOut.writeDouble(lastState.deltaTime);
+   recordOut.writeByte(flags);
+   if((flags & RECORD_MOUSE) != 0)
+   {
+    recordOut.writeInt(mx);
+    recordOut.writeInt(my);
+   }
+   if((flags & RECORD_BUTTONS) != 0)
+    recordOut.writeByte(buttons);
+   if((flags & RECORD_KEYS) != 0)
+    for(long k : keys)
+     recordOut.writeLong(k);
+   if((flags & RECORD_WHEEL) != 0)
+    recordOut.writeInt(lastState.mouseWheelDelta);
+  } catch (IOException e) {
+   System.err.println("Failed to record input");
+   e.printStackTrace();
+   stopRecording();
+   return;
+  }
+  recordedFrames++;
+  recordedMouseX = mx;
+  recordedMouseY = my;
+  recordedButtons = buttons;
+  recordedKeys = keys;
+ }
+ 
+ /**
+  * FOR INTERNAL USE ONLY - Ends the recording with an update that quits, and closes it.
+  * Used when closing the window is about to end the program, before the program's own loop can see quit and stop recording.
+  */
+ private synchronized void quitRecordingHelper()
+ {
+  if(recordOut == null)
+   return;
+  try {
+   recordOut.writeDouble(0);
+   recordOut.writeByte(RECORD_QUIT);
+  } catch (IOException e) {
+   System.err.println("Failed to record input");
+   e.printStackTrace();
+  }
+  stopRecording();
+ }
+ 
+ /**
+  * FOR INTERNAL USE ONLY - Replaces the input of the update that just happened with the next update of the recording.
+  * @param previousState The state of the update before this one, used to find which buttons and keys were just pressed or released.
+  */
+ private void replayFrameHelper(EasyWindow previousState)
+ {
+  int flags;
+  try {
+   lastState.deltaTime = replayIn.readDouble();
+   flags = replayIn.readUnsignedByte();
+   if((flags & RECORD_MOUSE) != 0)
+   {
+    replayMouseX = replayIn.readInt();
+    replayMouseY = replayIn.readInt();
+   }
+   if((flags & RECORD_BUTTONS) != 0)
+   {
+    int buttons = replayIn.readUnsignedByte();
+    for(int i = 0; i < MOUSE_BUTTON_COUNT; i++)
+     replayButtonsLive[i] = (buttons & (1 << i)) != 0;
+   }
+   if((flags & RECORD_KEYS) != 0)
+   {
+    for(int k = 0; k < (KEYBOARD_KEY_COUNT + 63) / 64; k++)
+    {
+     long bits = replayIn.readLong();
+     for(int i = k * 64; i < Math.min(KEYBOARD_KEY_COUNT, k * 64 + 64); i++)
+      replayKeysLive[i] = (bits & (1L << (i % 64))) != 0;
+    }
+   }
+   lastState.mouseWheelDelta = (flags & RECORD_WHEEL) != 0 ? replayIn.readInt() : 0;
+  } catch (EOFException e) {
+   stopReplay();
+   setQuit(true);
+   return;
+  } catch (IOException e) {
+   System.err.println("Failed to replay input");
+   e.printStackTrace();
+   stopReplay();
+   setQuit(true);
+   return;
+  }
+  for(int i = 0; i < MOUSE_BUTTON_COUNT; i++)
+  {
+   lastState.mouseButtonsLive[i] = replayButtonsLive[i];
+   lastState.mouseButtonsBegin[i] = replayButtonsLive[i] && !previousState.mouseButtonsLive[i];
+   lastState.mouseButtonsEnd[i] = !replayButtonsLive[i] && previousState.mouseButtonsLive[i];
+  }
+  for(int i = 0; i < KEYBOARD_KEY_COUNT; i++)
+  {
+   lastState.keysLive[i] = replayKeysLive[i];
+   lastState.keysBegin[i] = replayKeysLive[i] && !previousState.keysLive[i];
+   lastState.keysEnd[i] = !replayKeysLive[i] && previousState.keysLive[i];
+  }
+  lastState.activeTextSent = (flags & RECORD_TEXT_SENT) != 0;
+  if((flags & RECORD_QUIT) != 0)
+   setQuit(true);
+  lastState.lastTime = previousState.lastTime + (long) (lastState.deltaTime * 1000000000.0);
+  replayedFrames++;
+ }
+ 
  /**
   * Gets whether or not the given key is pressed.
   * @param c The char representing the key.
@@ -659,8 +1129,10 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public int getMouseX()
  {
+  if(replaying)
+   return replayMouseX;
   double tempXBorder = 0;
-  if(displayMode == MODE_FULLSCREEN)
+  if(displayMode == MODE_FULLSCREEN || displayMode == MODE_SCALE)
    tempXBorder = xBorder;
   double percent = ((lastState.mouseX * 1.0) - tempXBorder) / (imageWidth - tempXBorder * 2);
   return Math.min(contents.getWidth(), Math.max(0, (int)(percent * contents.getWidth())));
@@ -672,8 +1144,10 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public int getMouseY()
  {
+  if(replaying)
+   return replayMouseY;
   double tempYBorder = 0;
-  if(displayMode == MODE_FULLSCREEN)
+  if(displayMode == MODE_FULLSCREEN || displayMode == MODE_SCALE)
    tempYBorder = yBorder;
   double percent = ((lastState.mouseY * 1.0) - tempYBorder) / (imageHeight - tempYBorder * 2);
   return Math.min(contents.getHeight(), Math.max(0, (int)(percent * contents.getHeight())));
@@ -686,7 +1160,9 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public boolean getQuit()
  {
-  if(strongQuit && lastState.quit)
+  if(lastState.quit && !quitHandled)
+   quitHelper();
+  if(strongQuit && lastState.quit && frame != null)
    frame.dispose();
   return lastState.quit;
  }
@@ -700,6 +1176,23 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   quit = newQuit;
   if(lastState != null)
    lastState.quit = newQuit;
+  quitHandled = false;
+  if(newQuit)
+   quitHelper();
+ }
+ 
+ /**
+  * Closes every connection and stops the software mixer, once the window quits.
+  */
+ private void quitHelper()
+ {
+  quitHandled = true;
+  closeAllConnections();
+  if(softwareMixer != null)
+  {
+   softwareMixer.close();
+   softwareMixer = null;
+  }
  }
  
  /**
@@ -726,7 +1219,7 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public double getLastTime()
  {
-  return lastState.lastTime / 1000000000;
+  return lastState.lastTime / 1000000000.0;
  }
  
  /**
@@ -744,6 +1237,8 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public String getTitle()
  {
+  if(frame == null)
+   return "";
   return frame.getTitle();
  }
  
@@ -753,7 +1248,8 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public void setTitle(String name)
  {
-  frame.setTitle(name);
+  if(frame != null)
+   frame.setTitle(name);
  }
  
  /**
@@ -773,6 +1269,8 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
   */
  public void setFullscreen(boolean full)
  {
+  if(frame == null)
+   return;
   if(full && !frame.isUndecorated())
   {
    frame.dispose();
@@ -790,72 +1288,96 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  
  /**
   * Plays a sound with the given filename until the sound ends.
+  * The file is only read the first time it is played.  If too many sounds are already playing, the oldest one is cut off.
   * @param filename The filename of the sound to play.
   */
  public void playSound(String filename)
  {
-  File file = new File(filename);
-  try {
-   AudioInputStream aistream = AudioSystem.getAudioInputStream(file);
-   Clip clip = AudioSystem.getClip();
-        clip.open(aistream);
-        clip.start();
-   
-        aistream.close();
-  } catch (UnsupportedAudioFileException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return;
-  } catch (IOException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return;
-  } catch (LineUnavailableException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return;
-  }
+  if(softwareMixer != null)
+   softwareMixer.play(getSoundEngine().load(filename), 1, 0, false);
+  else
+   getSoundEngine().play(filename);
+ }
+ 
+ /**
+  * Plays a sound with the given filename through the software mixer, with a volume and pan.
+  * @param filename The filename of the sound to play.
+  * @param gain The volume, where 1 is unchanged.
+  * @param pan Where the sound is, from -1 (left) to 1 (right).
+  * @return An id identifying this sound.  Use stopLoopSound with this id to stop it early.
+  */
+ public int playSound(String filename, double gain, double pan)
+ {
+  return getSoftwareMixer().play(getSoundEngine().load(filename), (float) gain, (float) pan, false);
  }
  
  /**
   * Loops the sound file with the given filename
   * @param filename The filename of the sound to loop
-  * @return An index identifying this looping sound.  Use stopLoopSound with this index to stop it.
+  * @return An id identifying this looping sound.  Use stopLoopSound with this id to stop it.
   */
  public int loopSound(String filename)
  {
-  File file = new File(filename);
-  Clip clip;
-  try {
-   AudioInputStream aistream = AudioSystem.getAudioInputStream(file);
-   clip = AudioSystem.getClip();
-   soundClips.add(clip);
-        clip.open(aistream);
-        clip.loop(Clip.LOOP_CONTINUOUSLY);
-        aistream.close();
-  } catch (UnsupportedAudioFileException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return -1;
-  } catch (IOException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return -1;
-  } catch (LineUnavailableException e) {
-   System.err.println("Failed to load sound: " + filename);
-   e.printStackTrace();
-   return -1;
-  }
-  return soundClips.indexOf(clip);
+  return getSoftwareMixer().play(getSoundEngine().load(filename), 1, 0, true);
  }
  
  /**
-  * Stops a looping sound with the given index.
-  * @param index The index of the looping sound, given from the loopSound method.
+  * Stops a looping sound with the given id.
+  * @param index The id of the looping sound, given from the loopSound method.
   */
  public void stopLoopSound(int index)
  {
-  soundClips.get(index).stop();
+  if(softwareMixer != null)
+   softwareMixer.stop(index);
+ }
+ 
+ /**
+  * Gets the SoundEngine that decodes sound files and plays them when there is no software mixer, creating one for the default audio device if needed.
+  * @return The SoundEngine of this window.
+  */
+ public SoundEngine getSoundEngine()
+ {
+  if(soundEngine == null)
+   soundEngine = new SoundEngine();
+  return soundEngine;
+ }
+ 
+ /**
+  * Sets the SoundEngine used by playSound and loopSound.  Useful for capping voices, or for using SoundEngine.createNull() where there is no audio device.
+  * @param engine The new SoundEngine.
+  */
+ public void setSoundEngine(SoundEngine engine)
+ {
+  if(soundEngine != null && soundEngine != engine)
+   soundEngine.close();
+  soundEngine = engine;
+ }
+ 
+ /**
+  * Gets the SoftwareMixer that loops sounds, creating and starting one on the default audio device if needed.
+  * Once a window has a software mixer, playSound goes through it as well.
+  * @return The SoftwareMixer of this window.
+  */
+ public SoftwareMixer getSoftwareMixer()
+ {
+  if(softwareMixer == null)
+  {
+   softwareMixer = SoftwareMixer.createDefault();
+   softwareMixer.start();
+  }
+  return softwareMixer;
+ }
+ 
+ /**
+  * Sets the SoftwareMixer used by playSound and loopSound.  Useful for mixing to a file, or to an AudioSink.NullSink where there is no audio device.
+  * The window does not start the mixer: start it, or call its mix method by hand.
+  * @param mixer The new SoftwareMixer.
+  */
+ public void setSoftwareMixer(SoftwareMixer mixer)
+ {
+  if(softwareMixer != null && softwareMixer != mixer)
+   softwareMixer.close();
+  softwareMixer = mixer;
  }
  
  /**
@@ -876,12 +1398,25 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
    setFullscreen(true);
   else
    setFullscreen(false); 
+  if(frame == null)
+   return;
   if(mode == MODE_PACK || mode == MODE_PACK_STRETCH || mode == MODE_FULLSCREEN || mode == MODE_FULLSCREEN_STRETCH)
    frame.setResizable(false);
   else
    frame.setResizable(true);
  }
  
+ /**
+  * Sets how the content is scaled in the stretching, scaling, and fullscreen modes.
+  * @param smooth If true, pixels are blended (bilinear).  If false, the closest pixel is used (nearest-neighbour), which is faster and keeps pixel art sharp.  False is the default.
+  */
+ public void setSmoothScaling(boolean smooth)
+ {
+  if(imageScaler == null)
+   imageScaler = new ImageScaler(ImageScaler.NEAREST);
+  imageScaler.setMethod(smooth ? ImageScaler.BILINEAR : ImageScaler.NEAREST);
+ }
+ 
  /**
   * Gets the current display mode.  See setDisplayMode for details on the various modes.
   * @return an int representing the current display mode.
@@ -947,50 +1482,215 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  
  /**
   * Performs bookkeeping setup for sockets.
+  * The receive loop for the socket is started with {@link startConnectionTask}, so it runs on whatever kind of thread the connection mode asks for.
   * @param s The socket to add to the EasyWindow's internal lists.
   * @return Returns true if it is successfully added, or false otherwise.
   */
  private boolean buildSocketHelper(Socket s)
  {
   String addressAndPort = (((InetSocketAddress) s.getRemoteSocketAddress()).getAddress()).getHostAddress() + ":" + s.getPort();
-  externalSockets.put(addressAndPort,  s);
   ObjectOutputStream oOut;
-  ObjectInputStream oIn;
   try {
    oOut = new ObjectOutputStream(s.getOutputStream());
-   oIn = new ObjectInputStream(s.getInputStream());
-   externalSocketOutputStreams.put(addressAndPort, oOut);
-   externalSocketInputStreams.put(addressAndPort, oIn);
-   LinkedList<Object> list = new LinkedList<Object>();
-   receivedObjects.put(addressAndPort, list);
-   Runnable receiveListener = new Runnable() {
-    @Override
-    public void run() {
-     ObjectInputStream oIn = externalSocketInputStreams.get(addressAndPort);
-     LinkedList<Object> list = receivedObjects.get(addressAndPort);
-     while(externalSockets.containsKey(addressAndPort))
-     {
-      Object o;
-      try {
-       o = oIn.readObject();
+   oOut.flush();
+  } catch (IOException e) {
+   closeSocketHelper(s);
+   return false;
+  }
+  externalSockets.put(addressAndPort,  s);
+  externalSocketOutputStreams.put(addressAndPort, oOut);
+  receivedObjects.put(addressAndPort, new LinkedList<Object>());
+  Runnable receiveListener = new Runnable() {
+   @Override
+   public void run() {
+    //Opening the input stream blocks until the other side's header arrives, so it is done here rather than on the accepting thread.
+    ObjectInputStream oIn;
+    try {
+     oIn = new ObjectInputStream(s.getInputStream());
+    } catch (IOException e) {
+     dropConnectionHelper(addressAndPort, false);
+     return;
+    }
+    externalSocketInputStreams.put(addressAndPort, oIn);
+    LinkedList<Object> list = receivedObjects.get(addressAndPort);
+    while(externalSockets.containsKey(addressAndPort))
+    {
+     try {
+      Object o = oIn.readObject();
+      synchronized(list) {
        list.add(o);
-      } catch (ClassNotFoundException e) {
-       
-       e.printStackTrace();
-      } catch (IOException e) {
-       
       }
-      
+     } catch (ClassNotFoundException e) {
+      e.printStackTrace();
+     } catch (IOException e) {
+      //The stream is broken or closed, so reading again would only fail again.
+      break;
      }
     }
-     
-    };
-    Thread receiveThread = new Thread(receiveListener);
-    receiveThread.start();
+    //Anything already received stays available to receive after the other side hangs up.
+    dropConnectionHelper(addressAndPort, true);
+   }
+  };
+  startConnectionTask(receiveListener);
+  return true;
+ }
+ 
+ /**
+  * Closes a socket, ignoring any errors.
+  * @param s The socket to close.
+  */
+ private static void closeSocketHelper(Socket s)
+ {
+  try {
+   s.close();
   } catch (IOException e) {
-   return false;
   }
-  return true;
+ }
+ 
+ /**
+  * Runs a networking task (a host listener or a receive loop) according to the connection mode.
+  * @param task The task to run.
+  */
+ private void startConnectionTask(Runnable task)
+ {
+  if(connectionMode == CONNECTION_THREADS)
+  {
+   new Thread(task).start();
+   return;
+  }
+  synchronized(this)
+  {
+   if(connectionExecutor == null)
+   {
+    if(connectionMode == CONNECTION_VIRTUAL)
+     connectionExecutor = newVirtualThreadExecutor();
+    if(connectionExecutor == null)
+     connectionExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+       Thread t = new Thread(r, "EasyWindow-connection");
+       t.setDaemon(true);
+       return t;
+      }
+     });
+   }
+  }
+  connectionExecutor.execute(task);
+ }
+ 
+ /**
+  * FOR INTERNAL USE ONLY - Creates an executor that starts a new virtual thread for each task.
+  * Virtual threads only exist in Java 21 and later, so this is looked up by reflection.
+  * @return The executor, or null if this version of Java does not have virtual threads.
+  */
+ private static ExecutorService newVirtualThreadExecutor()
+ {
+  try {
+   Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+   return (ExecutorService) m.invoke(null);
+  } catch (NoSuchMethodException e) {
+   return null;
+  } catch (IllegalAccessException e) {
+   return null;
+  } catch (InvocationTargetException e) {
+   return null;
+  }
+ }
+ 
+ /**
+  * Sets how connection threads are run.
+  * CONNECTION_THREADS - Every host listener and connection gets its own platform thread.  This is the default.
+  * CONNECTION_POOLED - Host listeners and connections share a pool of daemon threads.
+  * CONNECTION_VIRTUAL - Host listeners and connections each get a virtual thread, so thousands of connections stay cheap.  Falls back to CONNECTION_POOLED before Java 21.
+  * Only affects connections made after the mode is changed.
+  * @param mode The new mode to use, as an int constant (one of the CONNECTIONs).
+  */
+ public void setConnectionMode(int mode)
+ {
+  synchronized(this)
+  {
+   if(connectionMode != mode && connectionExecutor != null)
+   {
+    connectionExecutor.shutdown();
+    connectionExecutor = null;
+   }
+   connectionMode = mode;
+  }
+ }
+ 
+ /**
+  * Gets the current connection mode.  See setConnectionMode for details on the various modes.
+  * @return an int representing the current connection mode.
+  */
+ public int getConnectionMode()
+ {
+  return connectionMode;
+ }
+ 
+ /**
+  * Closes a connection to another computer, removing it from the EasyWindow's internal lists.
+  * Any Objects already received from it can no longer be received.
+  * @param addressAndPort The address and port of the connection to close.  EX: "192.168.1.1:80"
+  */
+ public void closeConnection(String addressAndPort)
+ {
+  dropConnectionHelper(addressAndPort, false);
+ }
+ 
+ /**
+  * Closes the socket of a connection and removes it from the EasyWindow's internal lists.
+  * @param addressAndPort The address and port of the connection to drop.
+  * @param keepReceived If true, Objects already received from the connection can still be received.
+  */
+ private void dropConnectionHelper(String addressAndPort, boolean keepReceived)
+ {
+  Socket s = externalSockets.remove(addressAndPort);
+  externalSocketOutputStreams.remove(addressAndPort);
+  externalSocketInputStreams.remove(addressAndPort);
+  if(!keepReceived)
+   receivedObjects.remove(addressAndPort);
+  else
+  {
+   //If nothing is left to receive, forget the connection now; otherwise receive does once it is emptied.
+   LinkedList<Object> list = receivedObjects.get(addressAndPort);
+   if(list != null)
+   {
+    synchronized(list) {
+     if(list.isEmpty())
+      receivedObjects.remove(addressAndPort, list);
+    }
+   }
+  }
+  if(s != null)
+   closeSocketHelper(s);
+ }
+ 
+ /**
+  * Stops hosting and closes every connection.  Called automatically when the window quits.
+  */
+ public void closeAllConnections()
+ {
+  for(String host : getHosts())
+  {
+   ServerSocket ss = serverSockets.remove(host);
+   if(ss != null)
+   {
+    try {
+     ss.close();
+    } catch (IOException e) {
+    }
+   }
+  }
+  for(String connection : externalSockets.keySet().toArray(new String[0]))
+   closeConnection(connection);
+  synchronized(this)
+  {
+   if(connectionExecutor != null)
+   {
+    connectionExecutor.shutdownNow();
+    connectionExecutor = null;
+   }
+  }
  }
  
  /**
@@ -1014,17 +1714,18 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
     while(serverSockets.containsKey(newHostString))
     {
      try {
-      Socket newSocket = serverSockets.get(newHostString).accept();
+      Socket newSocket = ss.accept();
       buildSocketHelper(newSocket);
      } catch (IOException e) {
+      if(ss.isClosed())
+       break;
       System.err.println("Failed to make connection as host");
      }
     }
    }
     
    };
-   Thread hostThread = new Thread(hostListen);
-   hostThread.start();
+   startConnectionTask(hostListen);
   return newHostString;
  } catch (UnknownHostException e) {
   return "FAILED TO HOST - UNKKNOWNHOSTEXCEPTION";
@@ -1076,6 +1777,8 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  /**
   * Sends a Serializable Object accross the specified address/port.
   * If a connection has not already been made on the specified address/port, this method will attempt to do so.
+  * Every send is written in full, so sending the same Object again after changing it sends its new contents,
+  * and a connection that sends every frame doesn't keep every Object it has ever sent in memory.
   * @param addressAndPort The address and port to which the method will send an Object.  EX: "192.168.1.1:80"
   * @param content The Serializable Object to send.  Add "implements Serializable" to the class to make it send-able.
   * @return Returns the object sent, or null if it failed to send.
@@ -1084,9 +1787,14 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  {
   if(!externalSockets.containsKey(addressAndPort))
    connect(addressAndPort);
-  try {
   ObjectOutputStream oOut = externalSocketOutputStreams.get(addressAndPort);
-  oOut.writeObject(content);
+  if(oOut == null)
+   return null;
+  try {
+  synchronized(oOut) {
+   oOut.writeObject(content);
+   oOut.reset();
+  }
   return content;
  } catch (IOException e) {
   return null;
@@ -1101,22 +1809,36 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  public boolean hasReceive(String addressAndPort)
  {
   LinkedList<Object> list = receivedObjects.get(addressAndPort);
-  return list.size() > 0;
+  if(list == null)
+   return false;
+  synchronized(list) {
+   return list.size() > 0;
+  }
  }
  
  /**
   * Gets the most recently received Object from the specified address/port connection.
-  * Throws a NullPointerException if the specified addressAndPort is not an established connection.
+  * Returns null if nothing is waiting, including when the specified addressAndPort is not an established connection.
   * @param addressAndPort The address and port from which to receive.  EX: "192.168.1.1:80"
   * @return A Serializable Object, sent over a socket to be received.
   */
  public Object receive(String addressAndPort)
  {
- LinkedList<Object> list = receivedObjects.get(addressAndPort);
- if(list.size() > 0)
-  return list.remove();
- else
-  return null;
+  LinkedList<Object> list = receivedObjects.get(addressAndPort);
+  if(list == null)
+   return null;
+  synchronized(list) {
+   if(list.size() > 0)
+   {
+    Object o = list.remove();
+    //Once everything from a connection that hung up has been received, nothing more can arrive from it.
+    if(list.isEmpty() && !externalSockets.containsKey(addressAndPort))
+     receivedObjects.remove(addressAndPort, list);
+    return o;
+   }
+   else
+    return null;
+  }
  }
  
  /**
@@ -1126,86 +1848,60 @@ public class EasyWindow implements MouseListener, MouseMotionListener, MouseWhee
  public void setImage(BufferedImage bi)
  {
   contents = bi;
-  BufferedImage bi2 = bi;
-  if(displayMode == MODE_PACK_STRETCH )
+  if(frame == null)
   {
-   imageWidth = stretchWidth;
-   imageHeight = stretchHeight;
+   imageWidth = bi.getWidth();
+   imageHeight = bi.getHeight();
+   return;
   }
-  else if(displayMode == MODE_STRETCH)
+  BufferedImage bi2 = bi;
+  boolean scaled = true;
+  boolean keepAspect = false;
+  int width = bi.getWidth();
+  int height = bi.getHeight();
+  if(displayMode == MODE_PACK_STRETCH )
   {
-   imageWidth = frame.getContentPane().getComponent(0).getWidth();
-   imageHeight = frame.getContentPane().getComponent(0).getHeight();
+   width = stretchWidth;
+   height = stretchHeight;
   }
-  else if(displayMode == MODE_SCALE)
+  else if(displayMode == MODE_STRETCH || displayMode == MODE_SCALE)
   {
-   int frameWidth = frame.getContentPane().getComponent(0).getWidth();
-   int frameHeight = frame.getContentPane().getComponent(0).getHeight();
-   imageWidth = frameWidth;
-   imageHeight = frameHeight;
-   double widthScale = (1.0 * imageWidth )/ bi.getWidth();
-   double heightScale = (1.0 * imageHeight )/ bi.getHeight();
-   if(widthScale * bi.getHeight() > imageHeight)
-    imageWidth = (int) (bi.getWidth() * heightScale);
-   else
-    imageHeight = (int) (bi.getHeight() * widthScale);
-   BufferedImage bTemp = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
-   Graphics gTemp = bTemp.getGraphics();
-   gTemp.drawImage(bi, 0, 0, bTemp.getWidth(), bTemp.getHeight(), 0, 0, bi.getWidth(), bi.getHeight(), null);
-   gTemp.dispose();
-   bi = bTemp;
-   imageWidth = frameWidth;
-   imageHeight = frameHeight;
-   
+   width = frame.getContentPane().getComponent(0).getWidth();
+   height = frame.getContentPane().getComponent(0).getHeight();
+   keepAspect = displayMode == MODE_SCALE;
   }
   else if(displayMode == MODE_FULLSCREEN || displayMode == MODE_FULLSCREEN_STRETCH)
   {
    GraphicsDevice gd = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
-   imageWidth = gd.getDisplayMode().getWidth();
-   imageHeight = gd.getDisplayMode().getHeight();
+   width = gd.getDisplayMode().getWidth();
+   height = gd.getDisplayMode().getHeight();
+   keepAspect = displayMode == MODE_FULLSCREEN;
   }
-  if(displayMode == MODE_STRETCH || displayMode == MODE_PACK_STRETCH || displayMode == MODE_FULLSCREEN_STRETCH)
+  else
+   scaled = false;
+  if(width <= 0 || height <= 0)
   {
-   bi2 = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
-   Graphics g2 = bi2.getGraphics();
-   g2.drawImage(bi, 0, 0, bi2.getWidth(), bi2.getHeight(), 0, 0, bi.getWidth(), bi.getHeight(), null);
-   g2.dispose();
+   width = bi.getWidth();
+   height = bi.getHeight();
   }
-  if(displayMode == MODE_FULLSCREEN || displayMode == MODE_SCALE)
+  xBorder = 0;
+  yBorder = 0;
+  if(scaled && (width != bi.getWidth() || height != bi.getHeight()))
   {
-   bi2 = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
-   Graphics g2 = bi2.getGraphics();
-   xBorder = Math.max(0,  (imageWidth - bi.getWidth()) / 2);
-   yBorder = Math.max(0,  (imageHeight - bi.getHeight()) / 2);
-   double widthScale = (1.0 * imageWidth )/ bi.getWidth();
-   double heightScale = (1.0 * imageHeight )/ bi.getHeight();
-   if(widthScale * bi.getHeight() > imageHeight)
-   {
-    yBorder = 0;
-    xBorder = (int) (xBorder / heightScale);
-   }
-   else
-   {
-    xBorder = 0;
-    yBorder = (int) (yBorder / widthScale);
-   }
-   g2.setColor(Color.BLACK);
-   g2.fillRect(0, 0, xBorder, imageHeight);
-   g2.fillRect(imageWidth - xBorder, 0, xBorder, imageHeight);
-   g2.fillRect(0, 0, imageWidth, yBorder);
-   g2.fillRect(0, imageHeight - yBorder, imageWidth, yBorder);
-   g2.drawImage(bi, xBorder, yBorder, bi2.getWidth() - xBorder, bi2.getHeight() - yBorder, 0, 0, bi.getWidth(), bi.getHeight(), null);
-   g2.dispose();
+   if(imageScaler == null)
+    imageScaler = new ImageScaler(ImageScaler.NEAREST);
+   bi2 = imageScaler.scale(bi, width, height, keepAspect);
+   xBorder = imageScaler.getOffsetX();
+   yBorder = imageScaler.getOffsetY();
   }
   
-  
   imageWidth = bi2.getWidth();
   imageHeight = bi2.getHeight();
-  BufferedImage newImage = new BufferedImage(bi2.getWidth(), bi2.getHeight(), bi2.getType());
-  Graphics g = newImage.getGraphics();
-  g.drawImage(bi2, 0, 0, null);
-  g.dispose();
-  ((JLabel)frame.getContentPane().getComponent(0)).setIcon(new ImageIcon(bi2));
+  JLabel label = (JLabel)frame.getContentPane().getComponent(0);
+  if(label.getIcon() instanceof ImageIcon && ((ImageIcon) label.getIcon()).getImage() == bi2)
+   label.repaint();
+  else
+   label.setIcon(new ImageIcon(bi2));
   if(displayMode == MODE_PACK || displayMode == MODE_PACK_STRETCH || displayMode == MODE_FULLSCREEN || displayMode == MODE_FULLSCREEN_STRETCH || firstUpdate)
    frame.pack();
   
@@ -1440,6 +2136,9 @@ public void windowClosed(WindowEvent arg0) {
 @Override
 public void windowClosing(WindowEvent arg0) {
  quit = true;
+ //With strongQuit the frame exits the program as soon as this returns, so the recording has to be finished now.
+ if(strongQuit)
+  quitRecordingHelper();
  
 }
 
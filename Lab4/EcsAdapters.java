@@ -0,0 +1,110 @@
+import java.awt.image.BufferedImage;
+
+//Builds EcsWorld entities that behave like Lab4's Asteroid and Wormhole objects when run with EcsSystems,
+//and converts existing objects into them.
+public class EcsAdapters {
+
+	//Indexes into images()
+	public static final int ASTEROID_IMAGE = 0;
+	public static final int WORMHOLE_IMAGE = 1;
+
+	public static final int ASTEROID = EcsWorld.POSITION | EcsWorld.VELOCITY | EcsWorld.SIZE | EcsWorld.HOMING | EcsWorld.SPRITE;
+	public static final int DRIFTING_WORMHOLE = EcsWorld.POSITION | EcsWorld.VELOCITY | EcsWorld.SIZE | EcsWorld.TARGETABLE
+			| EcsWorld.BOUNCE | EcsWorld.SPRITE;
+	public static final int MOUSE_WORMHOLE = EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.TARGETABLE | EcsWorld.MOUSE | EcsWorld.SPRITE;
+	public static final int PARKED_WORMHOLE = EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.TARGETABLE | EcsWorld.SPRITE;
+
+	//The images for a RenderSystem, in the order of the _IMAGE constants.  Call Asteroid.loadImages and Wormhole.loadImages first.
+	public static BufferedImage[] images() {
+		return new BufferedImage[] { Asteroid.asteroidImage, Wormhole.getImage() };
+	}
+
+	//An asteroid: flies at the nearest wormhole at the given speed, and dies on reaching it
+	public static int addAsteroid(EcsWorld world, double x, double y, double width, double height, double speed) {
+		int id = world.create(ASTEROID);
+		setBox(world, id, x, y, width, height);
+		world.set(id, EcsWorld.SPEED, speed);
+		world.setInt(id, EcsWorld.IMAGE, ASTEROID_IMAGE);
+		return id;
+	}
+
+	//A wormhole that drifts at a constant velocity, bouncing around (0, 0) - (boundsWidth, boundsHeight)
+	public static int addDriftingWormhole(EcsWorld world, double x, double y, double width, double height, double xVel, double yVel,
+			double boundsWidth, double boundsHeight) {
+		int id = world.create(DRIFTING_WORMHOLE);
+		setBox(world, id, x, y, width, height);
+		world.set(id, EcsWorld.VX, xVel);
+		world.set(id, EcsWorld.VY, yVel);
+		world.set(id, EcsWorld.BOUND_WIDTH, boundsWidth);
+		world.set(id, EcsWorld.BOUND_HEIGHT, boundsHeight);
+		world.setInt(id, EcsWorld.IMAGE, WORMHOLE_IMAGE);
+		return id;
+	}
+
+	//A wormhole that follows the mouse, with a MouseSystem
+	public static int addMouseWormhole(EcsWorld world, double x, double y, double width, double height) {
+		int id = world.create(MOUSE_WORMHOLE);
+		setBox(world, id, x, y, width, height);
+		world.setInt(id, EcsWorld.IMAGE, WORMHOLE_IMAGE);
+		return id;
+	}
+
+	private static void setBox(EcsWorld world, int id, double x, double y, double width, double height) {
+		world.set(id, EcsWorld.X, x);
+		world.set(id, EcsWorld.Y, y);
+		world.set(id, EcsWorld.LAST_X, x);
+		world.set(id, EcsWorld.LAST_Y, y);
+		world.set(id, EcsWorld.WIDTH, width);
+		world.set(id, EcsWorld.HEIGHT, height);
+	}
+
+	//Copies an Asteroid or Wormhole into the world as an entity that behaves the same, and returns its id, or -1 for anything else.
+	//Drifting wormholes keep drifting and parked ones stay put; other wormholes follow the mouse if followMouse is true,
+	//or stay put if not.
+	public static int fromEntity(EcsWorld world, Entity e, boolean followMouse) {
+		if (e instanceof Asteroid) {
+			Asteroid a = (Asteroid) e;
+			int id = addAsteroid(world, a.getXCenter(), a.getYCenter(), a.getWidth(), a.getHeight(), a.speed);
+			world.set(id, EcsWorld.VX, a.xVel);
+			world.set(id, EcsWorld.VY, a.yVel);
+			return id;
+		}
+		if (e instanceof Wormhole) {
+			Wormhole w = (Wormhole) e;
+			if (w.getDrifting())
+				return addDriftingWormhole(world, w.getXCenter(), w.getYCenter(), w.getWidth(), w.getHeight(), w.getXVel(),
+						w.getYVel(), w.getBoundsWidth(), w.getBoundsHeight());
+			int id = addMouseWormhole(world, w.getXCenter(), w.getYCenter(), w.getWidth(), w.getHeight());
+			if (w.getParked() || !followMouse)
+				world.setComponents(id, PARKED_WORMHOLE);
+			return id;
+		}
+		return -1;
+	}
+
+	//Adds the systems that make the world play like Lab4, in the order they need to run.
+	//ew may be null for a world with no mouse.
+	public static void addLab4Systems(EcsWorld world, EasyWindow ew, Camera camera) {
+		world.addSystem(new EcsSystems.HomingSystem());
+		world.addSystem(new EcsSystems.MovementSystem());
+		world.addSystem(new EcsSystems.BounceSystem());
+		if (ew != null)
+			world.addSystem(new EcsSystems.MouseSystem(ew, camera));
+		world.addSystem(new EcsSystems.CollisionSystem());
+		world.addSystem(new EcsSystems.DespawnSystem());
+	}
+
+	//Adds the same systems as addLab4Systems to a StageScheduler, each with the data it reads and writes,
+	//so the scheduler can tell which of them (and of any drawing stages added after) can run at once
+	public static void addLab4Stages(StageScheduler stages, EasyWindow ew, Camera camera) {
+		stages.addStage("homing", EcsWorld.POSITION | EcsWorld.TARGETABLE, EcsWorld.VELOCITY | EcsWorld.HOMING,
+				new EcsSystems.HomingSystem());
+		stages.addStage("movement", EcsWorld.VELOCITY, EcsWorld.POSITION, new EcsSystems.MovementSystem());
+		stages.addStage("bounce", EcsWorld.BOUNCE, EcsWorld.POSITION | EcsWorld.VELOCITY, new EcsSystems.BounceSystem());
+		if (ew != null)
+			stages.addStage("mouse", EcsWorld.MOUSE, EcsWorld.POSITION, new EcsSystems.MouseSystem(ew, camera));
+		stages.addStage("collision", EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.HOMING, EcsWorld.DEAD,
+				new EcsSystems.CollisionSystem());
+		stages.addStage("despawn", 0, EcsWorld.ENTITIES, new EcsSystems.DespawnSystem());
+	}
+}
@@ -0,0 +1,6 @@
+//One kind of behaviour in an EcsWorld, such as movement or collision, run on every entity with the components it needs
+public interface EcsSystem {
+
+	//Runs the system once, as if deltaTime seconds had passed
+	void run(EcsWorld world, double deltaTime);
+}
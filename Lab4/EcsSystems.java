@@ -0,0 +1,318 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+//The systems that make an EcsWorld behave like Lab4: what Asteroid.update, Wormhole.update, Entity.draw
+//and Lab4's removal loop do, but each done for every entity at once, down the archetypes' columns.
+//Systems that only touch their own entity's row split the rows into bands that can run in parallel.
+//Add them to the world in this order: homing, movement, bounce, mouse, collision, then despawn, with render whenever drawing.
+public class EcsSystems {
+
+	//Points each homing entity's velocity at the nearest TARGETABLE entity, at its SPEED, like Asteroid.update
+	public static class HomingSystem implements EcsSystem {
+
+		private double[] targetXs = new double[16];
+		private double[] targetYs = new double[16];
+		private int[] targetIds = new int[16];
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			int targets = 0;
+			for (Archetype a : world.query(EcsWorld.TARGETABLE | EcsWorld.POSITION)) {
+				double[] x = a.getDoubles(EcsWorld.X);
+				double[] y = a.getDoubles(EcsWorld.Y);
+				for (int i = 0; i < a.getCount(); i++) {
+					if (a.getDead()[i])
+						continue;
+					if (targets == targetIds.length) {
+						targetXs = Arrays.copyOf(targetXs, targets * 2);
+						targetYs = Arrays.copyOf(targetYs, targets * 2);
+						targetIds = Arrays.copyOf(targetIds, targets * 2);
+					}
+					targetXs[targets] = x[i];
+					targetYs[targets] = y[i];
+					targetIds[targets] = a.getIds()[i];
+					targets++;
+				}
+			}
+			final int targetCount = targets;
+			for (Archetype a : world.query(EcsWorld.HOMING | EcsWorld.POSITION | EcsWorld.VELOCITY)) {
+				final double[] x = a.getDoubles(EcsWorld.X);
+				final double[] y = a.getDoubles(EcsWorld.Y);
+				final double[] vx = a.getDoubles(EcsWorld.VX);
+				final double[] vy = a.getDoubles(EcsWorld.VY);
+				final double[] speed = a.getDoubles(EcsWorld.SPEED);
+				final int[] target = a.getInts(EcsWorld.TARGET);
+				final int count = a.getCount();
+				final int bandRows = world.getBandRows();
+				world.forEachBand(count, new IntConsumer() {
+					@Override
+					public void accept(int b) {
+						for (int i = b * bandRows, end = Math.min(count, i + bandRows); i < end; i++) {
+							int best = -1;
+							double bestDistance = Double.POSITIVE_INFINITY;
+							for (int t = 0; t < targetCount; t++) {
+								double dx = targetXs[t] - x[i];
+								double dy = targetYs[t] - y[i];
+								double d = dx * dx + dy * dy;
+								if (d < bestDistance) {
+									bestDistance = d;
+									best = t;
+								}
+							}
+							if (best < 0) {
+								target[i] = -1;
+								continue;
+							}
+							target[i] = targetIds[best];
+							double dx = targetXs[best] - x[i];
+							double dy = targetYs[best] - y[i];
+							double scale = speed[i] / Math.max(Math.sqrt(dx * dx + dy * dy), 0.000001);
+							vx[i] = dx * scale;
+							vy[i] = dy * scale;
+						}
+					}
+				});
+			}
+		}
+	}
+
+	//Remembers where everything starts the step, then moves everything with a velocity
+	public static class MovementSystem implements EcsSystem {
+
+		@Override
+		public void run(EcsWorld world, final double deltaTime) {
+			for (Archetype a : world.query(EcsWorld.POSITION)) {
+				System.arraycopy(a.getDoubles(EcsWorld.X), 0, a.getDoubles(EcsWorld.LAST_X), 0, a.getCount());
+				System.arraycopy(a.getDoubles(EcsWorld.Y), 0, a.getDoubles(EcsWorld.LAST_Y), 0, a.getCount());
+			}
+			for (Archetype a : world.query(EcsWorld.POSITION | EcsWorld.VELOCITY)) {
+				final double[] x = a.getDoubles(EcsWorld.X);
+				final double[] y = a.getDoubles(EcsWorld.Y);
+				final double[] vx = a.getDoubles(EcsWorld.VX);
+				final double[] vy = a.getDoubles(EcsWorld.VY);
+				final int count = a.getCount();
+				final int bandRows = world.getBandRows();
+				world.forEachBand(count, new IntConsumer() {
+					@Override
+					public void accept(int b) {
+						for (int i = b * bandRows, end = Math.min(count, i + bandRows); i < end; i++) {
+							x[i] += vx[i] * deltaTime;
+							y[i] += vy[i] * deltaTime;
+						}
+					}
+				});
+			}
+		}
+	}
+
+	//Keeps entities inside their bounds, turning them around at the edges, like a drifting Wormhole
+	public static class BounceSystem implements EcsSystem {
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			for (Archetype a : world.query(EcsWorld.POSITION | EcsWorld.VELOCITY | EcsWorld.BOUNCE)) {
+				double[] x = a.getDoubles(EcsWorld.X);
+				double[] y = a.getDoubles(EcsWorld.Y);
+				double[] vx = a.getDoubles(EcsWorld.VX);
+				double[] vy = a.getDoubles(EcsWorld.VY);
+				double[] width = a.getDoubles(EcsWorld.BOUND_WIDTH);
+				double[] height = a.getDoubles(EcsWorld.BOUND_HEIGHT);
+				for (int i = 0; i < a.getCount(); i++) {
+					if (x[i] < 0 || x[i] > width[i])
+						vx[i] = -vx[i];
+					if (y[i] < 0 || y[i] > height[i])
+						vy[i] = -vy[i];
+					x[i] = Math.max(0, Math.min(width[i], x[i]));
+					y[i] = Math.max(0, Math.min(height[i], y[i]));
+				}
+			}
+		}
+	}
+
+	//Puts entities under the mouse, like the player's Wormhole.  With a camera, the mouse is turned into a world position.
+	public static class MouseSystem implements EcsSystem {
+
+		private final EasyWindow ew;
+		private final Camera camera;
+
+		//Constructor.  camera may be null if the screen is the world.
+		public MouseSystem(EasyWindow ew, Camera camera) {
+			this.ew = ew;
+			this.camera = camera;
+		}
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			double mx = camera == null ? ew.getMouseX() : camera.toWorldX(ew.getMouseX());
+			double my = camera == null ? ew.getMouseY() : camera.toWorldY(ew.getMouseY());
+			for (Archetype a : world.query(EcsWorld.POSITION | EcsWorld.MOUSE)) {
+				for (int i = 0; i < a.getCount(); i++) {
+					a.getDoubles(EcsWorld.X)[i] = mx;
+					a.getDoubles(EcsWorld.Y)[i] = my;
+				}
+			}
+		}
+	}
+
+	//Marks homing entities dead when their target's center passed through their box during the step,
+	//the same swept test as Entity.sweptContains
+	public static class CollisionSystem implements EcsSystem {
+
+		@Override
+		public void run(final EcsWorld world, double deltaTime) {
+			for (Archetype a : world.query(EcsWorld.HOMING | EcsWorld.POSITION | EcsWorld.SIZE)) {
+				final double[] x = a.getDoubles(EcsWorld.X);
+				final double[] y = a.getDoubles(EcsWorld.Y);
+				final double[] lastX = a.getDoubles(EcsWorld.LAST_X);
+				final double[] lastY = a.getDoubles(EcsWorld.LAST_Y);
+				final double[] width = a.getDoubles(EcsWorld.WIDTH);
+				final double[] height = a.getDoubles(EcsWorld.HEIGHT);
+				final int[] target = a.getInts(EcsWorld.TARGET);
+				final boolean[] dead = a.getDead();
+				final int count = a.getCount();
+				final int bandRows = world.getBandRows();
+				world.forEachBand(count, new IntConsumer() {
+					@Override
+					public void accept(int b) {
+						for (int i = b * bandRows, end = Math.min(count, i + bandRows); i < end; i++) {
+							int t = target[i];
+							if (t < 0 || !world.has(t, EcsWorld.POSITION))
+								continue;
+							double x1 = world.get(t, EcsWorld.LAST_X) - lastX[i];
+							double y1 = world.get(t, EcsWorld.LAST_Y) - lastY[i];
+							double x2 = world.get(t, EcsWorld.X) - x[i];
+							double y2 = world.get(t, EcsWorld.Y) - y[i];
+							if (segmentHitsBox(x1, y1, x2, y2, width[i] / 2, height[i] / 2))
+								dead[i] = true;
+						}
+					}
+				});
+			}
+		}
+
+		//Slab test of the segment against the box from (-halfWidth, -halfHeight) to (halfWidth, halfHeight)
+		private static boolean segmentHitsBox(double x1, double y1, double x2, double y2, double halfWidth, double halfHeight) {
+			double tMin = 0;
+			double tMax = 1;
+			double mx = x2 - x1;
+			double my = y2 - y1;
+			if (mx == 0) {
+				if (x1 < -halfWidth || x1 > halfWidth)
+					return false;
+			} else {
+				double t1 = (-halfWidth - x1) / mx;
+				double t2 = (halfWidth - x1) / mx;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			}
+			if (my == 0) {
+				if (y1 < -halfHeight || y1 > halfHeight)
+					return false;
+			} else {
+				double t1 = (-halfHeight - y1) / my;
+				double t2 = (halfHeight - y1) / my;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			}
+			return tMin <= tMax;
+		}
+	}
+
+	//Removes every entity marked dead, like the removal loop in Lab4
+	public static class DespawnSystem implements EcsSystem {
+
+		private int despawned;
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			despawned += world.removeDead();
+		}
+
+		//How many entities have been removed
+		public int getDespawned() {
+			return despawned;
+		}
+	}
+
+	//Draws every entity with a sprite, like Entity.draw, and optionally its hitbox.  Not added to the world's step;
+	//call it once per frame after setting the Graphics to draw with.
+	public static class RenderSystem implements EcsSystem {
+
+		private final BufferedImage[] images;
+		private Graphics g;
+		private DebugDraw hitboxes;
+		private Camera camera;
+
+		//Constructor.  An entity's IMAGE is an index into images.
+		public RenderSystem(BufferedImage[] images) {
+			this.images = images;
+		}
+
+		//Sets what to draw with, and, if not null, a camera to skip entities that can't be seen and a DebugDraw to add hitboxes to
+		public void setTarget(Graphics g, Camera camera, DebugDraw hitboxes) {
+			this.g = g;
+			this.camera = camera;
+			this.hitboxes = hitboxes;
+		}
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			for (Archetype a : world.query(EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.SPRITE)) {
+				double[] x = a.getDoubles(EcsWorld.X);
+				double[] y = a.getDoubles(EcsWorld.Y);
+				double[] width = a.getDoubles(EcsWorld.WIDTH);
+				double[] height = a.getDoubles(EcsWorld.HEIGHT);
+				int[] image = a.getInts(EcsWorld.IMAGE);
+				for (int i = 0; i < a.getCount(); i++) {
+					int left = (int) (x[i] - width[i] / 2);
+					int top = (int) (y[i] - height[i] / 2);
+					if (camera != null && (left > camera.getX() + camera.getWidth() || top > camera.getY() + camera.getHeight()
+							|| left + width[i] < camera.getX() || top + height[i] < camera.getY()))
+						continue;
+					g.drawImage(images[image[i]], left, top, (int) width[i], (int) height[i], null);
+					if (hitboxes != null)
+						hitboxes.addRect(left, top, (int) width[i], (int) height[i]);
+				}
+			}
+		}
+	}
+
+	//Adds every sprite's hitbox to a DebugDraw, like the hitboxes RenderSystem can draw, but on its own
+	//so a StageScheduler can run it alongside the RenderSystem
+	public static class HitboxSystem implements EcsSystem {
+
+		private final DebugDraw hitboxes;
+		private boolean enabled = true;
+
+		//Constructor
+		public HitboxSystem(DebugDraw hitboxes) {
+			this.hitboxes = hitboxes;
+		}
+
+		@Override
+		public void run(EcsWorld world, double deltaTime) {
+			if (!enabled)
+				return;
+			for (Archetype a : world.query(EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.SPRITE)) {
+				double[] x = a.getDoubles(EcsWorld.X);
+				double[] y = a.getDoubles(EcsWorld.Y);
+				double[] width = a.getDoubles(EcsWorld.WIDTH);
+				double[] height = a.getDoubles(EcsWorld.HEIGHT);
+				for (int i = 0; i < a.getCount(); i++)
+					hitboxes.addRect((int) (x[i] - width[i] / 2), (int) (y[i] - height[i] / 2), (int) width[i], (int) height[i]);
+			}
+		}
+
+		//Simple set method
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		//Simple get method
+		public boolean getEnabled() {
+			return enabled;
+		}
+	}
+}
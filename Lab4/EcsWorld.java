@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//An entity-component-system version of the Lab4 world.
+//An entity is just an id.  What it is made of is a set of components (bits, such as POSITION | VELOCITY),
+//and each component has fields, stored in the entity's Archetype as columns of primitive arrays.
+//Behaviour lives in EcsSystems, which query for the archetypes with the components they need and loop down their columns,
+//instead of in update methods on every object.  Entities are removed by marking them dead and calling removeDead,
+//so systems can run over the arrays without them changing underneath.
+public class EcsWorld {
+
+	//Components
+	public static final int POSITION = 1;     //X, Y, LAST_X, LAST_Y
+	public static final int VELOCITY = 2;     //VX, VY
+	public static final int SIZE = 4;         //WIDTH, HEIGHT
+	public static final int HOMING = 8;       //SPEED, TARGET: flies at the nearest TARGETABLE entity, and dies on reaching it
+	public static final int TARGETABLE = 16;  //no fields; homing entities fly at these
+	public static final int BOUNCE = 32;      //BOUND_WIDTH, BOUND_HEIGHT: stays inside (0, 0) - (width, height), bouncing off the edges
+	public static final int SPRITE = 64;      //IMAGE: an index into the RenderSystem's images
+	public static final int MOUSE = 128;      //no fields; follows the mouse
+
+	//Not components, but more data a StageScheduler stage can say it reads or writes
+	public static final int DEAD = 256;       //the dead flags, set by kill
+	public static final int ENTITIES = 511;   //everything above, for stages that create or remove entities
+
+	//Double fields
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int LAST_X = 2;  //where the entity was at the start of the step
+	public static final int LAST_Y = 3;
+	public static final int VX = 4;
+	public static final int VY = 5;
+	public static final int WIDTH = 6;
+	public static final int HEIGHT = 7;
+	public static final int SPEED = 8;
+	public static final int BOUND_WIDTH = 9;
+	public static final int BOUND_HEIGHT = 10;
+	public static final int DOUBLE_FIELDS = 11;
+	static final int[] DOUBLE_FIELD_COMPONENTS = { POSITION, POSITION, POSITION, POSITION, VELOCITY, VELOCITY, SIZE, SIZE,
+			HOMING, BOUNCE, BOUNCE };
+
+	//Int fields
+	public static final int TARGET = 0;  //the id of the entity being homed on, or -1
+	public static final int IMAGE = 1;
+	public static final int INT_FIELDS = 2;
+	static final int[] INT_FIELD_COMPONENTS = { HOMING, SPRITE };
+
+	private static final int PARALLEL_ROWS = 8192;  //fewer rows than this are not worth splitting between threads
+	private static final int BAND_ROWS = 2048;
+
+	private final HashMap<Integer, Archetype> archetypes = new HashMap<Integer, Archetype>();
+	private final ArrayList<Archetype> archetypeList = new ArrayList<Archetype>();
+	//Concurrent, since stages run by a StageScheduler can query at the same time
+	private final ConcurrentHashMap<Integer, ArrayList<Archetype>> queries = new ConcurrentHashMap<Integer, ArrayList<Archetype>>();
+	private final ArrayList<EcsSystem> systems = new ArrayList<EcsSystem>();
+	private Archetype[] locations = new Archetype[256];  //the archetype of each entity id, or null once removed
+	private int[] rows = new int[256];                   //the row of each entity id in its archetype
+	private int nextId;
+	private int alive;
+	private int removed;
+	private boolean parallel = true;
+
+	//Creates an entity with the given components, with every field 0 (except TARGET, which is -1), and returns its id
+	public int create(int components) {
+		if (nextId == locations.length) {
+			locations = Arrays.copyOf(locations, nextId * 2);
+			rows = Arrays.copyOf(rows, nextId * 2);
+		}
+		int id = nextId++;
+		Archetype a = archetypeFor(components);
+		locations[id] = a;
+		rows[id] = a.add(id);
+		if ((components & HOMING) != 0)
+			a.getInts(TARGET)[rows[id]] = -1;
+		alive++;
+		return id;
+	}
+
+	private Archetype archetypeFor(int components) {
+		Archetype a = archetypes.get(components);
+		if (a == null) {
+			a = new Archetype(components);
+			archetypes.put(components, a);
+			archetypeList.add(a);
+			queries.clear();
+		}
+		return a;
+	}
+
+	//Gives an entity a different set of components, keeping the fields they share
+	public void setComponents(int id, int components) {
+		Archetype from = locations[id];
+		if (from == null || from.getMask() == components)
+			return;
+		int fromRow = rows[id];
+		Archetype to = archetypeFor(components);
+		int toRow = to.add(id);
+		for (int f = 0; f < DOUBLE_FIELDS; f++)
+			if (from.getDoubles(f) != null && to.getDoubles(f) != null)
+				to.getDoubles(f)[toRow] = from.getDoubles(f)[fromRow];
+		for (int f = 0; f < INT_FIELDS; f++)
+			if (from.getInts(f) != null && to.getInts(f) != null)
+				to.getInts(f)[toRow] = from.getInts(f)[fromRow];
+		to.getDead()[toRow] = from.getDead()[fromRow];
+		removeRow(from, fromRow);
+		locations[id] = to;
+		rows[id] = toRow;
+	}
+
+	private void removeRow(Archetype a, int row) {
+		int moved = a.remove(row);
+		if (moved >= 0)
+			rows[moved] = row;
+	}
+
+	//Gets every archetype with all of the components, to loop over.  The list is cached, so don't change it.
+	public ArrayList<Archetype> query(int components) {
+		ArrayList<Archetype> result = queries.get(components);
+		if (result == null) {
+			result = new ArrayList<Archetype>();
+			for (Archetype a : archetypeList)
+				if (a.has(components))
+					result.add(a);
+			queries.put(components, result);
+		}
+		return result;
+	}
+
+	//Runs task for each band of rows from 0 to count, on several threads at once if there are enough rows and parallel is on.
+	//The task is given the band number; its rows are band * getBandRows() up to the next band, or count.
+	public void forEachBand(int count, IntConsumer task) {
+		int bands = (count + BAND_ROWS - 1) / BAND_ROWS;
+		if (parallel && count >= PARALLEL_ROWS)
+			IntStream.range(0, bands).parallel().forEach(task);
+		else
+			for (int b = 0; b < bands; b++)
+				task.accept(b);
+	}
+
+	//How many rows are in each band given to forEachBand
+	public int getBandRows() {
+		return BAND_ROWS;
+	}
+
+	//Sets a double field of an entity
+	public void set(int id, int field, double value) {
+		locations[id].getDoubles(field)[rows[id]] = value;
+	}
+
+	//Gets a double field of an entity
+	public double get(int id, int field) {
+		return locations[id].getDoubles(field)[rows[id]];
+	}
+
+	//Sets an int field of an entity
+	public void setInt(int id, int field, int value) {
+		locations[id].getInts(field)[rows[id]] = value;
+	}
+
+	//Gets an int field of an entity
+	public int getInt(int id, int field) {
+		return locations[id].getInts(field)[rows[id]];
+	}
+
+	//True if the entity has every component in the mask
+	public boolean has(int id, int components) {
+		return id >= 0 && id < nextId && locations[id] != null && locations[id].has(components);
+	}
+
+	//True if the entity exists and hasn't been marked dead
+	public boolean isAlive(int id) {
+		return id >= 0 && id < nextId && locations[id] != null && !locations[id].getDead()[rows[id]];
+	}
+
+	//Marks an entity to be removed by the next removeDead
+	public void kill(int id) {
+		if (locations[id] != null)
+			locations[id].getDead()[rows[id]] = true;
+	}
+
+	//Removes every entity marked dead, and returns how many there were
+	public int removeDead() {
+		int count = 0;
+		for (Archetype a : archetypeList) {
+			boolean[] dead = a.getDead();
+			for (int row = a.getCount() - 1; row >= 0; row--) {
+				if (dead[row]) {
+					locations[a.getIds()[row]] = null;
+					removeRow(a, row);
+					count++;
+				}
+			}
+		}
+		alive -= count;
+		removed += count;
+		return count;
+	}
+
+	//Adds a system to the end of the list that step runs
+	public void addSystem(EcsSystem system) {
+		systems.add(system);
+	}
+
+	//Runs every system, in the order they were added
+	public void step(double deltaTime) {
+		for (EcsSystem s : systems)
+			s.run(this, deltaTime);
+	}
+
+	//Simple get method
+	public ArrayList<EcsSystem> getSystems() {
+		return systems;
+	}
+
+	//Simple set method.  When false, forEachBand always runs on the calling thread.
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	//Simple get method
+	public boolean getParallel() {
+		return parallel;
+	}
+
+	//How many entities exist, counting any marked dead that haven't been removed yet
+	public int size() {
+		return alive;
+	}
+
+	//How many entities removeDead has removed in total
+	public int getRemoved() {
+		return removed;
+	}
+}
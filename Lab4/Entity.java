@@ -8,6 +8,10 @@ public abstract class Entity {
 	private double width;     //width of the entity
 	private double height;    //height of the entity
 	private boolean kill;;    //when true, the entity will be remove
+	private double pendingTime; //time that has passed without the entity being updated
+	private double lastXCenter; //the x center at the start of the current step
+	private double lastYCenter; //the y center at the start of the current step
+	private int id;             //tells entities apart when they are sent over a connection, given out by World
 	
 	public Entity(double xCenter, double yCenter, double width, double height) {
 		this.xCenter = xCenter;
@@ -15,12 +19,21 @@ public abstract class Entity {
 		this.width = width;
 		this.height = width;
 		kill = false;
+		lastXCenter = xCenter;
+		lastYCenter = yCenter;
 		
 	}
 	
 	//Updates the position and other attributes
 	public abstract void update(EasyWindow ew);
 	
+	//Updates the position and other attributes as if deltaTime seconds had passed.
+	//Used for entities that are updated less often than every frame.
+	//Entities that don't move on their own can ignore deltaTime, so by default this is just update(ew).
+	public void update(EasyWindow ew, double deltaTime) {
+		update(ew);
+	}
+	
 	//draw the entity
 	public abstract void draw(Graphics g);
 	
@@ -34,6 +47,72 @@ public abstract class Entity {
 		
 	}
 	
+	//Remembers where the entity is, as the start of the step it is about to take.
+	//Lab4 calls this for every entity before updating any of them, so collisions can look at
+	//the whole path each entity took, not just where it ended up.
+	public void beginStep() {
+		lastXCenter = xCenter;
+		lastYCenter = yCenter;
+	}
+	
+	//The smallest Rectangle holding the hitbox at both the start and the end of the step.
+	//Anything this entity could have hit during the step overlaps it, so check it before anything more exact.
+	public Rectangle getSweptHitbox() {
+		double left = Math.min(xCenter, lastXCenter) - width / 2;
+		double top = Math.min(yCenter, lastYCenter) - height / 2;
+		double right = Math.max(xCenter, lastXCenter) + width / 2;
+		double bottom = Math.max(yCenter, lastYCenter) + height / 2;
+		Rectangle r = new Rectangle((int) Math.floor(left), (int) Math.floor(top), 0, 0);
+		r.add(Math.ceil(right), Math.ceil(bottom));
+		return r;
+	}
+	
+	//Tells if the center of Entity e passed through this entity's hitbox at any time during the step,
+	//however far either of them moved.  Both are treated as moving in a straight line, so this looks at e's center
+	//moving relative to this entity, and checks that segment against the hitbox.
+	//Called for every asteroid every frame, so nothing here is allocated.
+	public boolean sweptContains(Entity e) {
+		//Quick check first: the two swept hitboxes (see getSweptHitbox) have to overlap
+		if (Math.min(xCenter, lastXCenter) - width / 2 > Math.max(e.xCenter, e.lastXCenter) + e.width / 2
+				|| Math.min(e.xCenter, e.lastXCenter) - e.width / 2 > Math.max(xCenter, lastXCenter) + width / 2
+				|| Math.min(yCenter, lastYCenter) - height / 2 > Math.max(e.yCenter, e.lastYCenter) + e.height / 2
+				|| Math.min(e.yCenter, e.lastYCenter) - e.height / 2 > Math.max(yCenter, lastYCenter) + height / 2)
+			return false;
+		double x1 = e.lastXCenter - lastXCenter;
+		double y1 = e.lastYCenter - lastYCenter;
+		double x2 = e.xCenter - xCenter;
+		double y2 = e.yCenter - yCenter;
+		return segmentHitsBox(x1, y1, x2, y2, width / 2, height / 2);
+	}
+	
+	//Slab test of the segment from (x1, y1) to (x2, y2) against the box from (-halfWidth, -halfHeight) to (halfWidth, halfHeight),
+	//clipping it one axis at a time
+	private static boolean segmentHitsBox(double x1, double y1, double x2, double y2, double halfWidth, double halfHeight) {
+		double tMin = 0;
+		double tMax = 1;
+		double mx = x2 - x1;
+		double my = y2 - y1;
+		if (mx == 0) {
+			if (x1 < -halfWidth || x1 > halfWidth)
+				return false;
+		} else {
+			double t1 = (-halfWidth - x1) / mx;
+			double t2 = (halfWidth - x1) / mx;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		if (my == 0) {
+			if (y1 < -halfHeight || y1 > halfHeight)
+				return false;
+		} else {
+			double t1 = (-halfHeight - y1) / my;
+			double t2 = (halfHeight - y1) / my;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		return tMin <= tMax;
+	}
+	
 	//Draws the Rectangle from getHitbox() onto the screen
 	//Using g.drawRect(x, y, width, height); is about all you need.
 	public void drawHitbox(Graphics g) {
@@ -42,6 +121,11 @@ public abstract class Entity {
 		
 	}
 	
+	//Adds the same rectangle as drawHitbox(Graphics) to a batch of debug shapes, to be drawn all at once by dd.flush
+	public void drawHitbox(DebugDraw dd) {
+		dd.addRect((int) (xCenter - width / 2), (int) (yCenter - height / 2), (int) width, (int) height);
+	}
+	
 	
 	//Simple set method
 	public void setXCenter(double x) {
@@ -64,6 +148,46 @@ public abstract class Entity {
 		return yCenter;
 	}
 	
+	//Simple get method
+	public double getWidth() {
+		return width;
+	}
+	
+	//Simple get method
+	public double getHeight() {
+		return height;
+	}
+	
+	//Simple get method
+	public double getLastXCenter() {
+		return lastXCenter;
+	}
+	
+	//Simple get method
+	public double getLastYCenter() {
+		return lastYCenter;
+	}
+	
+	//Simple set method
+	public void setPendingTime(double pendingTime) {
+		this.pendingTime = pendingTime;
+	}
+	
+	//Simple get method
+	public double getPendingTime() {
+		return pendingTime;
+	}
+	
+	//Simple set method
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	//Simple get method
+	public int getId() {
+		return id;
+	}
+	
 	//Simple set method
 	public void setKill(boolean kill) {
 		this.kill = kill;
@@ -0,0 +1,712 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//A list of image filters (color changes, thresholds, blending, blurs and convolutions) run over PixelRasters.
+//Filters are added in the order they should happen, then run as few passes over the pixels as possible:
+//a filter that needs a pixel's neighbours (a blur or convolution) starts a new pass, and every filter that only needs the pixel
+//itself is done in the same pass as whatever came before it, on the pixel's way out, instead of going over the whole image again.
+//Lookup-table filters in a row (gamma, posterize, threshold) are also merged into one table.
+//Each pass is split into bands of rows that run in parallel, and the last pass can write straight into a PixelRaster wrapping the canvas.
+//Run it with "java FilterPipeline [size]" to compare it with doing the same filters one by one on int[][][] images.
+public class FilterPipeline {
+
+	//How addBlend mixes another image into this one
+	public static final int BLEND_ALPHA = 0;     //the other image over this one, by its alpha
+	public static final int BLEND_ADD = 1;       //lightens, stopping at white
+	public static final int BLEND_MULTIPLY = 2;  //darkens
+	public static final int BLEND_SCREEN = 3;    //lightens, never quite to white
+
+	//Kinds of step.  The first three only need the pixel itself.
+	private static final int MATRIX = 0;
+	private static final int LOOKUP = 1;
+	private static final int BLEND = 2;
+	private static final int BOX_X = 3;
+	private static final int BOX_Y = 4;
+	private static final int CONVOLVE_X = 5;
+	private static final int CONVOLVE_Y = 6;
+	private static final int CONVOLVE = 7;
+
+	private static final int BAND_ROWS = 16;
+	private static final int PARALLEL_PIXELS = 65536;  //fewer pixels than this are not worth splitting between threads
+	private static final float[] GRAY = { 0.299f, 0.587f, 0.114f, 0, 0.299f, 0.587f, 0.114f, 0, 0.299f, 0.587f, 0.114f, 0 };
+
+	//One filter, or half of a separable one
+	private static class Step {
+		final int kind;
+		float[] values;  //a color matrix, or a kernel
+		int[] table;     //red, green then blue lookup tables, 256 entries each
+		PixelRaster other;
+		int mode;
+		int amount;      //opacity out of 256
+		int radius;      //or a kernel's width
+
+		Step(int kind) {
+			this.kind = kind;
+		}
+	}
+
+	//A step that needs neighbouring pixels (or none), then the steps for single pixels done on its output
+	private static class Pass {
+		Step neighbourhood;
+		Step[] points;
+	}
+
+	private final ArrayList<Step> steps = new ArrayList<Step>();
+	private Pass[] passes;  //null until the steps are next run
+	private PixelRaster scratchA;
+	private PixelRaster scratchB;
+	private int[] columnSums = new int[0];  //running sums for box blurs down, w * 4 for each band, kept for the next run
+	private boolean parallel = true;
+
+	private void add(Step step) {
+		steps.add(step);
+		passes = null;
+	}
+
+	//Adds a color matrix: red becomes m[0] * red + m[1] * green + m[2] * blue + m[3], green is the same with m[4] to m[7],
+	//and blue with m[8] to m[11].  Each is rounded and clamped to 0 - 255.
+	public void addColorMatrix(float[] m) {
+		Step s = new Step(MATRIX);
+		s.values = m.clone();
+		add(s);
+	}
+
+	//Adds amount (-255 to 255) to every channel
+	public void addBrightness(int amount) {
+		addColorMatrix(new float[] { 1, 0, 0, amount, 0, 1, 0, amount, 0, 0, 1, amount });
+	}
+
+	//Spreads every channel away from the middle (128) by factor, or toward it for a factor under 1
+	public void addContrast(double factor) {
+		float f = (float) factor;
+		float offset = 128 - 128 * f;
+		addColorMatrix(new float[] { f, 0, 0, offset, 0, f, 0, offset, 0, 0, f, offset });
+	}
+
+	//Turns every pixel gray, by its luminance
+	public void addGrayscale() {
+		addColorMatrix(GRAY);
+	}
+
+	//Turns every pixel the brown of an old photograph
+	public void addSepia() {
+		addColorMatrix(new float[] { 0.393f, 0.769f, 0.189f, 0, 0.349f, 0.686f, 0.168f, 0, 0.272f, 0.534f, 0.131f, 0 });
+	}
+
+	//Turns every channel c into 255 - c
+	public void addInvert() {
+		addColorMatrix(new float[] { -1, 0, 0, 255, 0, -1, 0, 255, 0, 0, -1, 255 });
+	}
+
+	//Moves every pixel toward a color (0xRRGGBB) by amount, from 0 (unchanged) to 1 (all that color)
+	public void addTint(int rgb, double amount) {
+		float keep = (float) (1 - amount);
+		float a = (float) amount;
+		addColorMatrix(new float[] { keep, 0, 0, ((rgb >> 16) & 0xFF) * a, 0, keep, 0, ((rgb >> 8) & 0xFF) * a, 0, 0, keep, (rgb & 0xFF) * a });
+	}
+
+	//Adds a lookup table for each channel: a channel c becomes red[c], green[c] or blue[c]
+	public void addLookup(int[] red, int[] green, int[] blue) {
+		Step s = new Step(LOOKUP);
+		s.table = new int[768];
+		for (int c = 0; c < 256; c++) {
+			s.table[c] = PixelRaster.clamp(red[c]);
+			s.table[256 + c] = PixelRaster.clamp(green[c]);
+			s.table[512 + c] = PixelRaster.clamp(blue[c]);
+		}
+		add(s);
+	}
+
+	//Brightens the darker parts of the image for a gamma over 1, or darkens them under 1
+	public void addGamma(double gamma) {
+		if (!(gamma > 0))
+			throw new IllegalArgumentException("Gamma must be more than 0, not " + gamma);
+		int[] t = new int[256];
+		for (int c = 0; c < 256; c++)
+			t[c] = (int) (255 * Math.pow(c / 255.0, 1 / gamma) + 0.5);
+		addLookup(t, t, t);
+	}
+
+	//Cuts every channel down to the given number of evenly spaced levels, at least 2
+	public void addPosterize(int levels) {
+		if (levels < 2)
+			throw new IllegalArgumentException("Posterizing needs at least 2 levels, not " + levels);
+		int[] t = new int[256];
+		for (int c = 0; c < 256; c++)
+			t[c] = (c * levels / 256) * 255 / (levels - 1);
+		addLookup(t, t, t);
+	}
+
+	//Turns pixels with a luminance of at least level white, and the rest black
+	public void addThreshold(int level) {
+		addGrayscale();
+		int[] t = new int[256];
+		for (int c = level; c < 256; c++)
+			t[c] = 255;
+		addLookup(t, t, t);
+	}
+
+	//Mixes another image of the same size into this one, with one of the BLEND_ modes, at an opacity from 0 to 1.
+	//The other image is read each time the pipeline runs, so it can change between runs.
+	public void addBlend(PixelRaster other, int mode, double opacity) {
+		Step s = new Step(BLEND);
+		s.other = other;
+		s.mode = mode;
+		s.amount = (int) Math.round(Math.max(0, Math.min(1, opacity)) * 256);
+		add(s);
+	}
+
+	//Averages every pixel with the ones up to radius away, across then down, which is much cheaper than a square of them all
+	public void addBoxBlur(int radius) {
+		Step across = new Step(BOX_X);
+		across.radius = radius;
+		add(across);
+		Step down = new Step(BOX_Y);
+		down.radius = radius;
+		add(down);
+	}
+
+	//Blurs with a bell curve with the given standard deviation in pixels, across then down
+	public void addGaussianBlur(double sigma) {
+		int radius = Math.max(1, (int) Math.ceil(sigma * 3));
+		float[] kernel = new float[radius * 2 + 1];
+		float sum = 0;
+		for (int i = -radius; i <= radius; i++) {
+			kernel[i + radius] = (float) Math.exp(-(i * i) / (2 * sigma * sigma));
+			sum += kernel[i + radius];
+		}
+		for (int i = 0; i < kernel.length; i++)
+			kernel[i] /= sum;
+		Step across = new Step(CONVOLVE_X);
+		across.values = kernel;
+		add(across);
+		Step down = new Step(CONVOLVE_Y);
+		down.values = kernel;
+		add(down);
+	}
+
+	//Adds a square convolution kernel, size by size (an odd number), row by row.  Pixels past the edges repeat the edge.
+	public void addConvolution(float[] kernel, int size) {
+		if (size % 2 == 0 || kernel.length != size * size)
+			throw new IllegalArgumentException("A convolution kernel must be size by size, with an odd size");
+		Step s = new Step(CONVOLVE);
+		s.values = kernel.clone();
+		s.radius = size;
+		add(s);
+	}
+
+	//Makes edges crisper
+	public void addSharpen() {
+		addConvolution(new float[] { 0, -1, 0, -1, 5, -1, 0, -1, 0 }, 3);
+	}
+
+	//Removes every filter
+	public void clear() {
+		steps.clear();
+		passes = null;
+	}
+
+	//Works out the passes: each neighbourhood step starts one, and the point steps after it join it
+	private void compile() {
+		ArrayList<Pass> list = new ArrayList<Pass>();
+		Step neighbourhood = null;
+		ArrayList<Step> points = new ArrayList<Step>();
+		for (Step s : steps) {
+			if (s.kind > BLEND) {
+				if (neighbourhood != null || !points.isEmpty())
+					list.add(pass(neighbourhood, points));
+				neighbourhood = s;
+				points.clear();
+			} else if (s.kind == LOOKUP && !points.isEmpty() && points.get(points.size() - 1).kind == LOOKUP) {
+				//Two tables in a row are one table
+				Step first = points.remove(points.size() - 1);
+				Step merged = new Step(LOOKUP);
+				merged.table = new int[768];
+				for (int i = 0; i < 768; i++)
+					merged.table[i] = s.table[(i / 256) * 256 + first.table[i]];
+				points.add(merged);
+			} else {
+				points.add(s);
+			}
+		}
+		if (neighbourhood != null || !points.isEmpty())
+			list.add(pass(neighbourhood, points));
+		passes = list.toArray(new Pass[0]);
+	}
+
+	private static Pass pass(Step neighbourhood, ArrayList<Step> points) {
+		Pass p = new Pass();
+		p.neighbourhood = neighbourhood;
+		p.points = points.toArray(new Step[0]);
+		return p;
+	}
+
+	//Runs every filter on source, putting the result in target, which may be source itself or wrap the canvas.
+	//Both must be the same size.  Other than target, only two scratch images and the box blur's column sums are written to, and they are kept for the next run.
+	public void run(PixelRaster source, PixelRaster target) {
+		if (source.getWidth() != target.getWidth() || source.getHeight() != target.getHeight())
+			throw new IllegalArgumentException("The source and target must be the same size");
+		if (passes == null)
+			compile();
+		if (passes.length == 0) {
+			if (target != source)
+				target.copyFrom(source);
+			return;
+		}
+		if (passes.length > 1 || target == source) {
+			if (scratchA == null || scratchA.getWidth() != source.getWidth() || scratchA.getHeight() != source.getHeight()) {
+				scratchA = new PixelRaster(source.getWidth(), source.getHeight());
+				scratchB = new PixelRaster(source.getWidth(), source.getHeight());
+			}
+		}
+		PixelRaster in = source;
+		for (int i = 0; i < passes.length; i++) {
+			Pass p = passes[i];
+			PixelRaster out = i == passes.length - 1 ? target : in == scratchA ? scratchB : scratchA;
+			//Only a pass of point steps can write over what it reads
+			boolean copyBack = p.neighbourhood != null && out == in;
+			if (copyBack)
+				out = in == scratchA ? scratchB : scratchA;
+			runPass(p, in, out);
+			if (copyBack)
+				target.copyFrom(out);
+			in = out;
+		}
+	}
+
+	//Runs the filters on an EasyWindow [x][y][RGB] image, changing it
+	public void run(int[][][] image) {
+		PixelRaster raster = PixelRaster.fromArray(image);
+		run(raster, raster);
+		raster.toArray(image);
+	}
+
+	//How many times the pixels are gone over each run
+	public int getPassCount() {
+		if (passes == null)
+			compile();
+		return passes.length;
+	}
+
+	//Describes each pass, such as "box blur across | box blur down, invert"
+	public String describe() {
+		if (passes == null)
+			compile();
+		StringBuilder sb = new StringBuilder();
+		for (Pass p : passes) {
+			if (sb.length() > 0)
+				sb.append(" | ");
+			String separator = "";
+			if (p.neighbourhood != null) {
+				sb.append(name(p.neighbourhood));
+				separator = ", ";
+			}
+			for (Step s : p.points) {
+				sb.append(separator).append(name(s));
+				separator = ", ";
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String name(Step s) {
+		switch (s.kind) {
+		case MATRIX:
+			return "color matrix";
+		case LOOKUP:
+			return "lookup";
+		case BLEND:
+			return "blend";
+		case BOX_X:
+			return "box blur across";
+		case BOX_Y:
+			return "box blur down";
+		case CONVOLVE_X:
+			return "convolve across";
+		case CONVOLVE_Y:
+			return "convolve down";
+		default:
+			return "convolve";
+		}
+	}
+
+	//Simple set method.  When false, every pass runs on the calling thread.
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	//Simple get method
+	public boolean getParallel() {
+		return parallel;
+	}
+
+	private void runPass(final Pass pass, PixelRaster source, PixelRaster target) {
+		final int[] in = source.getPixels();
+		final int[] out = target.getPixels();
+		final int w = source.getWidth();
+		final int h = source.getHeight();
+		final Step hood = pass.neighbourhood;
+		final Step[] points = pass.points;
+		int bands = (h + BAND_ROWS - 1) / BAND_ROWS;
+		if (hood != null && hood.kind == BOX_Y && columnSums.length < bands * w * 4)
+			columnSums = new int[bands * w * 4];
+		final int[] sums = columnSums;
+		IntConsumer band = new IntConsumer() {
+			@Override
+			public void accept(int b) {
+				int top = b * BAND_ROWS;
+				int bottom = Math.min(h, top + BAND_ROWS);
+				if (hood == null)
+					pointBand(points, in, out, top * w, bottom * w);
+				else if (hood.kind == BOX_X)
+					boxAcross(hood.radius, points, in, out, w, top, bottom);
+				else if (hood.kind == BOX_Y)
+					boxDown(hood.radius, points, in, out, w, h, top, bottom, sums, b * w * 4);
+				else if (hood.kind == CONVOLVE_X)
+					convolveAcross(hood.values, points, in, out, w, top, bottom);
+				else if (hood.kind == CONVOLVE_Y)
+					convolveDown(hood.values, points, in, out, w, h, top, bottom);
+				else
+					convolve(hood.values, hood.radius, points, in, out, w, h, top, bottom);
+			}
+		};
+		if (parallel && w * h >= PARALLEL_PIXELS)
+			IntStream.range(0, bands).parallel().forEach(band);
+		else
+			for (int b = 0; b < bands; b++)
+				band.accept(b);
+	}
+
+	private static void pointBand(Step[] points, int[] in, int[] out, int start, int end) {
+		for (int i = start; i < end; i++) {
+			int p = in[i];
+			out[i] = finish(points, p >>> 24, (p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF, i);
+		}
+	}
+
+	private static void boxAcross(int radius, Step[] points, int[] in, int[] out, int w, int top, int bottom) {
+		int n = radius * 2 + 1;
+		int half = n / 2;
+		for (int y = top; y < bottom; y++) {
+			int row = y * w;
+			int sa = 0, sr = 0, sg = 0, sb = 0;
+			for (int k = -radius; k <= radius; k++) {
+				int p = in[row + clamp(k, w)];
+				sa += p >>> 24;
+				sr += (p >> 16) & 0xFF;
+				sg += (p >> 8) & 0xFF;
+				sb += p & 0xFF;
+			}
+			for (int x = 0; x < w; x++) {
+				out[row + x] = finish(points, (sa + half) / n, (sr + half) / n, (sg + half) / n, (sb + half) / n, row + x);
+				int gone = in[row + clamp(x - radius, w)];
+				int next = in[row + clamp(x + radius + 1, w)];
+				sa += (next >>> 24) - (gone >>> 24);
+				sr += ((next >> 16) & 0xFF) - ((gone >> 16) & 0xFF);
+				sg += ((next >> 8) & 0xFF) - ((gone >> 8) & 0xFF);
+				sb += (next & 0xFF) - (gone & 0xFF);
+			}
+		}
+	}
+
+	//Keeps a running sum for every column of the band, moving it down a row at a time, so every read goes along a row.
+	//The band's sums are the w * 4 ints of sums from offset.
+	private static void boxDown(int radius, Step[] points, int[] in, int[] out, int w, int h, int top, int bottom, int[] sums, int offset) {
+		int n = radius * 2 + 1;
+		int half = n / 2;
+		Arrays.fill(sums, offset, offset + w * 4, 0);
+		for (int k = -radius; k <= radius; k++)
+			addRow(sums, offset, in, clamp(top + k, h) * w, w, 1);
+		for (int y = top; y < bottom; y++) {
+			int row = y * w;
+			for (int x = 0, s = offset; x < w; x++, s += 4)
+				out[row + x] = finish(points, (sums[s] + half) / n, (sums[s + 1] + half) / n, (sums[s + 2] + half) / n,
+						(sums[s + 3] + half) / n, row + x);
+			addRow(sums, offset, in, clamp(y + radius + 1, h) * w, w, 1);
+			addRow(sums, offset, in, clamp(y - radius, h) * w, w, -1);
+		}
+	}
+
+	private static void addRow(int[] sums, int offset, int[] in, int row, int w, int sign) {
+		for (int x = 0, s = offset; x < w; x++, s += 4) {
+			int p = in[row + x];
+			sums[s] += sign * (p >>> 24);
+			sums[s + 1] += sign * ((p >> 16) & 0xFF);
+			sums[s + 2] += sign * ((p >> 8) & 0xFF);
+			sums[s + 3] += sign * (p & 0xFF);
+		}
+	}
+
+	private static void convolveAcross(float[] kernel, Step[] points, int[] in, int[] out, int w, int top, int bottom) {
+		int radius = kernel.length / 2;
+		for (int y = top; y < bottom; y++) {
+			int row = y * w;
+			for (int x = 0; x < w; x++) {
+				float a = 0, r = 0, g = 0, b = 0;
+				for (int k = 0; k < kernel.length; k++) {
+					int p = in[row + clamp(x + k - radius, w)];
+					float weight = kernel[k];
+					a += weight * (p >>> 24);
+					r += weight * ((p >> 16) & 0xFF);
+					g += weight * ((p >> 8) & 0xFF);
+					b += weight * (p & 0xFF);
+				}
+				out[row + x] = finish(points, channel(a), channel(r), channel(g), channel(b), row + x);
+			}
+		}
+	}
+
+	private static void convolveDown(float[] kernel, Step[] points, int[] in, int[] out, int w, int h, int top, int bottom) {
+		int radius = kernel.length / 2;
+		for (int y = top; y < bottom; y++) {
+			int row = y * w;
+			for (int x = 0; x < w; x++) {
+				float a = 0, r = 0, g = 0, b = 0;
+				for (int k = 0; k < kernel.length; k++) {
+					int p = in[clamp(y + k - radius, h) * w + x];
+					float weight = kernel[k];
+					a += weight * (p >>> 24);
+					r += weight * ((p >> 16) & 0xFF);
+					g += weight * ((p >> 8) & 0xFF);
+					b += weight * (p & 0xFF);
+				}
+				out[row + x] = finish(points, channel(a), channel(r), channel(g), channel(b), row + x);
+			}
+		}
+	}
+
+	private static void convolve(float[] kernel, int size, Step[] points, int[] in, int[] out, int w, int h, int top, int bottom) {
+		int radius = size / 2;
+		for (int y = top; y < bottom; y++) {
+			int row = y * w;
+			for (int x = 0; x < w; x++) {
+				float a = 0, r = 0, g = 0, b = 0;
+				for (int ky = 0; ky < size; ky++) {
+					int kernelRow = clamp(y + ky - radius, h) * w;
+					for (int kx = 0; kx < size; kx++) {
+						int p = in[kernelRow + clamp(x + kx - radius, w)];
+						float weight = kernel[ky * size + kx];
+						a += weight * (p >>> 24);
+						r += weight * ((p >> 16) & 0xFF);
+						g += weight * ((p >> 8) & 0xFF);
+						b += weight * (p & 0xFF);
+					}
+				}
+				out[row + x] = finish(points, channel(a), channel(r), channel(g), channel(b), row + x);
+			}
+		}
+	}
+
+	//Runs the point steps on one pixel, whose index is needed for blending, and packs it back into an int
+	private static int finish(Step[] points, int a, int r, int g, int b, int index) {
+		for (Step s : points) {
+			if (s.kind == MATRIX) {
+				float[] m = s.values;
+				int nr = channel(m[0] * r + m[1] * g + m[2] * b + m[3]);
+				int ng = channel(m[4] * r + m[5] * g + m[6] * b + m[7]);
+				int nb = channel(m[8] * r + m[9] * g + m[10] * b + m[11]);
+				r = nr;
+				g = ng;
+				b = nb;
+			} else if (s.kind == LOOKUP) {
+				int[] t = s.table;
+				r = t[r];
+				g = t[256 + g];
+				b = t[512 + b];
+			} else {
+				int o = s.other.getPixels()[index];
+				int or = (o >> 16) & 0xFF;
+				int og = (o >> 8) & 0xFF;
+				int ob = o & 0xFF;
+				int amount = s.amount;
+				if (s.mode == BLEND_ADD) {
+					r = Math.min(255, r + (or * amount >> 8));
+					g = Math.min(255, g + (og * amount >> 8));
+					b = Math.min(255, b + (ob * amount >> 8));
+					continue;
+				}
+				if (s.mode == BLEND_MULTIPLY) {
+					or = r * or / 255;
+					og = g * og / 255;
+					ob = b * ob / 255;
+				} else if (s.mode == BLEND_SCREEN) {
+					or = 255 - (255 - r) * (255 - or) / 255;
+					og = 255 - (255 - g) * (255 - og) / 255;
+					ob = 255 - (255 - b) * (255 - ob) / 255;
+				} else {
+					amount = amount * (o >>> 24) / 255;
+				}
+				r += (or - r) * amount >> 8;
+				g += (og - g) * amount >> 8;
+				b += (ob - b) * amount >> 8;
+			}
+		}
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	private static int channel(float v) {
+		int c = (int) (v + 0.5f);
+		return c < 0 ? 0 : c > 255 ? 255 : c;
+	}
+
+	private static int clamp(int i, int length) {
+		return i < 0 ? 0 : i >= length ? length - 1 : i;
+	}
+
+	//Times each of a few filter lists three ways: one filter at a time on int[][][] images, the way EasyWindow's array images
+	//are usually changed, then as a FilterPipeline on one thread, then on all of them.  Also checks they give the same pixels.
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics g = image.getGraphics();
+		g.drawImage(EasyWindow.loadImage("void.png"), 0, 0, size, size, null);
+		g.dispose();
+		BufferedImage overlayImage = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		g = overlayImage.getGraphics();
+		g.drawImage(EasyWindow.loadImage("asteroid.png"), 0, 0, size, size, null);
+		g.dispose();
+		final int[][][] array = EasyWindow.toArray(image);
+		final int[][][] overlayArray = EasyWindow.toArray(overlayImage);
+		PixelRaster source = PixelRaster.fromArray(array);
+		PixelRaster overlay = PixelRaster.fromArray(overlayArray);
+		PixelRaster target = new PixelRaster(size, size);
+
+		FilterPipeline colors = new FilterPipeline();
+		colors.addBrightness(20);
+		colors.addContrast(1.2);
+		colors.addGrayscale();
+		colors.addThreshold(128);
+		bench("brightness, contrast, grayscale, threshold", colors, source, target, new Naive() {
+			@Override
+			public int[][][] run(int[][][] a) {
+				return threshold(grayscale(matrix(matrix(a, 1, 20), 1.2f, 128 - 128 * 1.2f)), 128);
+			}
+		}, array);
+
+		FilterPipeline blur = new FilterPipeline();
+		blur.addBoxBlur(3);
+		blur.addInvert();
+		bench("box blur (radius 3), invert", blur, source, target, new Naive() {
+			@Override
+			public int[][][] run(int[][][] a) {
+				return matrix(boxBlur(a, 3), -1, 255);
+			}
+		}, array);
+
+		FilterPipeline blend = new FilterPipeline();
+		blend.addBlend(overlay, BLEND_ADD, 0.5);
+		blend.addGamma(1.5);
+		bench("add an overlay at 50%, gamma 1.5", blend, source, target, new Naive() {
+			@Override
+			public int[][][] run(int[][][] a) {
+				return gamma(add(a, overlayArray, 128), 1.5);
+			}
+		}, array);
+	}
+
+	//One filter list done the slow way, for main to compare against
+	private interface Naive {
+		int[][][] run(int[][][] image);
+	}
+
+	private static void bench(String name, FilterPipeline pipeline, PixelRaster source, PixelRaster target, Naive naive, int[][][] array) {
+		int[][][] expected = null;
+		double naiveTime = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < 3; i++) {
+			long start = System.nanoTime();
+			expected = naive.run(array);
+			naiveTime = Math.min(naiveTime, (System.nanoTime() - start) / 1e6);
+		}
+		double[] times = new double[2];
+		for (int parallel = 0; parallel < 2; parallel++) {
+			pipeline.setParallel(parallel == 1);
+			times[parallel] = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < 10; i++) {
+				long start = System.nanoTime();
+				pipeline.run(source, target);
+				times[parallel] = Math.min(times[parallel], (System.nanoTime() - start) / 1e6);
+			}
+		}
+		int difference = 0;
+		int[][][] result = target.toArray();
+		for (int x = 0; x < result.length; x++)
+			for (int y = 0; y < result[0].length; y++)
+				for (int c = 0; c < 3; c++)
+					difference = Math.max(difference, Math.abs(result[x][y][c] - expected[x][y][c]));
+		System.out.printf("%s (%d pass%s: %s)%n", name, pipeline.getPassCount(), pipeline.getPassCount() == 1 ? "" : "es",
+				pipeline.describe());
+		System.out.printf("  int[][][]: %.1f ms   FilterPipeline: %.1f ms   in parallel: %.1f ms (%d cores)   largest difference: %d%n",
+				naiveTime, times[0], times[1], Runtime.getRuntime().availableProcessors(), difference);
+	}
+
+	//The filters one at a time, each making a new copy of the image, like most int[][][] code
+
+	private static int[][][] matrix(int[][][] a, float scale, float offset) {
+		int[][][] b = EasyWindow.copyArrayImage(a);
+		for (int x = 0; x < b.length; x++)
+			for (int y = 0; y < b[0].length; y++)
+				for (int c = 0; c < 3; c++)
+					b[x][y][c] = channel(scale * b[x][y][c] + offset);
+		return b;
+	}
+
+	private static int[][][] grayscale(int[][][] a) {
+		int[][][] b = EasyWindow.copyArrayImage(a);
+		for (int x = 0; x < b.length; x++)
+			for (int y = 0; y < b[0].length; y++) {
+				int gray = channel(GRAY[0] * b[x][y][0] + GRAY[1] * b[x][y][1] + GRAY[2] * b[x][y][2]);
+				b[x][y][0] = gray;
+				b[x][y][1] = gray;
+				b[x][y][2] = gray;
+			}
+		return b;
+	}
+
+	private static int[][][] threshold(int[][][] a, int level) {
+		int[][][] b = grayscale(a);
+		for (int x = 0; x < b.length; x++)
+			for (int y = 0; y < b[0].length; y++)
+				for (int c = 0; c < 3; c++)
+					b[x][y][c] = b[x][y][c] >= level ? 255 : 0;
+		return b;
+	}
+
+	private static int[][][] boxBlur(int[][][] a, int radius) {
+		int[][][] b = EasyWindow.copyArrayImage(a);
+		int w = a.length;
+		int h = a[0].length;
+		int n = (radius * 2 + 1) * (radius * 2 + 1);
+		for (int x = 0; x < w; x++)
+			for (int y = 0; y < h; y++)
+				for (int c = 0; c < 3; c++) {
+					int sum = 0;
+					for (int dx = -radius; dx <= radius; dx++)
+						for (int dy = -radius; dy <= radius; dy++)
+							sum += a[clamp(x + dx, w)][clamp(y + dy, h)][c];
+					b[x][y][c] = (sum + n / 2) / n;
+				}
+		return b;
+	}
+
+	private static int[][][] add(int[][][] a, int[][][] other, int amount) {
+		int[][][] b = EasyWindow.copyArrayImage(a);
+		for (int x = 0; x < b.length; x++)
+			for (int y = 0; y < b[0].length; y++)
+				for (int c = 0; c < 3; c++)
+					b[x][y][c] = Math.min(255, b[x][y][c] + (other[x][y][c] * amount >> 8));
+		return b;
+	}
+
+	private static int[][][] gamma(int[][][] a, double gamma) {
+		int[][][] b = EasyWindow.copyArrayImage(a);
+		for (int x = 0; x < b.length; x++)
+			for (int y = 0; y < b[0].length; y++)
+				for (int c = 0; c < 3; c++)
+					b[x][y][c] = (int) (255 * Math.pow(b[x][y][c] / 255.0, 1 / gamma) + 0.5);
+		return b;
+	}
+}
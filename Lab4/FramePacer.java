@@ -0,0 +1,134 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FramePacer
+ *
+ * Holds a loop to a target frame rate so it does not spin a core drawing frames nobody sees.
+ * Waiting is done in two parts: the thread sleeps until it is close to the deadline, then yields in a short spin for the rest.
+ * How close is the slack, which adapts to how late the operating system actually wakes the thread up,
+ * so frames stay even without spinning any longer than this machine needs.
+ *
+ * If a frame runs so long that whole frame periods are missed, the pacer does not try to catch up by rushing;
+ * it starts counting from now and reports the missed periods as skipped frames.
+ *
+ */
+public class FramePacer {
+
+	private static final long MIN_SLACK_NANO = 200000;    //0.2 ms
+	private static final long MAX_SLACK_NANO = 4000000;   //4 ms
+	private static final double SLACK_DECAY = 0.995;
+
+	private long periodNano;
+	private long nextFrameNano;
+	private double slackNano;
+	private long skippedFrames;
+	private long pacedFrames;
+	private long lastWaitNano;
+	private long spunNano;
+
+	/**
+	 * Creates a FramePacer.
+	 * @param targetFps The number of frames per second to hold the loop to.
+	 */
+	public FramePacer(double targetFps) {
+		setTargetFps(targetFps);
+		slackNano = 1000000;
+		nextFrameNano = 0;
+	}
+
+	/**
+	 * Changes the target frame rate.  Takes effect on the next frame.
+	 * @param targetFps The number of frames per second to hold the loop to.  Must be more than 0.
+	 */
+	public void setTargetFps(double targetFps) {
+		if (targetFps <= 0)
+			throw new IllegalArgumentException("Target FPS must be positive: " + targetFps);
+		periodNano = (long) (1000000000.0 / targetFps);
+	}
+
+	/**
+	 * @return The target number of frames per second.
+	 */
+	public double getTargetFps() {
+		return 1000000000.0 / periodNano;
+	}
+
+	/**
+	 * Waits until it is time for the next frame.  Call once per frame, right before the frame is shown.
+	 */
+	public void waitForNextFrame() {
+		long start = System.nanoTime();
+		if (nextFrameNano == 0)
+			nextFrameNano = start;
+		long target = nextFrameNano;
+		if (start - target >= periodNano) {
+			//Fell behind by whole frames; drop them rather than rushing the next few
+			skippedFrames += (start - target) / periodNano;
+			target = start;
+		} else if (target - start > 0) {
+			long sleepFor = target - start - (long) slackNano;
+			if (sleepFor > 0) {
+				long sleepStart = System.nanoTime();
+				LockSupport.parkNanos(sleepFor);
+				long overslept = System.nanoTime() - sleepStart - sleepFor;
+				adaptSlack(overslept);
+			}
+			long spinStart = System.nanoTime();
+			while (System.nanoTime() - target < 0)
+				Thread.yield();
+			spunNano += System.nanoTime() - spinStart;
+		}
+		nextFrameNano = target + periodNano;
+		lastWaitNano = System.nanoTime() - start;
+		pacedFrames++;
+	}
+
+	//Slack jumps up to the worst recent oversleep, then slowly decays back down
+	private void adaptSlack(long oversleptNano) {
+		double decayed = slackNano * SLACK_DECAY;
+		slackNano = Math.max(decayed, oversleptNano * 1.25);
+		slackNano = Math.max(MIN_SLACK_NANO, Math.min(MAX_SLACK_NANO, slackNano));
+	}
+
+	/**
+	 * Forgets the schedule, so the next frame is not counted as late.  Useful after a pause, such as loading.
+	 */
+	public void reset() {
+		nextFrameNano = 0;
+	}
+
+	/**
+	 * @return How many frame periods were missed because frames took too long.
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * @return How many frames have been paced.
+	 */
+	public long getPacedFrames() {
+		return pacedFrames;
+	}
+
+	/**
+	 * @return How long the last call to waitForNextFrame waited, in nanoseconds.
+	 */
+	public long getLastWaitNano() {
+		return lastWaitNano;
+	}
+
+	/**
+	 * @return How long has been spent spinning instead of sleeping in total, in nanoseconds.
+	 */
+	public long getSpunNano() {
+		return spunNano;
+	}
+
+	/**
+	 * @return The current slack: how long before the deadline sleeping stops and spinning starts, in nanoseconds.
+	 */
+	public long getSlackNano() {
+		return (long) slackNano;
+	}
+}
@@ -0,0 +1,126 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * FramePresenter
+ *
+ * Shows frames in an {@link EasyWindow} from the Swing event thread, so the game thread never waits on scaling or on Swing.
+ * Frames are triple-buffered: the game thread copies a finished frame into the back buffer and swaps it with the ready buffer,
+ * and the event thread swaps the ready buffer with the one on screen.  Neither thread ever waits for the other.
+ * If the game finishes frames faster than the screen shows them, the ready buffer is simply replaced, so only the newest frame is ever shown.
+ *
+ */
+public class FramePresenter {
+
+	private final EasyWindow window;
+	private final Object lock;
+	private BufferedImage back;
+	private BufferedImage ready;
+	private BufferedImage shown;
+	private boolean readyIsNew;
+	private boolean presentQueued;
+	private long submittedFrames;
+	private long presentedFrames;
+	private long droppedFrames;
+
+	private final Runnable presentTask = new Runnable() {
+		@Override
+		public void run() {
+			BufferedImage frame;
+			synchronized (lock) {
+				presentQueued = false;
+				if (!readyIsNew)
+					return;
+				frame = ready;
+				ready = shown;
+				shown = frame;
+				readyIsNew = false;
+				presentedFrames++;
+			}
+			window.presentImage(frame);
+		}
+	};
+
+	/**
+	 * Creates a FramePresenter for a window.
+	 * @param window The window to show frames in.
+	 */
+	public FramePresenter(EasyWindow window) {
+		this.window = window;
+		lock = new Object();
+	}
+
+	/**
+	 * Hands a finished frame to the presenter and returns right away.  The frame is copied, so the caller can draw the next frame into the same image.
+	 * @param frame The finished frame.
+	 */
+	public void submit(BufferedImage frame) {
+		BufferedImage target = back;
+		if (target == null || target.getWidth() != frame.getWidth() || target.getHeight() != frame.getHeight())
+			target = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		copy(frame, target);
+		boolean queue;
+		synchronized (lock) {
+			if (readyIsNew)
+				droppedFrames++;
+			back = ready;
+			ready = target;
+			readyIsNew = true;
+			submittedFrames++;
+			queue = !presentQueued;
+			presentQueued = true;
+		}
+		if (queue)
+			SwingUtilities.invokeLater(presentTask);
+	}
+
+	//Copies whole rasters directly when both images are int ARGB, otherwise lets Java2D convert
+	private static void copy(BufferedImage from, BufferedImage to) {
+		int[] dst = ((DataBufferInt) to.getRaster().getDataBuffer()).getData();
+		if ((from.getType() == BufferedImage.TYPE_INT_ARGB || from.getType() == BufferedImage.TYPE_INT_RGB)
+				&& from.getRaster().getDataBuffer().getSize() == dst.length) {
+			int[] src = ((DataBufferInt) from.getRaster().getDataBuffer()).getData();
+			if (from.getType() == BufferedImage.TYPE_INT_ARGB) {
+				System.arraycopy(src, 0, dst, 0, dst.length);
+			} else {
+				for (int i = 0; i < dst.length; i++)
+					dst[i] = src[i] | 0xFF000000;
+			}
+			return;
+		}
+		Graphics g = to.getGraphics();
+		g.clearRect(0, 0, to.getWidth(), to.getHeight());
+		g.drawImage(from, 0, 0, null);
+		g.dispose();
+	}
+
+	/**
+	 * @return How many frames were handed to the presenter.
+	 */
+	public long getSubmittedFrames() {
+		synchronized (lock) {
+			return submittedFrames;
+		}
+	}
+
+	/**
+	 * @return How many frames were actually shown.
+	 */
+	public long getPresentedFrames() {
+		synchronized (lock) {
+			return presentedFrames;
+		}
+	}
+
+	/**
+	 * @return How many frames were replaced by a newer frame before they could be shown.
+	 */
+	public long getDroppedFrames() {
+		synchronized (lock) {
+			return droppedFrames;
+		}
+	}
+}
@@ -0,0 +1,452 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.zip.Deflater;
+
+/**
+ * FrameStreamer
+ *
+ * Sends the frames shown by an {@link EasyWindow} to every other program connected to it, such as a {@link FrameViewer} watching from another computer.
+ * Each frame is cut into square tiles and every tile is hashed; only the tiles whose hash changed since the last frame are sent,
+ * squeezed together with a Deflater at its fastest setting, as a {@link FrameTiles}.  A viewer that has just connected gets a keyframe with every tile first.
+ * Frames go to every connection the window has, so use a window (and port) just for streaming, not one that also sends other Objects.
+ *
+ * The game thread only copies each frame and hands it over; hashing, compressing and sending happen on a streaming thread of its own,
+ * so neither the encoding nor a slow viewer's connection holds up the game.  Frames are triple-buffered like in {@link FramePresenter}:
+ * if the game finishes frames faster than they can be sent, the waiting frame is replaced, and viewers just get the newest one.
+ *
+ * Run "java FrameStreamer [frames]" to stream a headless Lab4 world to a viewer over loopback, checking every frame arrives exactly,
+ * and to measure the bytes and time each frame takes.
+ *
+ */
+public class FrameStreamer {
+
+	public static final int DEFAULT_TILE_SIZE = 32;
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private final EasyWindow window;
+	private final int tileSize;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final HashSet<String> viewers = new HashSet<String>();  //connections that have had a keyframe
+	private final Object lock = new Object();
+	private final Thread thread;
+
+	//Frames waiting to be sent, guarded by lock except where noted
+	private int[] back;     //only touched by the game thread: the next frame is copied into it
+	private int[] ready;    //the newest frame, waiting for the streaming thread
+	private int[] spare;    //given back by the streaming thread once it has sent from it
+	private int readyWidth;
+	private int readyHeight;
+	private boolean readyIsNew;
+	private boolean running = true;
+
+	//Only touched by the streaming thread
+	private int width;
+	private int height;
+	private int tilesX;
+	private long[] hashes = new long[0];     //of the tiles the viewers have
+	private long[] newHashes = new long[0];
+	private int[] changed = new int[0];
+	private byte[] raw = new byte[0];
+	private byte[] compressed = new byte[0];
+
+	//Statistics, guarded by lock
+	private long frames;
+	private long droppedFrames;
+	private long keyframes;
+	private long deltaFrames;
+	private long deltaBytes;
+	private long deltaTiles;
+	private long bytesSent;
+	private long encodeNano;
+	private int lastPacketBytes;
+	private int tileCount;
+
+	/**
+	 * Creates a FrameStreamer and starts its streaming thread.
+	 * @param window The window whose connections the frames are sent to.
+	 * @param tileSize The width and height of the tiles, in pixels.  Smaller tiles send less around small changes, but cost more to hash and describe.
+	 */
+	public FrameStreamer(EasyWindow window, int tileSize) {
+		this.window = window;
+		this.tileSize = tileSize;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				streamLoop();
+			}
+		}, "FrameStreamer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Hands a frame to the streaming thread and returns right away.  Called by EasyWindow.update when streaming.
+	 * The frame is copied, so the caller can draw the next frame into the same image.
+	 * @param image The frame.
+	 */
+	public void stream(BufferedImage image) {
+		if (window.getConnections().length == 0)
+			return;
+		int size = image.getWidth() * image.getHeight();
+		int[] target = back;
+		if (target == null || target.length != size)
+			target = new int[size];
+		if (image.getType() == BufferedImage.TYPE_INT_ARGB)
+			System.arraycopy(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, target, 0, size);
+		else
+			image.getRGB(0, 0, image.getWidth(), image.getHeight(), target, 0, image.getWidth());
+		synchronized (lock) {
+			if (readyIsNew)
+				droppedFrames++;
+			back = ready != null ? ready : spare;
+			if (back == spare)
+				spare = null;
+			ready = target;
+			readyWidth = image.getWidth();
+			readyHeight = image.getHeight();
+			readyIsNew = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stops the streaming thread, after it finishes any frame it is sending, and frees the compressor.
+	 * Called by EasyWindow.stopFrameStreaming.
+	 */
+	public void close() {
+		synchronized (lock) {
+			running = false;
+			lock.notifyAll();
+		}
+		if (Thread.currentThread() != thread) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	//The streaming thread: waits for each new frame and sends it
+	private void streamLoop() {
+		int[] sending = null;
+		try {
+			while (true) {
+				int frameWidth;
+				int frameHeight;
+				synchronized (lock) {
+					if (sending != null)
+						spare = sending;
+					while (running && !readyIsNew)
+						lock.wait();
+					if (!running)
+						break;
+					sending = ready;
+					ready = null;
+					readyIsNew = false;
+					frameWidth = readyWidth;
+					frameHeight = readyHeight;
+				}
+				send(sending, frameWidth, frameHeight);
+			}
+		} catch (InterruptedException e) {
+		} finally {
+			deflater.end();
+		}
+	}
+
+	//Sends what changed in a frame to every connection
+	private void send(int[] pixels, int frameWidth, int frameHeight) {
+		String[] connections = window.getConnections();
+		if (connections.length == 0) {
+			viewers.clear();
+			return;
+		}
+		long start = System.nanoTime();
+		if (frameWidth != width || frameHeight != height)
+			resize(frameWidth, frameHeight);
+		int tiles = hashes.length;
+		for (int t = 0; t < tiles; t++)
+			newHashes[t] = hashTile(pixels, t);
+		boolean anyNew = false;
+		boolean anyOld = false;
+		for (String c : connections) {
+			if (viewers.contains(c))
+				anyOld = true;
+			else
+				anyNew = true;
+		}
+		viewers.retainAll(Arrays.asList(connections));
+		long frame;
+		synchronized (lock) {
+			frame = frames;
+		}
+		FrameTiles delta = null;
+		int count = 0;
+		if (anyOld) {
+			for (int t = 0; t < tiles; t++)
+				if (newHashes[t] != hashes[t])
+					changed[count++] = t;
+			delta = encode(pixels, count, false, frame);
+		}
+		FrameTiles key = null;
+		if (anyNew) {
+			for (int t = 0; t < tiles; t++)
+				changed[t] = t;
+			key = encode(pixels, tiles, true, frame);
+		}
+		long[] swap = hashes;
+		hashes = newHashes;
+		newHashes = swap;
+		long encoded = System.nanoTime() - start;
+
+		int newKeyframes = 0;
+		long sent = 0;
+		int lastBytes = 0;
+		for (String c : connections) {
+			boolean old = viewers.contains(c);
+			FrameTiles packet = old ? delta : key;
+			if (window.send(c, packet) == null) {
+				viewers.remove(c);
+				continue;
+			}
+			sent += packet.getData().length;
+			lastBytes = packet.getData().length;
+			if (!old) {
+				viewers.add(c);
+				newKeyframes++;
+			}
+		}
+		synchronized (lock) {
+			frames++;
+			encodeNano += encoded;
+			if (delta != null) {
+				deltaFrames++;
+				deltaBytes += delta.getData().length;
+				deltaTiles += count;
+			}
+			keyframes += newKeyframes;
+			bytesSent += sent;
+			if (sent > 0)
+				lastPacketBytes = lastBytes;
+			tileCount = tiles;
+		}
+	}
+
+	//Starts over with a frame of a new size; every viewer gets a keyframe next
+	private void resize(int newWidth, int newHeight) {
+		width = newWidth;
+		height = newHeight;
+		tilesX = (width + tileSize - 1) / tileSize;
+		int tiles = tilesX * ((height + tileSize - 1) / tileSize);
+		hashes = new long[tiles];
+		newHashes = new long[tiles];
+		changed = new int[tiles];
+		raw = new byte[width * height * 4];
+		compressed = new byte[Math.max(1024, raw.length / 4)];
+		viewers.clear();
+	}
+
+	private long hashTile(int[] pixels, int tile) {
+		int left = (tile % tilesX) * tileSize;
+		int top = (tile / tilesX) * tileSize;
+		int right = Math.min(width, left + tileSize);
+		int bottom = Math.min(height, top + tileSize);
+		long h = tile;
+		for (int y = top; y < bottom; y++) {
+			int row = y * width;
+			for (int i = row + left, end = row + right; i < end; i++)
+				h = (h ^ pixels[i]) * HASH_MULTIPLIER;
+		}
+		return h ^ (h >>> 32);
+	}
+
+	//Compresses the first count tiles of changed into a FrameTiles
+	private FrameTiles encode(int[] pixels, int count, boolean keyframe, long frame) {
+		int n = 0;
+		for (int c = 0; c < count; c++) {
+			int tile = changed[c];
+			int left = (tile % tilesX) * tileSize;
+			int top = (tile / tilesX) * tileSize;
+			int right = Math.min(width, left + tileSize);
+			int bottom = Math.min(height, top + tileSize);
+			for (int y = top; y < bottom; y++) {
+				int row = y * width;
+				for (int i = row + left, end = row + right; i < end; i++) {
+					int p = pixels[i];
+					raw[n] = (byte) (p >>> 24);
+					raw[n + 1] = (byte) (p >>> 16);
+					raw[n + 2] = (byte) (p >>> 8);
+					raw[n + 3] = (byte) p;
+					n += 4;
+				}
+			}
+		}
+		deflater.reset();
+		deflater.setInput(raw, 0, n);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == compressed.length)
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		return new FrameTiles(frame, width, height, tileSize, keyframe, Arrays.copyOf(changed, count), Arrays.copyOf(compressed, length), n);
+	}
+
+	/**
+	 * @return How many frames have been streamed, not counting frames with nobody connected.
+	 */
+	public long getFrames() {
+		synchronized (lock) {
+			return frames;
+		}
+	}
+
+	/**
+	 * @return How many frames were replaced by a newer frame before the streaming thread got to them.
+	 */
+	public long getDroppedFrames() {
+		synchronized (lock) {
+			return droppedFrames;
+		}
+	}
+
+	/**
+	 * @return How many keyframes have been sent, one for each viewer that connected.
+	 */
+	public long getKeyframes() {
+		synchronized (lock) {
+			return keyframes;
+		}
+	}
+
+	/**
+	 * @return The average compressed size of a frame's changed tiles, in bytes, sent to each viewer that already had the previous frame.
+	 */
+	public double getAverageDeltaBytes() {
+		synchronized (lock) {
+			return deltaFrames == 0 ? 0 : deltaBytes / (double) deltaFrames;
+		}
+	}
+
+	/**
+	 * @return The average number of tiles that changed each frame.
+	 */
+	public double getAverageChangedTiles() {
+		synchronized (lock) {
+			return deltaFrames == 0 ? 0 : deltaTiles / (double) deltaFrames;
+		}
+	}
+
+	/**
+	 * @return The number of tiles in a whole frame.
+	 */
+	public int getTileCount() {
+		synchronized (lock) {
+			return tileCount;
+		}
+	}
+
+	/**
+	 * @return The average time the streaming thread spent hashing and compressing a frame, in milliseconds, not counting sending it.
+	 */
+	public double getAverageEncodeMillis() {
+		synchronized (lock) {
+			return frames == 0 ? 0 : encodeNano / 1e6 / frames;
+		}
+	}
+
+	/**
+	 * @return The compressed bytes sent to all viewers altogether.
+	 */
+	public long getBytesSent() {
+		synchronized (lock) {
+			return bytesSent;
+		}
+	}
+
+	/**
+	 * @return The compressed size of the last packet sent, in bytes.
+	 */
+	public int getLastPacketBytes() {
+		synchronized (lock) {
+			return lastPacketBytes;
+		}
+	}
+
+	/**
+	 * @return The tile size.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 5001;
+		Wormhole.loadImages();
+		Asteroid.loadImages();
+		BufferedImage background = EasyWindow.loadImage("void.png");
+		World world = new World(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, 3);
+		world.scatterAsteroids(40);
+		BufferedImage canvas = new BufferedImage(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+		EasyWindow host = new EasyWindow("FrameStreamer", false, EasyWindow.MODE_PACK, true);
+		String hosted = host.host(port);
+		host.startFrameStreaming(DEFAULT_TILE_SIZE);
+		FrameViewer viewer = new FrameViewer();
+		EasyWindow viewerWindow = new EasyWindow("FrameViewer", false, EasyWindow.MODE_PACK, true);
+		String server = "127.0.0.1:" + port;
+		if (!viewerWindow.connect(server)) {
+			System.out.println("Couldn't connect to " + hosted);
+			return;
+		}
+		while (host.getConnections().length == 0)
+			Thread.sleep(1);
+
+		int mismatches = 0;
+		long decodeNano = 0;
+		long updateNano = 0;
+		long start = System.nanoTime();
+		for (int f = 0; f < frameCount; f++) {
+			world.step(1 / 60.0);
+			Graphics g = canvas.getGraphics();
+			g.drawImage(background, 0, 0, canvas.getWidth(), canvas.getHeight(), null);
+			for (Entity e : world.getEntities())
+				e.draw(g);
+			g.dispose();
+			long updateStart = System.nanoTime();
+			host.update(canvas);
+			updateNano += System.nanoTime() - updateStart;
+			//Wait for the viewer to get this frame, then check it has exactly what was sent
+			FrameTiles tiles;
+			while ((tiles = (FrameTiles) viewerWindow.receive(server)) == null)
+				Thread.yield();
+			long decodeStart = System.nanoTime();
+			viewer.apply(tiles);
+			decodeNano += System.nanoTime() - decodeStart;
+			int[] shown = ((DataBufferInt) viewer.getImage().getRaster().getDataBuffer()).getData();
+			if (!Arrays.equals(shown, ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData()))
+				mismatches++;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		FrameStreamer streamer = host.getFrameStreamer();
+		host.stopFrameStreaming();
+		double rawKb = canvas.getWidth() * canvas.getHeight() * 4 / 1024.0;
+		System.out.printf("%d frames of %d x %d in %.1f s, %d keyframe(s), %d mismatched%n", frameCount, canvas.getWidth(), canvas.getHeight(),
+				seconds, streamer.getKeyframes(), mismatches);
+		System.out.printf("Changed tiles: %.1f of %d a frame%n", streamer.getAverageChangedTiles(), streamer.getTileCount());
+		System.out.printf("Sent: %.1f KB a frame (raw frame %.0f KB), %.1f KB/s at %d fps%n", streamer.getAverageDeltaBytes() / 1024, rawKb,
+				streamer.getAverageDeltaBytes() * Lab4.TARGET_FPS / 1024, Lab4.TARGET_FPS);
+		System.out.printf("Encode: %.3f ms a frame on the streaming thread   Decode: %.3f ms a frame%n", streamer.getAverageEncodeMillis(),
+				decodeNano / 1e6 / frameCount);
+		System.out.printf("Game thread: %.3f ms a frame in update, %d frame(s) dropped%n", updateNano / 1e6 / frameCount, streamer.getDroppedFrames());
+		viewer.close();
+		host.closeAllConnections();
+		viewerWindow.closeAllConnections();
+	}
+}
@@ -0,0 +1,75 @@
+import java.io.Serializable;
+
+//The tiles of a frame that changed since the last one a FrameStreamer sent, for a FrameViewer to draw over its copy.
+//A keyframe has every tile, for a viewer that has nothing yet.  The tiles' pixels are ARGB ints, 4 bytes each, high byte first,
+//one tile after another in the order of tileIndices, each row by row, all compressed together with a Deflater.
+public class FrameTiles implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long frame;
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final boolean keyframe;
+	private final int[] tileIndices;  //row by row across the frame, tiles at the right and bottom edges cut short
+	private final byte[] data;
+	private final int rawBytes;       //how long data is once inflated
+
+	//Constructor.  Keeps the arrays as they are, so don't change them afterwards.
+	public FrameTiles(long frame, int width, int height, int tileSize, boolean keyframe, int[] tileIndices, byte[] data, int rawBytes) {
+		this.frame = frame;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.keyframe = keyframe;
+		this.tileIndices = tileIndices;
+		this.data = data;
+		this.rawBytes = rawBytes;
+	}
+
+	//Simple get method
+	public long getFrame() {
+		return frame;
+	}
+
+	//Simple get method
+	public int getWidth() {
+		return width;
+	}
+
+	//Simple get method
+	public int getHeight() {
+		return height;
+	}
+
+	//Simple get method
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	//Simple get method
+	public boolean getKeyframe() {
+		return keyframe;
+	}
+
+	//How many tiles changed
+	public int getTileCount() {
+		return tileIndices.length;
+	}
+
+	//Gets the index of the i-th changed tile
+	public int getTileIndex(int i) {
+		return tileIndices[i];
+	}
+
+	//Gets the compressed pixels.  Don't change them.
+	public byte[] getData() {
+		return data;
+	}
+
+	//Simple get method
+	public int getRawBytes() {
+		return rawBytes;
+	}
+}
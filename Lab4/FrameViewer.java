@@ -0,0 +1,138 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+//Watches a program streaming its frames with a FrameStreamer, by drawing the tiles it sends over its own copy of the frame.
+//Run it with "java FrameViewer <address:port>", such as after starting Lab4 with "<seed> stream <port>".
+public class FrameViewer
+{
+  private final Inflater inflater = new Inflater();
+  private BufferedImage image;
+  private int[] pixels;
+  private byte[] raw = new byte[0];
+  private boolean started;  //true once a keyframe has arrived
+  private long frames;
+  private long bytes;
+
+  //Draws the tiles over the frame so far.  Tiles that come before the first keyframe are ignored, since there is nothing to draw them over.
+  public void apply(FrameTiles tiles)
+  {
+    if(!tiles.getKeyframe() && !started)
+      return;
+    if(image == null || image.getWidth() != tiles.getWidth() || image.getHeight() != tiles.getHeight())
+    {
+      image = new BufferedImage(tiles.getWidth(), tiles.getHeight(), BufferedImage.TYPE_INT_ARGB);
+      pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+    started = true;
+    if(raw.length < tiles.getRawBytes())
+      raw = new byte[tiles.getRawBytes()];
+    inflater.reset();
+    inflater.setInput(tiles.getData());
+    try
+    {
+      int n = 0;
+      while(n < tiles.getRawBytes() && !inflater.finished())
+        n += inflater.inflate(raw, n, tiles.getRawBytes() - n);
+    }
+    catch(DataFormatException e)
+    {
+      System.err.println("Bad frame " + tiles.getFrame() + ": " + e.getMessage());
+      started = false;
+      return;
+    }
+    int width = tiles.getWidth();
+    int height = tiles.getHeight();
+    int size = tiles.getTileSize();
+    int tilesX = (width + size - 1) / size;
+    int n = 0;
+    for(int c = 0; c < tiles.getTileCount(); c++)
+    {
+      int tile = tiles.getTileIndex(c);
+      int left = (tile % tilesX) * size;
+      int top = (tile / tilesX) * size;
+      int right = Math.min(width, left + size);
+      int bottom = Math.min(height, top + size);
+      for(int y = top; y < bottom; y++)
+        for(int i = y * width + left, end = y * width + right; i < end; i++)
+        {
+          pixels[i] = (raw[n] & 0xFF) << 24 | (raw[n + 1] & 0xFF) << 16 | (raw[n + 2] & 0xFF) << 8 | (raw[n + 3] & 0xFF);
+          n += 4;
+        }
+    }
+    frames++;
+    bytes += tiles.getData().length;
+  }
+
+  //Frees the decompressor.  The viewer can't apply tiles afterwards.
+  public void close()
+  {
+    inflater.end();
+  }
+
+  //Gets the frame so far, or null before the first keyframe
+  public BufferedImage getImage()
+  {
+    return image;
+  }
+
+  //Simple get method
+  public long getFrames()
+  {
+    return frames;
+  }
+
+  //Simple get method
+  public long getBytes()
+  {
+    return bytes;
+  }
+
+  public static void main(String[] args)
+  {
+    if(args.length < 1)
+    {
+      System.out.println("Usage: java FrameViewer <address:port>");
+      return;
+    }
+    String server = args[0];
+    EasyWindow ew = new EasyWindow("FrameViewer - " + server, true, EasyWindow.MODE_STRETCH);
+    if(!ew.connect(server))
+    {
+      System.out.println("Couldn't connect to " + server);
+      ew.setQuit(true);
+      return;
+    }
+    FrameViewer viewer = new FrameViewer();
+    BufferedImage waiting = new BufferedImage(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    double reportTime = 0;
+    long reportBytes = 0;
+    long reportFrames = 0;
+    while(!ew.getQuit())
+    {
+      while(ew.hasReceive(server))
+      {
+        Object o = ew.receive(server);
+        if(o instanceof FrameTiles)
+          viewer.apply((FrameTiles) o);
+      }
+      if(ew.getConnections().length == 0 && !ew.hasReceive(server))
+      {
+        System.out.println("Disconnected from " + server);
+        ew.setQuit(true);
+      }
+      reportTime += ew.getDeltaTime();
+      if(reportTime >= 1)
+      {
+        ew.setTitle(String.format("FrameViewer - %s - %d fps, %.1f KB/s", server, viewer.getFrames() - reportFrames,
+            (viewer.getBytes() - reportBytes) / 1024.0 / reportTime));
+        reportTime = 0;
+        reportBytes = viewer.getBytes();
+        reportFrames = viewer.getFrames();
+      }
+      ew.update(viewer.getImage() == null ? waiting : viewer.getImage());
+    }
+    viewer.close();
+  }
+}
@@ -0,0 +1,292 @@
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//Works out the pull of gravity on many bodies at once, using a Barnes-Hut quadtree.
+//Every frame, clear it, add each body with addBody, then call solve and read back each body's acceleration.
+//Far away groups of bodies pull as if they were one body at their center of mass, which brings the cost
+//from O(n^2) down to about O(n log n).  How far counts as far away is set by theta: a group is treated as one
+//body when its size divided by its distance is below theta.  0 is exact but slow; around 0.5 - 1 is typical.
+//Bodies with no mass feel gravity but don't cause any, and are left out of the tree.
+//The tree is stored in flat arrays that are reused from frame to frame, and the forces are worked out in parallel.
+public class GravityField {
+
+	private static final int MAX_DEPTH = 32;          //cells this small just keep a list of bodies
+	private static final int PARALLEL_BODIES = 2048;  //fewer bodies than this are not worth splitting between threads
+	private static final int BAND_BODIES = 512;
+
+	private double theta;
+	private double softening;  //keeps the pull finite when two bodies are almost on top of each other
+
+	//Bodies
+	private double[] xs = new double[256];
+	private double[] ys = new double[256];
+	private double[] masses = new double[256];
+	private double[] accelXs = new double[256];
+	private double[] accelYs = new double[256];
+	private int[] next = new int[256];  //the next body in the same leaf, or -1
+	private int[] order = new int[256]; //bodies in the order the tree visits them, so neighbors are solved together
+	private int count;
+
+	//Nodes.  The four children of a node are stored next to each other, starting at firstChild.
+	private int[] firstChild = new int[256];  //-1 for a leaf
+	private int[] bodies = new int[256];      //the first body in a leaf, or -1 if empty
+	private double[] nodeMass = new double[256];
+	private double[] nodeX = new double[256];  //center of mass
+	private double[] nodeY = new double[256];
+	private double[] centerX = new double[256];  //center of the square cell
+	private double[] centerY = new double[256];
+	private double[] halfSize = new double[256];
+	private int nodeCount;
+	private int ordered;
+
+	//Constructor
+	public GravityField(double theta, double softening) {
+		this.theta = theta;
+		this.softening = softening;
+	}
+
+	//Forgets every body
+	public void clear() {
+		count = 0;
+	}
+
+	//Adds a body and returns its index, used to read its acceleration after solve.
+	//Mass already includes the gravitational constant.
+	public int addBody(double x, double y, double mass) {
+		if (count == xs.length) {
+			int size = count * 2;
+			xs = grow(xs, size);
+			ys = grow(ys, size);
+			masses = grow(masses, size);
+			accelXs = grow(accelXs, size);
+			accelYs = grow(accelYs, size);
+			next = grow(next, size);
+			order = grow(order, size);
+		}
+		xs[count] = x;
+		ys[count] = y;
+		masses[count] = mass;
+		return count++;
+	}
+
+	//Builds the tree, then works out the acceleration of every body
+	public void solve() {
+		buildTree();
+		final double thetaSquared = theta * theta;
+		final double softSquared = softening * softening;
+		IntConsumer band = new IntConsumer() {
+			@Override
+			public void accept(int b) {
+				int end = Math.min(count, (b + 1) * BAND_BODIES);
+				int[] stack = new int[MAX_DEPTH * 3 + 4];
+				for (int i = b * BAND_BODIES; i < end; i++)
+					accelerate(order[i], thetaSquared, softSquared, stack);
+			}
+		};
+		int bands = (count + BAND_BODIES - 1) / BAND_BODIES;
+		if (count >= PARALLEL_BODIES)
+			IntStream.range(0, bands).parallel().forEach(band);
+		else
+			for (int b = 0; b < bands; b++)
+				band.accept(b);
+	}
+
+	private void buildTree() {
+		nodeCount = 0;
+		ordered = 0;
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			if (masses[i] == 0)
+				continue;
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		if (minX <= maxX) {
+			int root = newNode((minX + maxX) / 2, (minY + maxY) / 2, Math.max(Math.max(maxX - minX, maxY - minY) / 2, 1) * 1.0001);
+			for (int i = 0; i < count; i++)
+				if (masses[i] != 0)
+					insert(root, i);
+			summarize(root);
+		}
+		for (int i = 0; i < count; i++)
+			if (masses[i] == 0)
+				order[ordered++] = i;
+	}
+
+	private int newNode(double cx, double cy, double half) {
+		if (nodeCount == firstChild.length) {
+			int size = nodeCount * 2;
+			firstChild = grow(firstChild, size);
+			bodies = grow(bodies, size);
+			nodeMass = grow(nodeMass, size);
+			nodeX = grow(nodeX, size);
+			nodeY = grow(nodeY, size);
+			centerX = grow(centerX, size);
+			centerY = grow(centerY, size);
+			halfSize = grow(halfSize, size);
+		}
+		firstChild[nodeCount] = -1;
+		bodies[nodeCount] = -1;
+		centerX[nodeCount] = cx;
+		centerY[nodeCount] = cy;
+		halfSize[nodeCount] = half;
+		return nodeCount++;
+	}
+
+	//Walks down to the leaf the body belongs in, splitting a leaf that already has a body
+	private void insert(int node, int i) {
+		int depth = 0;
+		while (true) {
+			if (firstChild[node] >= 0) {
+				node = childFor(node, xs[i], ys[i]);
+				depth++;
+			} else if (bodies[node] < 0 || depth >= MAX_DEPTH) {
+				next[i] = bodies[node];
+				bodies[node] = i;
+				return;
+			} else {
+				split(node);
+			}
+		}
+	}
+
+	private void split(int node) {
+		double quarter = halfSize[node] / 2;
+		int first = newNode(centerX[node] - quarter, centerY[node] - quarter, quarter);
+		newNode(centerX[node] + quarter, centerY[node] - quarter, quarter);
+		newNode(centerX[node] - quarter, centerY[node] + quarter, quarter);
+		newNode(centerX[node] + quarter, centerY[node] + quarter, quarter);
+		firstChild[node] = first;
+		int b = bodies[node];
+		bodies[node] = -1;
+		while (b >= 0) {
+			int after = next[b];
+			int child = childFor(node, xs[b], ys[b]);
+			next[b] = bodies[child];
+			bodies[child] = b;
+			b = after;
+		}
+	}
+
+	private int childFor(int node, double x, double y) {
+		int quadrant = (x < centerX[node] ? 0 : 1) + (y < centerY[node] ? 0 : 2);
+		return firstChild[node] + quadrant;
+	}
+
+	//Works out the total mass and center of mass of every node, from the leaves up
+	private void summarize(int node) {
+		double mass = 0;
+		double x = 0;
+		double y = 0;
+		if (firstChild[node] < 0) {
+			for (int b = bodies[node]; b >= 0; b = next[b]) {
+				order[ordered++] = b;
+				mass += masses[b];
+				x += xs[b] * masses[b];
+				y += ys[b] * masses[b];
+			}
+		} else {
+			for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+				summarize(c);
+				mass += nodeMass[c];
+				x += nodeX[c] * nodeMass[c];
+				y += nodeY[c] * nodeMass[c];
+			}
+		}
+		nodeMass[node] = mass;
+		nodeX[node] = mass == 0 ? centerX[node] : x / mass;
+		nodeY[node] = mass == 0 ? centerY[node] : y / mass;
+	}
+
+	//Adds up the pull on one body, walking the tree with a small stack of nodes still to visit
+	private void accelerate(int i, double thetaSquared, double softSquared, int[] stack) {
+		double x = xs[i];
+		double y = ys[i];
+		double ax = 0;
+		double ay = 0;
+		if (nodeCount > 0) {
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				double mass = nodeMass[node];
+				if (mass == 0)
+					continue;
+				if (firstChild[node] < 0) {
+					for (int b = bodies[node]; b >= 0; b = next[b]) {
+						if (b == i)
+							continue;
+						double dx = xs[b] - x;
+						double dy = ys[b] - y;
+						double d2 = dx * dx + dy * dy + softSquared;
+						double f = masses[b] / (d2 * Math.sqrt(d2));
+						ax += dx * f;
+						ay += dy * f;
+					}
+					continue;
+				}
+				//A cell the body sits in always gets opened, or the body's own mass would pull on it.
+				//Softening only weakens the force, so it's left out of the distance used to decide.
+				double half = halfSize[node];
+				boolean inside = Math.abs(x - centerX[node]) <= half && Math.abs(y - centerY[node]) <= half;
+				double dx = nodeX[node] - x;
+				double dy = nodeY[node] - y;
+				double d2 = dx * dx + dy * dy;
+				double size = half * 2;
+				if (!inside && size * size < thetaSquared * d2) {
+					d2 += softSquared;
+					double f = mass / (d2 * Math.sqrt(d2));
+					ax += dx * f;
+					ay += dy * f;
+				} else {
+					for (int c = firstChild[node]; c < firstChild[node] + 4; c++)
+						stack[top++] = c;
+				}
+			}
+		}
+		accelXs[i] = ax;
+		accelYs[i] = ay;
+	}
+
+	private static double[] grow(double[] array, int size) {
+		double[] bigger = new double[size];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	private static int[] grow(int[] array, int size) {
+		int[] bigger = new int[size];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	//The x acceleration of a body, from the last solve
+	public double getAccelX(int body) {
+		return accelXs[body];
+	}
+
+	//The y acceleration of a body, from the last solve
+	public double getAccelY(int body) {
+		return accelYs[body];
+	}
+
+	//How many bodies have been added since the last clear
+	public int size() {
+		return count;
+	}
+
+	//Simple set method
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	//Simple get method
+	public double getTheta() {
+		return theta;
+	}
+}
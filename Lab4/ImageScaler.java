@@ -0,0 +1,290 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * ImageScaler
+ *
+ * Scales whole frames in software, working directly on int pixel arrays instead of going through Graphics.drawImage.
+ * For every output column and row, which source pixels to read (and how much of each, for bilinear) is worked out once,
+ * when the sizes change, and kept in tables.  Scaling a frame is then just table lookups, split into bands of rows that run in parallel.
+ * Output goes into one of two images owned by the scaler, which it alternates between so the image on screen is never the one being drawn.
+ *
+ * Run "java ImageScaler [source width] [source height]" to time both methods against Graphics.drawImage, scaling a frame up to sizes from 500x500 to 3840x2160.
+ *
+ */
+public class ImageScaler {
+
+	/**
+	 * Each output pixel copies the closest source pixel.  Fastest, and keeps pixel art sharp.
+	 */
+	public static final int NEAREST = 0;
+	/**
+	 * Each output pixel blends the four closest source pixels.  Smoother, a little slower.
+	 */
+	public static final int BILINEAR = 1;
+
+	//Frames smaller than this are not worth splitting between threads
+	private static final int PARALLEL_PIXELS = 128 * 1024;
+	private static final int BAND_ROWS = 32;
+	private static final int BENCH_WARMUP = 10;  //frames scaled before timing, in main
+	private static final int BENCH_FRAMES = 30;  //frames timed, in main
+
+	private int method;
+	private int borderColor;
+
+	private int srcWidth = -1;
+	private int srcHeight = -1;
+	private int dstWidth = -1;
+	private int dstHeight = -1;
+	private boolean keepAspect;
+	private int fitX;
+	private int fitY;
+	private int fitWidth;
+	private int fitHeight;
+
+	//Nearest: the source column / row of each output column / row.
+	//Bilinear: the left / top source pixel, with the weight of the next one in 0 - 256.
+	private int[] columns;
+	private int[] columnWeights;
+	private int[] rows;
+	private int[] rowWeights;
+
+	private final BufferedImage[] outputs = new BufferedImage[2];
+	private int nextOutput;
+	private int[] scratch;
+
+	/**
+	 * Creates an ImageScaler with black borders.
+	 * @param method NEAREST or BILINEAR.
+	 */
+	public ImageScaler(int method) {
+		this.method = method;
+		borderColor = 0xFF000000;
+	}
+
+	/**
+	 * Changes how pixels are scaled.
+	 * @param method NEAREST or BILINEAR.
+	 */
+	public void setMethod(int method) {
+		if (method != this.method) {
+			this.method = method;
+			srcWidth = -1;
+		}
+	}
+
+	/**
+	 * @return NEAREST or BILINEAR.
+	 */
+	public int getMethod() {
+		return method;
+	}
+
+	/**
+	 * Scales an image to the given size.
+	 * @param src The image to scale.  Not changed.
+	 * @param width The width of the output.
+	 * @param height The height of the output.
+	 * @param keepAspect If true, the image keeps its shape and is centered, with borders filling the rest.  If false, it is stretched to fill the output.
+	 * @return The scaled image.  It belongs to the scaler and is reused two calls later, so copy it if it needs to last.
+	 */
+	public BufferedImage scale(BufferedImage src, int width, int height, boolean keepAspect) {
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		if (src.getWidth() != srcWidth || src.getHeight() != srcHeight || width != dstWidth || height != dstHeight
+				|| keepAspect != this.keepAspect)
+			buildTables(src.getWidth(), src.getHeight(), width, height, keepAspect);
+		BufferedImage out = outputs[nextOutput];
+		if (out == null || out.getWidth() != width || out.getHeight() != height) {
+			out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			outputs[nextOutput] = out;
+		}
+		nextOutput = 1 - nextOutput;
+		final int[] srcPixels = pixelsOf(src);
+		final int[] dstPixels = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+		final int opaque = src.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+		int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+		IntConsumer band = new IntConsumer() {
+			@Override
+			public void accept(int b) {
+				int first = b * BAND_ROWS;
+				scaleRows(srcPixels, dstPixels, opaque, first, Math.min(dstHeight, first + BAND_ROWS));
+			}
+		};
+		if ((long) width * height >= PARALLEL_PIXELS)
+			IntStream.range(0, bands).parallel().forEach(band);
+		else
+			for (int b = 0; b < bands; b++)
+				band.accept(b);
+		return out;
+	}
+
+	//Gets the pixels of an image as packed ints without copying when possible
+	private int[] pixelsOf(BufferedImage src) {
+		int w = src.getWidth();
+		int h = src.getHeight();
+		int type = src.getType();
+		if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+				&& src.getRaster().getDataBuffer().getSize() == w * h)
+			return ((DataBufferInt) src.getRaster().getDataBuffer()).getData();
+		if (scratch == null || scratch.length != w * h)
+			scratch = new int[w * h];
+		src.getRGB(0, 0, w, h, scratch, 0, w);
+		return scratch;
+	}
+
+	private void buildTables(int sw, int sh, int dw, int dh, boolean keepAspect) {
+		srcWidth = sw;
+		srcHeight = sh;
+		dstWidth = dw;
+		dstHeight = dh;
+		this.keepAspect = keepAspect;
+		fitX = 0;
+		fitY = 0;
+		fitWidth = dw;
+		fitHeight = dh;
+		if (keepAspect) {
+			double scale = Math.min(dw / (double) sw, dh / (double) sh);
+			fitWidth = Math.max(1, (int) Math.round(sw * scale));
+			fitHeight = Math.max(1, (int) Math.round(sh * scale));
+			fitX = (dw - fitWidth) / 2;
+			fitY = (dh - fitHeight) / 2;
+		}
+		columns = new int[dw];
+		columnWeights = new int[dw];
+		rows = new int[dh];
+		rowWeights = new int[dh];
+		buildAxis(columns, columnWeights, fitX, fitWidth, sw);
+		buildAxis(rows, rowWeights, fitY, fitHeight, sh);
+	}
+
+	//Output pixels outside the fitted area get index -1, meaning border
+	private void buildAxis(int[] index, int[] weight, int offset, int fitted, int source) {
+		double ratio = source / (double) fitted;
+		for (int d = 0; d < index.length; d++) {
+			int f = d - offset;
+			if (f < 0 || f >= fitted) {
+				index[d] = -1;
+				continue;
+			}
+			if (method == NEAREST) {
+				index[d] = Math.min(source - 1, (int) (f * ratio));
+			} else {
+				double s = Math.max(0, (f + 0.5) * ratio - 0.5);
+				int i = Math.min(source - 1, (int) s);
+				index[d] = i;
+				weight[d] = i + 1 < source ? (int) ((s - i) * 256) : 0;
+			}
+		}
+	}
+
+	private void scaleRows(int[] src, int[] dst, int opaque, int firstRow, int endRow) {
+		int sw = srcWidth;
+		int dw = dstWidth;
+		for (int y = firstRow; y < endRow; y++) {
+			int sy = rows[y];
+			int out = y * dw;
+			if (sy < 0) {
+				for (int x = 0; x < dw; x++)
+					dst[out + x] = borderColor;
+				continue;
+			}
+			int row = sy * sw;
+			if (method == NEAREST) {
+				for (int x = 0; x < dw; x++) {
+					int sx = columns[x];
+					dst[out + x] = sx < 0 ? borderColor : src[row + sx] | opaque;
+				}
+			} else {
+				int wy = rowWeights[y];
+				int nextRow = wy == 0 ? row : row + sw;
+				for (int x = 0; x < dw; x++) {
+					int sx = columns[x];
+					if (sx < 0) {
+						dst[out + x] = borderColor;
+						continue;
+					}
+					int wx = columnWeights[x];
+					int nx = wx == 0 ? sx : sx + 1;
+					int top = lerp(src[row + sx], src[row + nx], wx);
+					int bottom = lerp(src[nextRow + sx], src[nextRow + nx], wx);
+					dst[out + x] = lerp(top, bottom, wy) | opaque;
+				}
+			}
+		}
+	}
+
+	//Blends two ARGB colors, with w out of 256 of the second one
+	private static int lerp(int a, int b, int w) {
+		if (w == 0 || a == b)
+			return a;
+		int iw = 256 - w;
+		int ag = ((a >>> 8) & 0x00FF00FF) * iw + ((b >>> 8) & 0x00FF00FF) * w;
+		int rb = (a & 0x00FF00FF) * iw + (b & 0x00FF00FF) * w;
+		return (ag & 0xFF00FF00) | ((rb >>> 8) & 0x00FF00FF);
+	}
+
+	/**
+	 * @return Where the scaled image starts horizontally in the output, after the border.  0 when stretching.
+	 */
+	public int getOffsetX() {
+		return fitX;
+	}
+
+	/**
+	 * @return Where the scaled image starts vertically in the output, after the border.  0 when stretching.
+	 */
+	public int getOffsetY() {
+		return fitY;
+	}
+
+	public static void main(String[] args) {
+		int srcWidth = args.length > 1 ? Integer.parseInt(args[0]) : 500;
+		int srcHeight = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int[][] sizes = { { 500, 500 }, { 1280, 720 }, { 1920, 1080 }, { 2560, 1440 }, { 3840, 2160 } };
+		BufferedImage src = new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) src.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xFF000000 | SimRandom.nextInt(0x1000000);
+		System.out.printf("Scaling a %d x %d frame, ms a frame (%d cores)%n", srcWidth, srcHeight, Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-11s %9s %9s %9s %9s%n", "output", "nearest", "drawImage", "bilinear", "drawImage");
+		for (int[] size : sizes) {
+			int w = size[0];
+			int h = size[1];
+			BufferedImage target = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			double nearest = timeScaler(new ImageScaler(NEAREST), src, w, h);
+			double nearestDraw = timeDrawImage(src, target, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			double bilinear = timeScaler(new ImageScaler(BILINEAR), src, w, h);
+			double bilinearDraw = timeDrawImage(src, target, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			System.out.printf("%-11s %9.2f %9.2f %9.2f %9.2f%n", w + "x" + h, nearest, nearestDraw, bilinear, bilinearDraw);
+		}
+	}
+
+	//Average ms a frame to scale with an ImageScaler, after warming up
+	private static double timeScaler(ImageScaler scaler, BufferedImage src, int width, int height) {
+		for (int i = 0; i < BENCH_WARMUP; i++)
+			scaler.scale(src, width, height, false);
+		long start = System.nanoTime();
+		for (int i = 0; i < BENCH_FRAMES; i++)
+			scaler.scale(src, width, height, false);
+		return (System.nanoTime() - start) / 1e6 / BENCH_FRAMES;
+	}
+
+	//Average ms a frame to scale with Graphics.drawImage into a reused image, after warming up
+	private static double timeDrawImage(BufferedImage src, BufferedImage target, Object interpolation) {
+		Graphics2D g = target.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+		for (int i = 0; i < BENCH_WARMUP; i++)
+			g.drawImage(src, 0, 0, target.getWidth(), target.getHeight(), null);
+		long start = System.nanoTime();
+		for (int i = 0; i < BENCH_FRAMES; i++)
+			g.drawImage(src, 0, 0, target.getWidth(), target.getHeight(), null);
+		double ms = (System.nanoTime() - start) / 1e6 / BENCH_FRAMES;
+		g.dispose();
+		return ms;
+	}
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//Keeps track of which entities one player has been told about, so each tick only the changes in their view need sending.
+//The view is a rectangle around the player's wormhole, plus a margin so entities are known a little before they can be seen.
+//The entities in view are found with the World's SpatialGrid, then compared with the ones the player already knows,
+//both sorted by id, to split them into entered, moved and left.
+public class InterestSet {
+
+	private final double viewWidth;
+	private final double viewHeight;
+	private final double margin;
+	private int[] known = new int[0];  //ids the player knows about, sorted
+	private int[] found = new int[256];
+	private long[] current = new long[256];  //id in the high half, entity index in the low half, sorted
+
+	//Constructor
+	public InterestSet(double viewWidth, double viewHeight, double margin) {
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+		this.margin = margin;
+	}
+
+	//Works out what changed in the view around (x, y) since the last update, and remembers the new view.
+	//The view is kept inside the world, so near an edge the point isn't in the middle.
+	public WorldDelta update(World world, double x, double y) {
+		double viewX = Math.max(0, Math.min(world.getWidth() - viewWidth, x - viewWidth / 2));
+		double viewY = Math.max(0, Math.min(world.getHeight() - viewHeight, y - viewHeight / 2));
+		int count = world.getGrid().query(viewX - margin, viewY - margin, viewX + viewWidth + margin, viewY + viewHeight + margin, found);
+		if (count > found.length) {
+			found = new int[count * 2];
+			count = world.getGrid().query(viewX - margin, viewY - margin, viewX + viewWidth + margin, viewY + viewHeight + margin, found);
+		}
+		if (current.length < count)
+			current = new long[count * 2];
+		ArrayList<Entity> entities = world.getEntities();
+		for (int i = 0; i < count; i++)
+			current[i] = ((long) entities.get(found[i]).getId() << 32) | found[i];
+		Arrays.sort(current, 0, count);
+
+		int entered = 0;
+		int moved = 0;
+		int left = 0;
+		int[] enteredIds = new int[count];
+		byte[] enteredKinds = new byte[count];
+		float[] enteredXs = new float[count];
+		float[] enteredYs = new float[count];
+		int[] movedIds = new int[count];
+		float[] movedXs = new float[count];
+		float[] movedYs = new float[count];
+		int[] leftIds = new int[known.length];
+		int[] nowKnown = new int[count];
+		int k = 0;
+		for (int i = 0; i < count; i++) {
+			int id = (int) (current[i] >> 32);
+			Entity e = entities.get((int) current[i]);
+			nowKnown[i] = id;
+			while (k < known.length && known[k] < id)
+				leftIds[left++] = known[k++];
+			if (k < known.length && known[k] == id) {
+				k++;
+				movedIds[moved] = id;
+				movedXs[moved] = (float) e.getXCenter();
+				movedYs[moved] = (float) e.getYCenter();
+				moved++;
+			} else {
+				enteredIds[entered] = id;
+				enteredKinds[entered] = e instanceof Wormhole ? WorldState.WORMHOLE : WorldState.ASTEROID;
+				enteredXs[entered] = (float) e.getXCenter();
+				enteredYs[entered] = (float) e.getYCenter();
+				entered++;
+			}
+		}
+		while (k < known.length)
+			leftIds[left++] = known[k++];
+		known = nowKnown;
+
+		return new WorldDelta(world.getTick(), world.getKills(), (float) viewX, (float) viewY,
+				Arrays.copyOf(enteredIds, entered), Arrays.copyOf(enteredKinds, entered), Arrays.copyOf(enteredXs, entered),
+				Arrays.copyOf(enteredYs, entered), Arrays.copyOf(movedIds, moved), Arrays.copyOf(movedXs, moved),
+				Arrays.copyOf(movedYs, moved), Arrays.copyOf(leftIds, left));
+	}
+
+	//How many entities the player knows about
+	public int size() {
+		return known.length;
+	}
+}
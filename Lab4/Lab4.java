@@ -1,36 +1,142 @@
 import java.awt.image.BufferedImage;
 import java.awt.Graphics;
 import java.awt.Color;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
 import java.util.ArrayList;
 public class Lab4
 {
   public static final int SCREEN_WIDTH = 500;
   public static final int SCREEN_HEIGHT = 500;
+  public static final int WORLD_WIDTH = 4000;
+  public static final int WORLD_HEIGHT = 4000;
+  public static final int DRIFTING_WORMHOLES = 20;                  //wormholes that wander the world besides the player's
+  public static final int WORMHOLE_DRIFT_SPEED = 60;
+  public static final int CAMERA_SPEED = 400;                       //pixels per second, with the arrow keys or WASD
+  public static final int BACKGROUND_CHUNK_SIZE = 256;
+  public static final long BACKGROUND_MEMORY = 16 * 1024 * 1024;    //bytes of decoded background kept in memory
   public static final int ASTEROID_SIZE = 50;
   public static final int WORMHOLE_SIZE = 100;
+  public static final double WORMHOLE_ANIMATION_FPS = 10;
+  public static final int PARTICLE_CAPACITY = 1 << 18;
+  public static final int EXPLOSION_PARTICLES = 2000;              //thrown out by each asteroid that reaches a wormhole
+  public static final double EXPLOSION_SPEED = 250;
+  public static final double EXPLOSION_LIFE = 1.5;
+  public static final int EXPLOSION_COLOR = 0xFF9040;
   public static final int ASTEROID_Y_POSITION = -40;
   public static final int LEFT_CLICK = 1;
+  public static final int TARGET_FPS = 60;
+  public static final int FRAMEBUFFER_SLOTS = 4;
+  public static final char GRAVITY_KEY = 'g';                      //off, then wormholes pull, then everything pulls
+  public static final char KERNEL_KEY = 'k';                       //moves homing asteroids together in AsteroidKernel
+  public static final double GRAVITY_THETA = 0.7;
+  public static final double GRAVITY_SOFTENING = 30;
+  public static final double WORMHOLE_MASS = 3e7;                  //times the gravitational constant
+  public static final double ASTEROID_MASS = 2e4;
+  public static final int FAR_DISTANCE = 500;       //entities this far outside the view are updated less often
+  public static final int FAR_UPDATE_INTERVAL = 4;  //far entities are updated once every this many frames
   
   
-  public static void addAsteroid(ArrayList<Entity> entities, Entity wormhole)
+  public static void addAsteroid(ArrayList<Entity> entities, TargetIndex wormholes)
   {
-    entities.add(new Asteroid(Math.random() * SCREEN_WIDTH, ASTEROID_Y_POSITION, ASTEROID_SIZE, ASTEROID_SIZE, wormhole));
+    entities.add(new Asteroid(SimRandom.nextDouble() * WORLD_WIDTH, ASTEROID_Y_POSITION, ASTEROID_SIZE, ASTEROID_SIZE, wormholes));
   }
   
-  public static void main(String[] args)
+  //Adds a wormhole somewhere in the world, drifting in a random direction
+  public static Wormhole addDriftingWormhole(ArrayList<Entity> entities)
   {
- EasyWindow ew = new EasyWindow();
- BufferedImage background = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    double angle = SimRandom.nextDouble(0, Math.PI * 2);
+    Wormhole w = new Wormhole(SimRandom.nextDouble() * WORLD_WIDTH, SimRandom.nextDouble() * WORLD_HEIGHT, WORMHOLE_SIZE, WORMHOLE_SIZE,
+        Math.cos(angle) * WORMHOLE_DRIFT_SPEED, Math.sin(angle) * WORMHOLE_DRIFT_SPEED);
+    entities.add(w);
+    return w;
+  }
+  
+  //Puts every wormhole and asteroid into the gravity field and works out how they pull on each other.
+  //Asteroids only pull on the others when asteroidsPull is true, otherwise they are just pulled by the wormholes.
+  public static void applyGravity(ArrayList<Entity> entities, GravityField gravity, boolean asteroidsPull)
+  {
+    gravity.clear();
+    for(Entity e : entities)
+    {
+      if(e instanceof Wormhole)
+        gravity.addBody(e.getXCenter(), e.getYCenter(), WORMHOLE_MASS);
+      else if(e instanceof Asteroid)
+        ((Asteroid) e).setGravity(gravity, gravity.addBody(e.getXCenter(), e.getYCenter(), asteroidsPull ? ASTEROID_MASS : 0));
+    }
+    gravity.solve();
+  }
+  
+  //Scrolls the camera with the arrow keys or WASD, keeping it inside the world
+  public static void moveCamera(EasyWindow ew, Camera camera)
+  {
+    double dx = 0;
+    double dy = 0;
+    if(ew.getKey(KeyEvent.VK_LEFT) || ew.getKey('a'))
+      dx -= 1;
+    if(ew.getKey(KeyEvent.VK_RIGHT) || ew.getKey('d'))
+      dx += 1;
+    if(ew.getKey(KeyEvent.VK_UP) || ew.getKey('w'))
+      dy -= 1;
+    if(ew.getKey(KeyEvent.VK_DOWN) || ew.getKey('s'))
+      dy += 1;
+    double x = camera.getX() + dx * CAMERA_SPEED * ew.getDeltaTime();
+    double y = camera.getY() + dy * CAMERA_SPEED * ew.getDeltaTime();
+    x = Math.max(0, Math.min(WORLD_WIDTH - camera.getWidth(), x));
+    y = Math.max(0, Math.min(WORLD_HEIGHT - camera.getHeight(), y));
+    camera.setPosition(x, y);
+  }
+  
+  public static void main(String[] args) throws IOException
+  {
+ //Pass a seed to repeat a run exactly, then optionally "record <file>", "replay <file>", "framebuffer <file>" or "stream <port>"
+ //A replay runs headless and as fast as possible, then prints how it went
+ //With framebuffer, every frame is also written to a shared memory file, for SharedFramebufferReader or an encoder
+ //With stream, every frame is also sent to each FrameViewer that connects to the port
+ if(args.length > 0)
+   SimRandom.setSeed(Long.parseLong(args[0]));
+ System.out.println("Seed: " + SimRandom.getSeed());
+ boolean replay = args.length > 2 && args[1].equals("replay");
+ EasyWindow ew = new EasyWindow("EasyWindow", true, EasyWindow.MODE_PACK, replay);
+ if(args.length > 2 && args[1].equals("record"))
+   ew.startRecording(args[2]);
+ if(replay && !ew.startReplay(args[2]))
+   return;
+ if(args.length > 2 && args[1].equals("framebuffer") && !ew.startFramebufferOutput(args[2], SCREEN_WIDTH, SCREEN_HEIGHT, FRAMEBUFFER_SLOTS))
+   return;
+ if(args.length > 2 && args[1].equals("stream"))
+ {
+   System.out.println("Streaming on " + ew.host(Integer.parseInt(args[2])));
+   ew.startFrameStreaming(FrameStreamer.DEFAULT_TILE_SIZE);
+ }
+ ew.setTargetFps(TARGET_FPS);
+ ew.setPresentMode(EasyWindow.PRESENT_ASYNC);
+ long runStart = System.nanoTime();
+ long frames = 0;
+ int maxEntities = 0;
  BufferedImage screenImage = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
  BufferedImage canvas = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
  ArrayList<Entity> entities = new ArrayList<Entity>();
  Graphics screen = screenImage.getGraphics();
- Wormhole wh = new Wormhole(0, 0, WORMHOLE_SIZE, WORMHOLE_SIZE);
- entities.add(wh);
  double asteroidSpawnDelay = 0;
  boolean drawHitboxes = true;
+ DebugDraw debug = new DebugDraw();
+ Camera camera = new Camera(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+ Wormhole wh = new Wormhole(0, 0, WORMHOLE_SIZE, WORMHOLE_SIZE, camera);
+ entities.add(wh);
+ ArrayList<Wormhole> wormholes = new ArrayList<Wormhole>();
+ wormholes.add(wh);
+ for(int i = 0; i < DRIFTING_WORMHOLES; i++)
+   wormholes.add(addDriftingWormhole(entities));
+ TargetIndex wormholeIndex = new TargetIndex();
+ GravityField gravity = new GravityField(GRAVITY_THETA, GRAVITY_SOFTENING);
+ int gravityMode = 0;
+ AsteroidKernel kernel = new AsteroidKernel();
+ boolean useKernel = false;
+ ArrayList<Asteroid> kernelDue = new ArrayList<Asteroid>();  //asteroids whose turn it is to be moved by the kernel this frame
+ ParticleSystem particles = new ParticleSystem(PARTICLE_CAPACITY);
  
- background = EasyWindow.loadImage("void.png");
+ TiledBackground background = new TiledBackground("void.png", BACKGROUND_CHUNK_SIZE, BACKGROUND_MEMORY);
  Wormhole.loadImages();
  Asteroid.loadImages();
  
@@ -39,35 +145,103 @@ public class Lab4
    if(ew.getMouseButtonFirst(LEFT_CLICK))
         drawHitboxes = !(drawHitboxes);
    
+   if(ew.getKeyFirst(GRAVITY_KEY))
+   {
+     gravityMode = (gravityMode + 1) % 3;
+     if(gravityMode == 0)
+       for(Entity e : entities)
+         if(e instanceof Asteroid)
+           ((Asteroid) e).setGravity(null, 0);
+   }
+   
+   if(ew.getKeyFirst(KERNEL_KEY))
+     useKernel = !useKernel;
+   
+   moveCamera(ew, camera);
+   Animation.advance(ew.getDeltaTime());
    asteroidSpawnDelay -= ew.getDeltaTime();
    if(asteroidSpawnDelay <= 0)
    {
-    asteroidSpawnDelay = Math.random() * 2 + 1;
-    addAsteroid(entities, wh);
+    asteroidSpawnDelay = SimRandom.nextDouble(1, 3);
+    addAsteroid(entities, wormholeIndex);
    }
+   wormholeIndex.build(wormholes);
+   if(gravityMode != 0)
+     applyGravity(entities, gravity, gravityMode == 2);
    Graphics g = canvas.getGraphics();
-   g.drawImage(background, 0, 0, canvas.getWidth(), canvas.getHeight(), null);
+   camera.begin(g);
+   background.draw(g, camera);
+   camera.end(g);
    for(Entity e : entities)
+     e.beginStep();
+   for(int i = 0; i < entities.size(); i++)
    {
-    e.update(ew);
+    //Far away entities take turns, each one catching up on the time it missed
+    Entity e = entities.get(i);
+    double deltaTime = ew.getDeltaTime() + e.getPendingTime();
+    if(camera.distanceOutside(e) > FAR_DISTANCE && i % FAR_UPDATE_INTERVAL != frames % FAR_UPDATE_INTERVAL)
+      e.setPendingTime(deltaTime);
+    else if(useKernel && AsteroidKernel.handles(e))
+      kernelDue.add((Asteroid) e);  //moved below, once every target has moved
+    else
+    {
+      e.setPendingTime(0);
+      e.update(ew, deltaTime);
+    }
+   }
+   if(useKernel)
+   {
+     kernel.clear();
+     for(Asteroid a : kernelDue)
+       kernel.add(a, ew.getDeltaTime() + a.getPendingTime());
+     kernelDue.clear();
+     kernel.step();
+     kernel.store();
    }
    if(drawHitboxes)
+   {
+     debug.setOffset(camera.getScreenOffsetX(), camera.getScreenOffsetY());
      for(Entity e : entities)
      {
-       e.drawHitbox(g);
+       if(camera.isVisible(e))
+         e.drawHitbox(debug);
      }
+     debug.flush(canvas);
+   }
+   camera.begin(g);
    for(Entity e : entities)
    {
-    e.draw(g);
+    if(camera.isVisible(e))
+      e.draw(g);
    }
+   camera.end(g);
+   particles.update(ew.getDeltaTime());
+   particles.draw(canvas, camera.getScreenOffsetX(), camera.getScreenOffsetY());
    for(int i = entities.size() - 1; i >= 0; i--)
    {
-    if(entities.get(i).getKill())
+    Entity e = entities.get(i);
+    if(e.getKill())
+    {
+      if(e instanceof Asteroid)
+        particles.explode(e.getXCenter(), e.getYCenter(), EXPLOSION_PARTICLES, EXPLOSION_SPEED, EXPLOSION_LIFE, EXPLOSION_COLOR);
       entities.remove(i);
+    }
    }
  screen.drawImage(canvas, 0, 0, null);
  ew.update(screenImage);
  g.dispose();
+ frames++;
+ maxEntities = Math.max(maxEntities, entities.size());
 }
+ ew.stopRecording();
+ ew.stopFramebufferOutput();
+ ew.stopFrameStreaming();
+ if(replay)
+ {
+   double seconds = (System.nanoTime() - runStart) / 1000000000.0;
+   System.out.println("Frames: " + frames);
+   System.out.println("Average frame time: " + (seconds * 1000 / Math.max(1, frames)) + " ms");
+   System.out.println("Entities at end: " + entities.size() + ", most at once: " + maxEntities);
+ }
   }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+//Plays a session on a Lab4Server: sends the world position under the mouse, and draws what the server says is in view.
+//The server sends a WorldDelta each tick, with just what changed around this player's wormhole.
+//Usage: java Lab4Client address:port
+public class Lab4Client
+{
+  public static void main(String[] args)
+  {
+ if(args.length < 1)
+ {
+   System.out.println("Usage: java Lab4Client address:port");
+   return;
+ }
+ String server = args[0];
+ EasyWindow ew = new EasyWindow("Lab4 Client", true, EasyWindow.MODE_PACK);
+ if(!ew.connect(server))
+ {
+   System.out.println("Could not connect to " + server);
+   ew.setQuit(true);
+   return;
+ }
+ BufferedImage screenImage = new BufferedImage(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+ Graphics g = screenImage.getGraphics();
+ Wormhole.loadImages();
+ Asteroid.loadImages();
+ //Reused to draw every entity in the state, wherever it is
+ Wormhole wormhole = new Wormhole(0, 0, Lab4.WORMHOLE_SIZE, Lab4.WORMHOLE_SIZE);
+ Asteroid asteroid = new Asteroid(0, 0, Lab4.ASTEROID_SIZE, Lab4.ASTEROID_SIZE, wormhole);
+ Map<Integer, float[]> inView = new HashMap<Integer, float[]>();  //id -> kind, x, y, animation start
+ float viewX = 0;
+ float viewY = 0;
+ int kills = 0;
+ Point lastMouse = null;
+
+ while(!ew.getQuit())
+ {
+   Point mouse = new Point((int) viewX + ew.getMouseX(), (int) viewY + ew.getMouseY());
+   if(!mouse.equals(lastMouse) && ew.send(server, mouse) != null)
+     lastMouse = mouse;
+   while(ew.hasReceive(server))
+   {
+     Object o = ew.receive(server);
+     if(o instanceof WorldDelta)
+     {
+       WorldDelta d = (WorldDelta) o;
+       for(int i = 0; i < d.getLeftCount(); i++)
+         inView.remove(d.getLeftId(i));
+       for(int i = 0; i < d.getEnteredCount(); i++)
+         inView.put(d.getEnteredId(i), new float[] { d.getEnteredKind(i), d.getEnteredX(i), d.getEnteredY(i),
+             (float) Wormhole.randomAnimationStart() });
+       for(int i = 0; i < d.getMovedCount(); i++)
+       {
+         float[] e = inView.get(d.getMovedId(i));
+         e[1] = d.getMovedX(i);
+         e[2] = d.getMovedY(i);
+       }
+       viewX = d.getViewX();
+       viewY = d.getViewY();
+       kills = d.getKills();
+     }
+   }
+   if(ew.getConnections().length == 0 && !ew.hasReceive(server))
+   {
+     System.out.println("Disconnected from " + server);
+     ew.setQuit(true);
+   }
+
+   Animation.advance(ew.getDeltaTime());
+   g.setColor(Color.BLACK);
+   g.fillRect(0, 0, Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT);
+   for(float[] state : inView.values())
+   {
+     Entity e = state[0] == WorldState.WORMHOLE ? wormhole : asteroid;
+     if(e == wormhole)
+       wormhole.setAnimationStart(state[3]);
+     e.setXCenter(state[1] - viewX);
+     e.setYCenter(state[2] - viewY);
+     e.draw(g);
+   }
+   g.setColor(Color.WHITE);
+   g.drawString("Kills: " + kills, 10, 20);
+   ew.update(screenImage);
+ }
+ g.dispose();
+  }
+}
@@ -0,0 +1,174 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+
+//Lab4 played on an EcsWorld instead of a list of Entity objects: a wormhole on the mouse, some drifting wormholes,
+//and asteroids falling in from the top, all moved, hit and drawn by EcsSystems.
+//The systems and the drawing run as StageScheduler stages, so the ones that don't share data can run at once.
+//Run "java Lab4Ecs bench [asteroids]" to compare how many asteroids per second the systems can update
+//against Asteroid.update on the same asteroids.
+public class Lab4Ecs
+{
+  public static final int BENCH_STEPS = 200;
+
+  public static final int CANVAS = 1 << 16;    //screenImage, for StageScheduler stages
+  public static final int HITBOXES = 1 << 17;  //the DebugDraw
+
+  public static void main(String[] args)
+  {
+ if(args.length > 0 && args[0].equals("bench"))
+ {
+   bench(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+   return;
+ }
+ final EasyWindow ew = new EasyWindow("EasyWindow", true, EasyWindow.MODE_PACK);
+ ew.setTargetFps(Lab4.TARGET_FPS);
+ final BufferedImage screenImage = new BufferedImage(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+ final BufferedImage background = EasyWindow.loadImage("void.png");
+ final Graphics g = screenImage.getGraphics();
+ Wormhole.loadImages();
+ Asteroid.loadImages();
+ EcsWorld world = new EcsWorld();
+ final EcsSystems.RenderSystem render = new EcsSystems.RenderSystem(EcsAdapters.images());
+ render.setTarget(g, null, null);
+ final DebugDraw debug = new DebugDraw();
+ final EcsSystems.HitboxSystem hitboxes = new EcsSystems.HitboxSystem(debug);
+ EcsAdapters.addMouseWormhole(world, 0, 0, Lab4.WORMHOLE_SIZE, Lab4.WORMHOLE_SIZE);
+ for(int i = 0; i < 3; i++)
+ {
+   double angle = SimRandom.nextDouble(0, Math.PI * 2);
+   EcsAdapters.addDriftingWormhole(world, SimRandom.nextDouble() * Lab4.SCREEN_WIDTH, SimRandom.nextDouble() * Lab4.SCREEN_HEIGHT,
+       Lab4.WORMHOLE_SIZE, Lab4.WORMHOLE_SIZE, Math.cos(angle) * Lab4.WORMHOLE_DRIFT_SPEED, Math.sin(angle) * Lab4.WORMHOLE_DRIFT_SPEED,
+       Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT);
+ }
+ final double[] asteroidSpawnDelay = new double[1];
+
+ //Each frame is a list of stages; the background is drawn while the world steps, and the hitboxes are collected while the sprites are drawn
+ StageScheduler stages = new StageScheduler();
+ stages.addStage("spawn", 0, EcsWorld.ENTITIES, new EcsSystem()
+ {
+   @Override
+   public void run(EcsWorld world, double deltaTime)
+   {
+  asteroidSpawnDelay[0] -= deltaTime;
+  if(asteroidSpawnDelay[0] <= 0)
+  {
+    asteroidSpawnDelay[0] = SimRandom.nextDouble(1, 3);
+    EcsAdapters.addAsteroid(world, SimRandom.nextDouble() * Lab4.SCREEN_WIDTH, Lab4.ASTEROID_Y_POSITION, Lab4.ASTEROID_SIZE,
+        Lab4.ASTEROID_SIZE, SimRandom.nextDouble(50, 100));
+  }
+   }
+ });
+ EcsAdapters.addLab4Stages(stages, ew, null);
+ stages.addStage("background", 0, CANVAS, new EcsSystem()
+ {
+   @Override
+   public void run(EcsWorld world, double deltaTime)
+   {
+  g.drawImage(background, 0, 0, Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, null);
+   }
+ });
+ stages.addStage("sprites", EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.SPRITE, CANVAS, render);
+ stages.addStage("hitboxes", EcsWorld.POSITION | EcsWorld.SIZE | EcsWorld.SPRITE, HITBOXES, hitboxes);
+ stages.addStage("flush hitboxes", HITBOXES, CANVAS | HITBOXES, new EcsSystem()
+ {
+   @Override
+   public void run(EcsWorld world, double deltaTime)
+   {
+  if(hitboxes.getEnabled())
+    debug.flush(screenImage);
+   }
+ });
+ //"java Lab4Ecs trace file.json" saves when each stage ran, for the last frames before quitting
+ String traceFile = args.length > 1 && args[0].equals("trace") ? args[1] : null;
+ stages.setTracing(traceFile != null);
+ if(traceFile != null)
+  System.out.print(stages.describeGraph());
+
+ while(!ew.getQuit())
+ {
+   if(ew.getMouseButtonFirst(Lab4.LEFT_CLICK))
+     hitboxes.setEnabled(!hitboxes.getEnabled());
+   stages.runFrame(world, ew.getDeltaTime());
+   ew.update(screenImage);
+ }
+ g.dispose();
+ stages.close();
+ if(traceFile != null)
+ {
+   try
+   {
+  stages.writeTrace(traceFile);
+   }
+   catch(IOException e)
+   {
+  System.out.println("Couldn't save the trace: " + e.getMessage());
+   }
+ }
+  }
+
+  //Times the same asteroids chasing the same wormholes, first as objects, then as an EcsWorld on one thread, then on all of them
+  public static void bench(int count)
+  {
+ ArrayList<Entity> entities = new ArrayList<Entity>();
+ ArrayList<Wormhole> wormholes = new ArrayList<Wormhole>();
+ TargetIndex targets = new TargetIndex();
+ for(int i = 0; i < 4; i++)
+ {
+   Wormhole w = new Wormhole(i * 1000, 0, Lab4.WORMHOLE_SIZE, Lab4.WORMHOLE_SIZE);
+   w.setParked(true);
+   wormholes.add(w);
+   entities.add(w);
+ }
+ //Far enough away that none of them arrive while timing
+ for(int i = 0; i < count; i++)
+   entities.add(new Asteroid(SimRandom.nextDouble() * 4000, 100000 + SimRandom.nextDouble() * 10000, Lab4.ASTEROID_SIZE, Lab4.ASTEROID_SIZE, targets));
+ targets.build(wormholes);
+ double deltaTime = 1 / 60.0;
+
+ for(int round = 0; round < 3; round++)
+ {
+   long start = System.nanoTime();
+   for(int s = 0; s < BENCH_STEPS; s++)
+     for(Entity e : entities)
+     {
+       e.beginStep();
+       e.update(null, deltaTime);
+     }
+   double objects = rate(count, start);
+
+   double[] ecs = new double[2];
+   for(int parallel = 0; parallel < 2; parallel++)
+   {
+     EcsWorld world = new EcsWorld();
+     world.setParallel(parallel == 1);
+     EcsAdapters.addLab4Systems(world, null, null);
+     for(Entity e : entities)
+       EcsAdapters.fromEntity(world, e, false);
+     start = System.nanoTime();
+     for(int s = 0; s < BENCH_STEPS; s++)
+       world.step(deltaTime);
+     ecs[parallel] = rate(count, start);
+   }
+
+   EcsWorld world = new EcsWorld();
+   StageScheduler stages = new StageScheduler();
+   EcsAdapters.addLab4Stages(stages, null, null);
+   for(Entity e : entities)
+     EcsAdapters.fromEntity(world, e, false);
+   start = System.nanoTime();
+   for(int s = 0; s < BENCH_STEPS; s++)
+     stages.runFrame(world, deltaTime);
+   double staged = rate(count, start);
+   stages.close();
+   System.out.printf("Objects: %.1fM/s   EcsWorld: %.1fM/s   EcsWorld in parallel: %.1fM/s   StageScheduler: %.1fM/s (%d cores)%n",
+       objects / 1e6, ecs[0] / 1e6, ecs[1] / 1e6, staged / 1e6, Runtime.getRuntime().availableProcessors());
+ }
+  }
+
+  private static double rate(int count, long start)
+  {
+ return (double) count * BENCH_STEPS / ((System.nanoTime() - start) / 1000000000.0);
+  }
+}
@@ -0,0 +1,137 @@
+import java.awt.Point;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+//Runs one big Lab4Server session over loopback with many players wandering around it, and checks
+//that interest management keeps every player's view right while sending far less than the whole world.
+//Each player keeps its own copy of what is in view, built only from the WorldDeltas, and counts any delta
+//that doesn't fit it (moving or removing something it was never told about, or being told twice).
+//Usage: java Lab4LoadTest [players] [entities] [seconds] [port]
+public class Lab4LoadTest {
+
+	public static final double WORLD_SIZE = 20000;
+	public static final int TICK_RATE = 10;
+	public static final double PLAYER_SPEED = 300;  //how fast each player's target wanders, in pixels per second
+
+	//One pretend player, with its own connection
+	private static class Player {
+		final EasyWindow ew = new EasyWindow("Player", false, EasyWindow.MODE_PACK, true);
+		final Map<Integer, Byte> inView = new HashMap<Integer, Byte>();
+		String server;
+		double x = SimRandom.nextDouble() * WORLD_SIZE;
+		double y = SimRandom.nextDouble() * WORLD_SIZE;
+		double angle = SimRandom.nextDouble(0, Math.PI * 2);
+		long deltas;
+		long entered;
+		long moved;
+		long left;
+		long errors;
+		WorldDelta last;
+
+		void receive() {
+			while (ew.hasReceive(server)) {
+				Object o = ew.receive(server);
+				if (!(o instanceof WorldDelta))
+					continue;
+				WorldDelta d = (WorldDelta) o;
+				for (int i = 0; i < d.getLeftCount(); i++)
+					if (inView.remove(d.getLeftId(i)) == null)
+						errors++;
+				for (int i = 0; i < d.getEnteredCount(); i++)
+					if (inView.put(d.getEnteredId(i), d.getEnteredKind(i)) != null)
+						errors++;
+				for (int i = 0; i < d.getMovedCount(); i++)
+					if (!inView.containsKey(d.getMovedId(i)))
+						errors++;
+				deltas++;
+				entered += d.getEnteredCount();
+				moved += d.getMovedCount();
+				left += d.getLeftCount();
+				last = d;
+			}
+		}
+
+		void wander(double deltaTime) {
+			angle += SimRandom.nextDouble(-1, 1) * deltaTime;
+			x = Math.max(0, Math.min(WORLD_SIZE, x + Math.cos(angle) * PLAYER_SPEED * deltaTime));
+			y = Math.max(0, Math.min(WORLD_SIZE, y + Math.sin(angle) * PLAYER_SPEED * deltaTime));
+			ew.send(server, new Point((int) x, (int) y));
+		}
+	}
+
+	private static int bytesOf(Serializable o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		return bytes.size();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int entityCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : Lab4Server.DEFAULT_PORT;
+
+		TickScheduler scheduler = new TickScheduler();
+		Lab4Server.Session session = new Lab4Server.Session(0, port, WORLD_SIZE, WORLD_SIZE);
+		session.getWorld().scatterAsteroids(entityCount);
+		session.setHandle(scheduler.schedule(session, TICK_RATE, Lab4Server.TICK_BUDGET, 0));
+		String server = "127.0.0.1:" + port;
+		Player[] players = new Player[playerCount];
+		for (int i = 0; i < playerCount; i++) {
+			players[i] = new Player();
+			players[i].server = server;
+			if (!players[i].ew.connect(server)) {
+				System.out.println("Player " + i + " could not connect to " + server);
+				System.exit(1);
+			}
+		}
+		System.out.println(playerCount + " players, " + entityCount + " asteroids, " + TICK_RATE + " ticks per second, " + seconds + " seconds");
+
+		long start = System.nanoTime();
+		long last = start;
+		while (System.nanoTime() - start < seconds * 1000000000L) {
+			Thread.sleep(50);
+			long now = System.nanoTime();
+			double deltaTime = (now - last) / 1000000000.0;
+			last = now;
+			for (Player p : players) {
+				p.receive();
+				p.wander(deltaTime);
+			}
+		}
+		double elapsed = (System.nanoTime() - start) / 1000000000.0;
+		for (Player p : players)
+			p.receive();
+
+		long deltas = 0, entered = 0, moved = 0, left = 0, errors = 0, known = 0;
+		for (Player p : players) {
+			deltas += p.deltas;
+			entered += p.entered;
+			moved += p.moved;
+			left += p.left;
+			errors += p.errors;
+			known += p.inView.size();
+		}
+		System.out.println(session.report(elapsed));
+		System.out.printf("Deltas received: %d (%.1f per player per second)%n", deltas, deltas / (double) playerCount / elapsed);
+		System.out.printf("Per delta: %.1f entered, %.1f moved, %.1f left%n", entered / (double) Math.max(1, deltas),
+				moved / (double) Math.max(1, deltas), left / (double) Math.max(1, deltas));
+		System.out.printf("Entities in view per player at the end: %.1f of %d%n", known / (double) playerCount,
+				session.getWorld().getEntities().size());
+		if (players[0].last != null)
+			System.out.printf("A delta is about %d bytes, where the whole world would be about %d bytes%n",
+					bytesOf(players[0].last), bytesOf(session.getWorld().snapshot()));
+		System.out.println("Deltas that didn't fit a player's view: " + errors);
+		for (Player p : players)
+			p.ew.closeAllConnections();
+		session.close();
+		scheduler.shutdown();
+		System.exit(errors == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,205 @@
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+//Runs many Lab4 games at once with no windows, each as a session that players connect to with Lab4Client.
+//Session i listens on port + i.  Players send the world position under their mouse as a java.awt.Point, which moves their own wormhole,
+//and after every tick each player is sent a WorldDelta with just the changes in the view around their wormhole, so big worlds stay cheap to send.  All sessions share one TickScheduler, with about one thread per core,
+//which sheds load from sessions that can't keep up by skipping sends and lowering their tick rate.
+//Every few seconds the server prints how much CPU each session is using and how far behind it is running.
+//Usage: java Lab4Server [port] [sessions] [ticks per second] [world size]
+public class Lab4Server {
+
+	public static final int DEFAULT_PORT = 5000;
+	public static final int DEFAULT_SESSIONS = 24;
+	public static final int DEFAULT_TICK_RATE = 30;
+	public static final int REPORT_SECONDS = 5;
+	public static final double TICK_BUDGET = 0.5;     //share of a tick period each session may spend ticking
+	public static final double VIEW_MARGIN = 100;     //players know about entities this far outside their view
+	public static final double MAX_TICK_TIME = 0.25;  //a tick that starts very late doesn't try to catch up all at once
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	//One game, with the window that holds its connections
+	public static class Session implements Tickable {
+
+		private final int number;
+		private final EasyWindow ew;
+		private final World world;
+		private final String host;
+		private final HashSet<String> players = new HashSet<String>();
+		private final HashMap<String, InterestSet> interests = new HashMap<String, InterestSet>();
+		private TickScheduler.Handle handle;
+		private long ticks;
+		private long cpuNanos;   //CPU time spent in tick, on whichever thread ran it
+		private long wallNanos;  //time spent in tick
+		private long reportedTicks;
+		private long reportedCpuNanos;
+		private long reportedWallNanos;
+		private long sends;
+		private long sentEntities;  //entered and moved entities in every WorldDelta sent
+		private long sentLeaves;
+		private long reportedSends;
+		private long reportedSentEntities;
+		private long reportedSentLeaves;
+
+		//Constructor.  Starts hosting straight away.
+		public Session(int number, int port, double worldWidth, double worldHeight) {
+			this.number = number;
+			ew = new EasyWindow("Session " + number, false, EasyWindow.MODE_PACK, true);
+			ew.setConnectionMode(EasyWindow.CONNECTION_VIRTUAL);
+			world = new World(worldWidth, worldHeight, 0);
+			host = ew.host(port);
+		}
+
+		//One tick: take in what the players sent, move the world on, and send everyone the result unless the scheduler is short on time
+		@Override
+		public synchronized void tick(double deltaTime, boolean render) {
+			long cpuStart = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+			long start = System.nanoTime();
+			deltaTime = Math.min(MAX_TICK_TIME, deltaTime);
+
+			String[] connections = ew.getConnections();
+			HashSet<String> connected = new HashSet<String>();
+			for (String c : connections) {
+				connected.add(c);
+				if (players.add(c)) {
+					world.addPlayer(c);
+					interests.put(c, new InterestSet(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, VIEW_MARGIN));
+				}
+				Point mouse = null;
+				while (ew.hasReceive(c)) {
+					Object o = ew.receive(c);
+					if (o instanceof Point)
+						mouse = (Point) o;
+				}
+				if (mouse != null)
+					world.setPlayerTarget(c, mouse.x, mouse.y);
+			}
+			for (String p : new ArrayList<String>(players)) {
+				if (!connected.contains(p)) {
+					players.remove(p);
+					interests.remove(p);
+					world.removePlayer(p);
+				}
+			}
+
+			world.step(deltaTime);
+			if (render) {
+				for (String c : connections) {
+					Wormhole w = world.getPlayer(c);
+					WorldDelta delta = interests.get(c).update(world, w.getXCenter(), w.getYCenter());
+					ew.send(c, delta);
+					sends++;
+					sentEntities += delta.getEnteredCount() + delta.getMovedCount();
+					sentLeaves += delta.getLeftCount();
+				}
+			}
+
+			ticks++;
+			wallNanos += System.nanoTime() - start;
+			if (THREADS.isCurrentThreadCpuTimeSupported())
+				cpuNanos += THREADS.getCurrentThreadCpuTime() - cpuStart;
+		}
+
+		//Describes the CPU used since the last report, then starts counting again
+		public synchronized String report(double seconds) {
+			long t = ticks - reportedTicks;
+			double cpu = (cpuNanos - reportedCpuNanos) / 1000000.0;
+			double wall = (wallNanos - reportedWallNanos) / 1000000.0;
+			reportedTicks = ticks;
+			reportedCpuNanos = cpuNanos;
+			reportedWallNanos = wallNanos;
+			long s = sends - reportedSends;
+			double perSend = (sentEntities - reportedSentEntities) / (double) Math.max(1, s);
+			double leavesPerSend = (sentLeaves - reportedSentLeaves) / (double) Math.max(1, s);
+			reportedSends = sends;
+			reportedSentEntities = sentEntities;
+			reportedSentLeaves = sentLeaves;
+			String line = String.format("Session %d: %d players, %d entities, %.1f ticks/s, %.3f ms CPU/tick (%.3f ms wall), %.2f%% of a core",
+					number, players.size(), world.getEntities().size(), t / seconds, cpu / Math.max(1, t), wall / Math.max(1, t),
+					cpu / (seconds * 10));
+			line += String.format(", %.1f entities and %.1f leaves per send", perSend, leavesPerSend);
+			if (handle != null)
+				line += String.format(", lag %.2f ms (max %.2f), shed level %d, %d dropped ticks, %d skipped sends",
+						handle.getLagMillis(), handle.getMaxLagMillis(), handle.getShedLevel(), handle.getDroppedTicks(),
+						handle.getSkippedRenders());
+			return line;
+		}
+
+		//Stops hosting and disconnects every player
+		public void close() {
+			if (handle != null)
+				handle.cancel();
+			ew.closeAllConnections();
+		}
+
+		//Simple set method
+		public void setHandle(TickScheduler.Handle handle) {
+			this.handle = handle;
+		}
+
+		//Simple get method
+		public World getWorld() {
+			return world;
+		}
+
+		//Simple get method
+		public String getHost() {
+			return host;
+		}
+
+		//Simple get method
+		public long getCpuNanos() {
+			return cpuNanos;
+		}
+	}
+
+	public static void main(String[] args) {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int sessionCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SESSIONS;
+		int tickRate = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TICK_RATE;
+		double worldSize = args.length > 3 ? Double.parseDouble(args[3]) : Lab4.SCREEN_WIDTH;
+		if (THREADS.isThreadCpuTimeSupported())
+			THREADS.setThreadCpuTimeEnabled(true);
+
+		TickScheduler scheduler = new TickScheduler();
+		final ArrayList<Session> sessions = new ArrayList<Session>();
+		for (int i = 0; i < sessionCount; i++) {
+			Session s = new Session(i, port + i, worldSize, worldSize);
+			sessions.add(s);
+			System.out.println("Session " + i + ": " + s.getHost());
+			//Spread the sessions' ticks out across the period so they don't all land at once
+			s.setHandle(scheduler.schedule(s, tickRate, TICK_BUDGET, (double) i / sessionCount / tickRate));
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				for (Session s : sessions)
+					s.close();
+			}
+		});
+
+		long last = System.nanoTime();
+		while (true) {
+			try {
+				Thread.sleep(REPORT_SECONDS * 1000L);
+			} catch (InterruptedException e) {
+				break;
+			}
+			long now = System.nanoTime();
+			double seconds = (now - last) / 1000000000.0;
+			last = now;
+			long total = 0;
+			for (Session s : sessions) {
+				System.out.println(s.report(seconds));
+				total += s.getCpuNanos();
+			}
+			System.out.println("All sessions: " + (total / 1000000) + " ms CPU in total");
+		}
+		scheduler.shutdown();
+	}
+}
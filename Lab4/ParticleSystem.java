@@ -0,0 +1,173 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+//Debris and sparks, such as from an asteroid being destroyed.
+//There are no particle objects: every particle is a slot in a few float arrays, made once at the largest size needed.
+//New particles go in the slot after the last one, wrapping around to overwrite the oldest once every slot is in use,
+//so emitting never allocates and never has to search for a free slot.
+//Particles are moved in parallel bands of slots, and drawn by adding their color straight into the pixels of an int ARGB image.
+//Run it with "java ParticleSystem" to see how many particles can be moved and drawn in a 16 ms frame.
+public class ParticleSystem {
+
+	public static final long RANDOM_STREAM = 0x5041525449434CL;  //so the particles never change the simulation's random numbers
+	private static final int BAND_SLOTS = 16384;  //slots in each band given to a thread
+	private static final float DRAG = 0.98f;      //fraction of its speed a particle keeps each 1/60th of a second
+
+	private final float[] xs;
+	private final float[] ys;
+	private final float[] xVels;
+	private final float[] yVels;
+	private final float[] lives;     //seconds left; the slot is empty when 0 or less
+	private final float[] maxLives;  //seconds the particle started with, to fade it out
+	private final int[] colors;      //0xRRGGBB
+	private final int capacity;
+	private final SplittableRandom random = SimRandom.forStream(RANDOM_STREAM);
+	private int next;  //the slot the next particle goes in
+	private int used;  //how many slots have ever been written, up to capacity
+	private boolean parallel = true;
+
+	//Constructor.  capacity is the most particles there can be at once.
+	public ParticleSystem(int capacity) {
+		this.capacity = capacity;
+		xs = new float[capacity];
+		ys = new float[capacity];
+		xVels = new float[capacity];
+		yVels = new float[capacity];
+		lives = new float[capacity];
+		maxLives = new float[capacity];
+		colors = new int[capacity];
+	}
+
+	//Adds one particle, overwriting the oldest if every slot is in use
+	public void emit(double x, double y, double xVel, double yVel, double life, int rgb) {
+		int i = next;
+		xs[i] = (float) x;
+		ys[i] = (float) y;
+		xVels[i] = (float) xVel;
+		yVels[i] = (float) yVel;
+		lives[i] = (float) life;
+		maxLives[i] = (float) life;
+		colors[i] = rgb & 0xFFFFFF;
+		next = next + 1 == capacity ? 0 : next + 1;
+		used = Math.max(used, next == 0 ? capacity : next);
+	}
+
+	//Adds count particles flying out from (x, y) in random directions, up to maxSpeed pixels per second,
+	//each living up to maxLife seconds
+	public void explode(double x, double y, int count, double maxSpeed, double maxLife, int rgb) {
+		for (int p = 0; p < count; p++) {
+			double angle = random.nextDouble() * Math.PI * 2;
+			double speed = maxSpeed * Math.sqrt(random.nextDouble());
+			emit(x, y, Math.cos(angle) * speed, Math.sin(angle) * speed, maxLife * (0.5 + random.nextDouble() * 0.5), rgb);
+		}
+	}
+
+	//Moves every particle as if deltaTime seconds had passed, slowing it down, and ages it
+	public void update(double deltaTime) {
+		final float dt = (float) deltaTime;
+		final float drag = (float) Math.pow(DRAG, deltaTime * 60);
+		forEachBand(new IntConsumer() {
+			@Override
+			public void accept(int b) {
+				for (int i = b * BAND_SLOTS, end = Math.min(used, i + BAND_SLOTS); i < end; i++) {
+					xs[i] += xVels[i] * dt;
+					ys[i] += yVels[i] * dt;
+					xVels[i] *= drag;
+					yVels[i] *= drag;
+					lives[i] -= dt;
+				}
+			}
+		});
+	}
+
+	//Adds every living particle's color into the image, brighter the younger it is, with each channel stopping at 255.
+	//A particle at (x, y) lands on pixel (x - offsetX, y - offsetY), such as to draw in world coordinates with a camera.
+	//The image must be TYPE_INT_ARGB or TYPE_INT_RGB, like the canvas in Lab4.
+	//Bands of particles are drawn on several threads at once, so if two land on the same pixel at the same moment
+	//one of them can be lost for that frame; for sparks that can't be seen, and it saves locking every pixel.
+	public void draw(BufferedImage target, final int offsetX, final int offsetY) {
+		final int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+		final int w = target.getWidth();
+		final int h = target.getHeight();
+		forEachBand(new IntConsumer() {
+			@Override
+			public void accept(int b) {
+				for (int i = b * BAND_SLOTS, end = Math.min(used, i + BAND_SLOTS); i < end; i++) {
+					if (lives[i] <= 0)
+						continue;
+					int x = (int) xs[i] - offsetX;
+					int y = (int) ys[i] - offsetY;
+					if (x < 0 || y < 0 || x >= w || y >= h)
+						continue;
+					int brightness = (int) (256 * lives[i] / maxLives[i]);
+					int c = colors[i];
+					int p = y * w + x;
+					int old = pixels[p];
+					int r = Math.min(255, ((old >> 16) & 0xFF) + ((((c >> 16) & 0xFF) * brightness) >> 8));
+					int g = Math.min(255, ((old >> 8) & 0xFF) + ((((c >> 8) & 0xFF) * brightness) >> 8));
+					int bl = Math.min(255, (old & 0xFF) + (((c & 0xFF) * brightness) >> 8));
+					pixels[p] = (old & 0xFF000000) | (r << 16) | (g << 8) | bl;
+				}
+			}
+		});
+	}
+
+	private void forEachBand(IntConsumer task) {
+		int bands = (used + BAND_SLOTS - 1) / BAND_SLOTS;
+		if (parallel && bands > 1)
+			IntStream.range(0, bands).parallel().forEach(task);
+		else
+			for (int b = 0; b < bands; b++)
+				task.accept(b);
+	}
+
+	//How many particles are still alive.  Counts them, so not for every frame.
+	public int getAlive() {
+		int alive = 0;
+		for (int i = 0; i < used; i++)
+			if (lives[i] > 0)
+				alive++;
+		return alive;
+	}
+
+	//Simple get method
+	public int getCapacity() {
+		return capacity;
+	}
+
+	//Simple set method.  When false, every band runs on the calling thread.
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	//Finds how many particles can be moved and drawn into a Lab4-sized canvas each frame
+	//while staying inside a 16 ms frame, doubling the count until they can't
+	public static void main(String[] args) {
+		BufferedImage canvas = new BufferedImage(Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		double budget = 0.016;
+		int best = 0;
+		for (int count = 1 << 14; count <= 1 << 23; count *= 2) {
+			ParticleSystem particles = new ParticleSystem(count);
+			//Spread across the screen, living longer than the test so none die
+			for (int i = 0; i < count; i += 1000)
+				particles.explode(Lab4.SCREEN_WIDTH * particles.random.nextDouble(), Lab4.SCREEN_HEIGHT * particles.random.nextDouble(),
+						Math.min(1000, count - i), 300, 1000, 0x806030);
+			double frame = Double.POSITIVE_INFINITY;
+			for (int f = 0; f < 30; f++) {
+				long start = System.nanoTime();
+				particles.update(1 / 60.0);
+				particles.draw(canvas, 0, 0);
+				frame = Math.min(frame, (System.nanoTime() - start) / 1e9);
+			}
+			System.out.printf("%,d particles: %.2f ms a frame%n", count, frame * 1000);
+			if (frame > budget)
+				break;
+			best = count;
+		}
+		System.out.printf("About %,d particles fit in a %.0f ms frame (%d cores)%n", best, budget * 1000,
+				Runtime.getRuntime().availableProcessors());
+	}
+}
@@ -0,0 +1,127 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+//An image as one flat int array of ARGB pixels (0xAARRGGBB), row by row, for FilterPipeline and other pixel-level code.
+//Unlike an int[][][] from EasyWindow.loadArrayImage, a pixel is one int instead of an array of three, and nothing is
+//converted through Color objects.  A PixelRaster can wrap the pixels of an int ARGB BufferedImage, such as the canvas,
+//so writing to it draws straight into the frame; and any PixelRaster can be shown as a BufferedImage without copying.
+public class PixelRaster {
+
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+	private BufferedImage image;  //sharing pixels, made when first asked for unless wrapping one
+
+	//Constructor, with every pixel transparent black
+	public PixelRaster(int width, int height) {
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+	}
+
+	private PixelRaster(BufferedImage image) {
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.image = image;
+	}
+
+	//Uses the pixels of a TYPE_INT_ARGB BufferedImage (or TYPE_INT_RGB, whose top byte is ignored), so changes show in the image
+	public static PixelRaster wrap(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB && image.getType() != BufferedImage.TYPE_INT_RGB)
+			throw new IllegalArgumentException("Only TYPE_INT_ARGB and TYPE_INT_RGB images can be wrapped, not type " + image.getType());
+		return new PixelRaster(image);
+	}
+
+	//Copies any BufferedImage into a new PixelRaster
+	public static PixelRaster copyOf(BufferedImage image) {
+		PixelRaster r = new PixelRaster(image.getWidth(), image.getHeight());
+		image.getRGB(0, 0, r.width, r.height, r.pixels, 0, r.width);
+		return r;
+	}
+
+	//Copies an EasyWindow [x][y][RGB] array into a new, opaque PixelRaster.  Channels are clamped to 0 - 255.
+	public static PixelRaster fromArray(int[][][] array) {
+		PixelRaster r = new PixelRaster(array.length, array[0].length);
+		for (int x = 0; x < r.width; x++) {
+			int[][] column = array[x];
+			for (int y = 0; y < r.height; y++) {
+				int[] c = column[y];
+				r.pixels[y * r.width + x] = 0xFF000000 | clamp(c[EasyWindow.RED]) << 16 | clamp(c[EasyWindow.GREEN]) << 8
+						| clamp(c[EasyWindow.BLUE]);
+			}
+		}
+		return r;
+	}
+
+	//Copies the pixels into an EasyWindow [x][y][RGB] array of the same size, such as one made by an earlier toArray, dropping alpha
+	public void toArray(int[][][] array) {
+		for (int x = 0; x < width; x++) {
+			int[][] column = array[x];
+			for (int y = 0; y < height; y++) {
+				int p = pixels[y * width + x];
+				int[] c = column[y];
+				c[EasyWindow.RED] = (p >> 16) & 0xFF;
+				c[EasyWindow.GREEN] = (p >> 8) & 0xFF;
+				c[EasyWindow.BLUE] = p & 0xFF;
+			}
+		}
+	}
+
+	//Copies the pixels into a new EasyWindow [x][y][RGB] array
+	public int[][][] toArray() {
+		int[][][] array = new int[width][height][3];
+		toArray(array);
+		return array;
+	}
+
+	//Gets a TYPE_INT_ARGB BufferedImage showing these pixels, without copying them, such as to give to EasyWindow.update
+	public BufferedImage toBufferedImage() {
+		if (image == null) {
+			DataBufferInt buffer = new DataBufferInt(pixels, pixels.length);
+			SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(DataBufferInt.TYPE_INT, width, height,
+					new int[] { 0xFF0000, 0xFF00, 0xFF, 0xFF000000 });
+			WritableRaster raster = Raster.createWritableRaster(model, buffer, null);
+			image = new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+		}
+		return image;
+	}
+
+	//Copies every pixel from another PixelRaster of the same size
+	public void copyFrom(PixelRaster other) {
+		System.arraycopy(other.pixels, 0, pixels, 0, pixels.length);
+	}
+
+	//Gets one ARGB pixel
+	public int get(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	//Sets one ARGB pixel
+	public void set(int x, int y, int argb) {
+		pixels[y * width + x] = argb;
+	}
+
+	//Gets the pixels themselves, row by row, to change directly
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	//Simple get method
+	public int getWidth() {
+		return width;
+	}
+
+	//Simple get method
+	public int getHeight() {
+		return height;
+	}
+
+	static int clamp(int c) {
+		return c < 0 ? 0 : c > 255 ? 255 : c;
+	}
+}
@@ -0,0 +1,249 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * SharedFramebuffer
+ *
+ * Writes frames into a memory-mapped file, so another process (such as a video encoder) can map the same file and read them
+ * without any copying through sockets or pipes.  Read it with {@link SharedFramebufferReader}, or from any language that can map a file.
+ *
+ * The file is a header followed by a ring of slots, each holding one whole frame.  Frame n goes in slot n % slots.
+ * Each slot starts with a sequence counter, which works as a seqlock: it is odd (2n + 1) while frame n is being written
+ * and even (2n + 2) once it is done.  A reader reads the counter, then the pixels, then the counter again, and if it is
+ * unchanged and even the pixels are all from the same frame.  The writer never waits for readers; a reader that is too slow
+ * just finds that the frame it wanted has been written over, and moves on to a newer one.
+ *
+ * Layout, all in the machine's native byte order:
+ * header (HEADER_BYTES): int magic, int version, int width, int height, int slots, int slot header bytes, long slot bytes, long latest frame (-1 before the first);
+ * each slot (slot bytes, a whole number of pages): long sequence, long frame number, long System.nanoTime() when written, then width * height ARGB ints at SLOT_HEADER_BYTES.
+ *
+ */
+public class SharedFramebuffer {
+
+	public static final int MAGIC = 0x45574642;  // "EWFB"
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 64;
+	public static final int SLOT_HEADER_BYTES = 64;
+	public static final int PAGE_BYTES = 4096;
+	//Offsets in the header
+	static final int WIDTH_OFFSET = 8;
+	static final int HEIGHT_OFFSET = 12;
+	static final int SLOTS_OFFSET = 16;
+	static final int SLOT_HEADER_OFFSET = 20;
+	static final int SLOT_BYTES_OFFSET = 24;
+	static final int LATEST_OFFSET = 32;
+	//Offsets in a slot
+	static final int SEQUENCE_OFFSET = 0;
+	static final int FRAME_OFFSET = 8;
+	static final int TIME_OFFSET = 16;
+
+	//Fences around the sequence counters, from sun.misc.Unsafe, which has them since Java 8.  Plain buffer accesses can be reordered
+	//by the compiler and the processor, and volatile fields only order one way, so the seqlock needs real fences.
+	//They are looked up by reflection, since Unsafe isn't part of the platform's API, and kept in final fields so the JIT inlines them.
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle LOAD_FENCE;
+
+	static {
+		MethodHandle storeFence = null;
+		MethodHandle loadFence = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			storeFence = lookup.findVirtual(unsafeClass, "storeFence", MethodType.methodType(void.class)).bindTo(unsafe);
+			loadFence = lookup.findVirtual(unsafeClass, "loadFence", MethodType.methodType(void.class)).bindTo(unsafe);
+		} catch (ReflectiveOperationException e) {
+			storeFence = null;
+			loadFence = null;
+		} catch (RuntimeException e) {
+			storeFence = null;
+			loadFence = null;
+		}
+		STORE_FENCE = storeFence;
+		LOAD_FENCE = loadFence;
+	}
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final IntBuffer[] slotPixels;
+	private final int width;
+	private final int height;
+	private final int slots;
+	private final long slotBytes;
+	private int[] converted;
+	private long frames;
+	private long skippedFrames;
+
+	/**
+	 * Creates (or overwrites) the file and maps it.
+	 * @param filename The file to write to.  Somewhere in memory, such as /dev/shm on Linux, avoids the disk entirely.
+	 * @param width The width of every frame.
+	 * @param height The height of every frame.
+	 * @param slots How many frames the ring holds.  More slots give a slow reader longer before its frame is written over.
+	 * @throws IOException If the file can't be created or mapped.
+	 */
+	public SharedFramebuffer(String filename, int width, int height, int slots) throws IOException {
+		checkFences();
+		this.width = width;
+		this.height = height;
+		this.slots = slots;
+		long bytes = SLOT_HEADER_BYTES + (long) width * height * 4;
+		slotBytes = (bytes + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+		long size = PAGE_BYTES + slotBytes * slots;
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Framebuffer too big to map: " + size + " bytes");
+		new File(filename).delete();
+		file = new RandomAccessFile(filename, "rw");
+		file.setLength(size);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.nativeOrder());
+		slotPixels = new IntBuffer[slots];
+		for (int i = 0; i < slots; i++)
+			slotPixels[i] = view(buffer, slotOffset(i) + SLOT_HEADER_BYTES, width * height);
+		buffer.putInt(WIDTH_OFFSET, width);
+		buffer.putInt(HEIGHT_OFFSET, height);
+		buffer.putInt(SLOTS_OFFSET, slots);
+		buffer.putInt(SLOT_HEADER_OFFSET, SLOT_HEADER_BYTES);
+		buffer.putLong(SLOT_BYTES_OFFSET, slotBytes);
+		buffer.putLong(LATEST_OFFSET, -1);
+		buffer.putInt(4, VERSION);
+		storeFence();
+		//Last, so a reader that sees the magic sees the rest of the header
+		buffer.putInt(0, MAGIC);
+	}
+
+	//Throws if this JVM has no Unsafe fences, since without them readers could get torn frames without knowing
+	static void checkFences() throws IOException {
+		if (STORE_FENCE == null || LOAD_FENCE == null)
+			throw new IOException("No memory fences on this JVM (sun.misc.Unsafe is missing), so frames can't be shared safely");
+	}
+
+	//No store after this can be seen before any store or load before it
+	static void storeFence() {
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	//No load after this can happen before any load before it
+	static void loadFence() {
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	//The first slot starts on the second page, so every frame is page aligned
+	private int slotOffset(int slot) {
+		return (int) (PAGE_BYTES + slot * slotBytes);
+	}
+
+	//An int view of part of a mapped buffer, in native order, sharing its memory
+	static IntBuffer view(ByteBuffer buffer, int offset, int ints) {
+		ByteBuffer b = buffer.duplicate();
+		b.position(offset);
+		b.limit(offset + ints * 4);
+		return b.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	/**
+	 * Writes a frame into the next slot and publishes it.  Frames of a different size are skipped and counted.
+	 * @param image The frame.  TYPE_INT_ARGB images are copied straight from their raster; others are converted first.
+	 */
+	public void write(BufferedImage image) {
+		if (image.getWidth() != width || image.getHeight() != height) {
+			skippedFrames++;
+			return;
+		}
+		int[] pixels;
+		if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		} else {
+			if (converted == null)
+				converted = new int[width * height];
+			image.getRGB(0, 0, width, height, converted, 0, width);
+			pixels = converted;
+		}
+		long n = frames;
+		int slot = (int) (n % slots);
+		int base = slotOffset(slot);
+		buffer.putLong(base + SEQUENCE_OFFSET, 2 * n + 1);
+		//The odd counter has to be visible before any pixel changes, so a reader can tell the slot is being written
+		storeFence();
+		IntBuffer target = slotPixels[slot];
+		target.clear();
+		target.put(pixels, 0, width * height);
+		buffer.putLong(base + FRAME_OFFSET, n);
+		buffer.putLong(base + TIME_OFFSET, System.nanoTime());
+		//And every pixel before the even counter that says the frame is done
+		storeFence();
+		buffer.putLong(base + SEQUENCE_OFFSET, 2 * n + 2);
+		storeFence();
+		buffer.putLong(LATEST_OFFSET, n);
+		frames++;
+	}
+
+	/**
+	 * Closes the file.  Readers that already have it mapped keep what was last written.
+	 */
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close framebuffer");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return How many frames have been written.
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * @return How many frames were skipped for being the wrong size.
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * @return The width of every frame.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of every frame.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return How many frames the ring holds.
+	 */
+	public int getSlots() {
+		return slots;
+	}
+}
@@ -0,0 +1,324 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SharedFramebufferReader
+ *
+ * Reads the frames a {@link SharedFramebuffer} writes, usually from another process.
+ * Frames can be copied out whole with {@link read}, which retries until it gets a frame that wasn't being written at the same time,
+ * or looked at in place with {@link getPixels}, with no copying at all, checking {@link isIntact} afterwards to be sure
+ * the writer didn't start on that slot while they were being read.
+ *
+ * Run "java SharedFramebufferReader test [seconds]" to check the handoff: a writer in this process fills every pixel of each frame
+ * with the frame number, and a reader in a second process checks that every frame it gets is all one number, and how fast they arrive.
+ * Run "java SharedFramebufferReader &lt;file&gt;" to watch the frames of a running program, such as Lab4 started with "framebuffer &lt;file&gt;".
+ *
+ */
+public class SharedFramebufferReader {
+
+	private static final long SPIN_NANO = 50000;  //wait for a new frame by spinning this long, then by parking
+	private static final long PARK_NANO = 200000;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final IntBuffer[] slotPixels;
+	private final int width;
+	private final int height;
+	private final int slots;
+	private final long slotBytes;
+	private long retries;
+
+	/**
+	 * Maps a framebuffer file for reading.
+	 * @param filename The file a SharedFramebuffer is writing.
+	 * @throws IOException If the file can't be mapped, or isn't a framebuffer.
+	 */
+	public SharedFramebufferReader(String filename) throws IOException {
+		SharedFramebuffer.checkFences();
+		file = new RandomAccessFile(filename, "r");
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		buffer.order(ByteOrder.nativeOrder());
+		if (buffer.capacity() < SharedFramebuffer.HEADER_BYTES || buffer.getInt(0) != SharedFramebuffer.MAGIC) {
+			file.close();
+			throw new IOException("Not a framebuffer: " + filename);
+		}
+		SharedFramebuffer.loadFence();
+		if (buffer.getInt(4) != SharedFramebuffer.VERSION) {
+			file.close();
+			throw new IOException("Unknown framebuffer version " + buffer.getInt(4) + ": " + filename);
+		}
+		width = buffer.getInt(SharedFramebuffer.WIDTH_OFFSET);
+		height = buffer.getInt(SharedFramebuffer.HEIGHT_OFFSET);
+		slots = buffer.getInt(SharedFramebuffer.SLOTS_OFFSET);
+		slotBytes = buffer.getLong(SharedFramebuffer.SLOT_BYTES_OFFSET);
+		int slotHeader = buffer.getInt(SharedFramebuffer.SLOT_HEADER_OFFSET);
+		slotPixels = new IntBuffer[slots];
+		for (int i = 0; i < slots; i++)
+			slotPixels[i] = SharedFramebuffer.view(buffer, slotOffset(i) + slotHeader, width * height).asReadOnlyBuffer();
+	}
+
+	private int slotOffset(int slot) {
+		return (int) (SharedFramebuffer.PAGE_BYTES + slot * slotBytes);
+	}
+
+	private long sequence(long frame) {
+		return buffer.getLong(slotOffset((int) (frame % slots)) + SharedFramebuffer.SEQUENCE_OFFSET);
+	}
+
+	/**
+	 * @return The number of the newest finished frame, or -1 if none has been written yet.
+	 */
+	public long getLatestFrame() {
+		long latest = buffer.getLong(SharedFramebuffer.LATEST_OFFSET);
+		//So the frame's counter and pixels are read after the number that says it is finished
+		SharedFramebuffer.loadFence();
+		return latest;
+	}
+
+	/**
+	 * Gets a frame's pixels where they are in the shared memory, without copying them.
+	 * The writer doesn't wait for readers, so check {@link isIntact} after reading them; if it is false, some may be from a later frame.
+	 * @param frame The frame number, such as from getLatestFrame.
+	 * @return The ARGB pixels, row by row, or null if the frame isn't in the ring (not written yet, or already written over).
+	 */
+	public IntBuffer getPixels(long frame) {
+		if (frame < 0 || sequence(frame) != 2 * frame + 2)
+			return null;
+		//The pixels can't be read before the counter that says they are finished
+		SharedFramebuffer.loadFence();
+		return slotPixels[(int) (frame % slots)].duplicate();
+	}
+
+	/**
+	 * Checks that a frame's slot still holds that frame, and hasn't been touched since it was finished.
+	 * @param frame The frame number.
+	 * @return True if every pixel read from getPixels(frame) before now was from that frame.
+	 */
+	public boolean isIntact(long frame) {
+		//Every pixel has to be read before the counter is read again
+		SharedFramebuffer.loadFence();
+		return frame >= 0 && sequence(frame) == 2 * frame + 2;
+	}
+
+	/**
+	 * Copies the newest finished frame, trying again whenever the writer gets to its slot while it is being copied.
+	 * @param pixels Where to copy the ARGB pixels, at least width * height long.
+	 * @return The frame number copied, or -1 if none has been written yet.
+	 */
+	public long read(int[] pixels) {
+		while (true) {
+			long frame = getLatestFrame();
+			if (frame < 0)
+				return -1;
+			IntBuffer view = getPixels(frame);
+			if (view != null) {
+				view.get(pixels, 0, width * height);
+				if (isIntact(frame))
+					return frame;
+			}
+			retries++;
+		}
+	}
+
+	/**
+	 * Waits for a frame newer than the given one.
+	 * @param after The last frame number already seen, or -1.
+	 * @param timeoutNano How long to wait at most, in nanoseconds.
+	 * @return The newest frame number, or -1 if nothing newer came in time.
+	 */
+	public long waitForFrame(long after, long timeoutNano) {
+		long start = System.nanoTime();
+		while (true) {
+			long latest = getLatestFrame();
+			if (latest > after)
+				return latest;
+			long waited = System.nanoTime() - start;
+			if (waited >= timeoutNano)
+				return -1;
+			if (waited < SPIN_NANO)
+				Thread.yield();
+			else
+				LockSupport.parkNanos(PARK_NANO);
+		}
+	}
+
+	/**
+	 * Gets when a frame was written, by the writer's System.nanoTime(), which is only comparable on the same machine.
+	 * @param frame The frame number.
+	 * @return The time, or -1 if the frame isn't in the ring.
+	 */
+	public long getWriteTime(long frame) {
+		int base = slotOffset((int) (frame % slots));
+		long time = buffer.getLong(base + SharedFramebuffer.TIME_OFFSET);
+		return isIntact(frame) ? time : -1;
+	}
+
+	/**
+	 * Stops reading.  The mapping itself is let go when it is garbage collected.
+	 */
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close framebuffer");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return How many times read had to start over because the writer got to the slot first.
+	 */
+	public long getRetries() {
+		return retries;
+	}
+
+	/**
+	 * @return The width of every frame.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of every frame.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return How many frames the ring holds.
+	 */
+	public int getSlots() {
+		return slots;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("test"))
+			test(args.length > 1 ? Double.parseDouble(args[1]) : 5);
+		else if (args.length > 2 && args[0].equals("verify"))
+			System.exit(verify(args[1], Double.parseDouble(args[2])));
+		else if (args.length > 0)
+			watch(args[0]);
+		else
+			System.out.println("Usage: java SharedFramebufferReader test [seconds] | <file>");
+	}
+
+	//Writes numbered frames as fast as possible while a second process verifies them
+	private static void test(double seconds) throws Exception {
+		File f = File.createTempFile("framebuffer", ".bin");
+		String filename = f.getPath();
+		SharedFramebuffer out = new SharedFramebuffer(filename, Lab4.SCREEN_WIDTH, Lab4.SCREEN_HEIGHT, 4);
+		BufferedImage image = new BufferedImage(out.getWidth(), out.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process reader = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "SharedFramebufferReader", "verify",
+				filename, Double.toString(seconds)).redirectErrorStream(true).start();
+		long start = System.nanoTime();
+		while (reader.isAlive()) {
+			Arrays.fill(pixels, (int) out.getFrames());
+			out.write(image);
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		BufferedReader result = new BufferedReader(new InputStreamReader(reader.getInputStream()));
+		for (String line = result.readLine(); line != null; line = result.readLine())
+			System.out.println("Reader: " + line);
+		System.out.printf("Writer: %d frames, %.0f frames/s, %.0f MB/s%n", out.getFrames(), out.getFrames() / elapsed,
+				out.getFrames() * (double) pixels.length * 4 / elapsed / 1e6);
+		out.close();
+		f.delete();
+		System.out.println(reader.exitValue() == 0 ? "Passed" : "FAILED");
+	}
+
+	//Reads frames both ways for the given time and checks each is all one frame.  Returns the exit code: 0 if none were torn.
+	private static int verify(String filename, double seconds) throws IOException {
+		SharedFramebufferReader in = new SharedFramebufferReader(filename);
+		int[] pixels = new int[in.getWidth() * in.getHeight()];
+		long copied = 0;
+		long viewed = 0;
+		long viewsWrittenOver = 0;
+		long torn = 0;
+		long last = -1;
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		while (System.nanoTime() < end) {
+			last = in.waitForFrame(last, 1000000000L);
+			if (last < 0)
+				break;
+			if ((last & 1) == 0) {
+				//Copied out
+				long frame = in.read(pixels);
+				for (int p : pixels)
+					if (p != (int) frame) {
+						torn++;
+						break;
+					}
+				copied++;
+				last = frame;
+			} else {
+				//Looked at in place; only counted if it was still intact afterwards
+				IntBuffer view = in.getPixels(last);
+				if (view == null) {
+					viewsWrittenOver++;
+					continue;
+				}
+				boolean uniform = true;
+				for (int i = 0; i < pixels.length; i++)
+					if (view.get(i) != (int) last)
+						uniform = false;
+				if (!in.isIntact(last))
+					viewsWrittenOver++;
+				else if (!uniform)
+					torn++;
+				else
+					viewed++;
+			}
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d frames copied and %d read in place in %.1f s (%.0f frames/s, %.0f MB/s); %d copies retried, %d in-place reads written over, %d torn%n",
+				copied, viewed, elapsed, (copied + viewed) / elapsed, (copied + viewed) * (double) pixels.length * 4 / elapsed / 1e6,
+				in.getRetries(), viewsWrittenOver, torn);
+		in.close();
+		return torn == 0 && copied + viewed > 0 ? 0 : 1;
+	}
+
+	//Prints how many frames a running writer is producing, once a second, until it stops
+	private static void watch(String filename) throws IOException {
+		SharedFramebufferReader in = new SharedFramebufferReader(filename);
+		int[] pixels = new int[in.getWidth() * in.getHeight()];
+		System.out.printf("%d x %d, %d slots%n", in.getWidth(), in.getHeight(), in.getSlots());
+		long last = in.getLatestFrame();
+		while (true) {
+			long second = System.nanoTime() + 1000000000L;
+			int frames = 0;
+			double latency = 0;
+			while (System.nanoTime() < second) {
+				long next = in.waitForFrame(last, second - System.nanoTime());
+				if (next < 0)
+					break;
+				last = in.read(pixels);
+				long written = in.getWriteTime(last);
+				if (written >= 0)
+					latency += (System.nanoTime() - written) / 1e6;
+				frames++;
+			}
+			if (frames == 0) {
+				System.out.println("No new frames");
+				break;
+			}
+			System.out.printf("%d frames/s, %.2f ms after being written, %d retries%n", frames, latency / frames, in.getRetries());
+		}
+		in.close();
+	}
+}
@@ -0,0 +1,75 @@
+import java.util.SplittableRandom;
+
+//Random numbers for the simulation.
+//Unlike Math.random(), which every thread shares through one synchronized generator,
+//each thread gets its own generator split off a single seed, so there is no contention
+//and a run can be repeated exactly by starting it with the same seed.
+public class SimRandom {
+
+	private static long seed = System.nanoTime();
+	private static SplittableRandom root = new SplittableRandom(seed);
+	private static volatile int generation = 0;  //bumped by setSeed so every thread splits again
+
+	private static final ThreadLocal<ThreadState> local = new ThreadLocal<ThreadState>() {
+		@Override
+		protected ThreadState initialValue() {
+			return new ThreadState();
+		}
+	};
+
+	//The generator of one thread, and which seed it came from
+	private static class ThreadState {
+		SplittableRandom random;
+		int generation = -1;
+	}
+
+	//Restarts every generator from the given seed.  Call before the simulation starts.
+	public static synchronized void setSeed(long newSeed) {
+		seed = newSeed;
+		root = new SplittableRandom(newSeed);
+		generation++;
+	}
+
+	//Gets the seed the current run started from, so it can be printed and repeated later
+	public static synchronized long getSeed() {
+		return seed;
+	}
+
+	//Gets the generator for the calling thread.
+	//The first thread to ask after setSeed (normally the main thread) always gets the same sequence.
+	public static SplittableRandom get() {
+		ThreadState state = local.get();
+		if (state.generation != generation) {
+			synchronized (SimRandom.class) {
+				state.random = root.split();
+				state.generation = generation;
+			}
+		}
+		return state.random;
+	}
+
+	//Gets a generator for one numbered stream of work, such as one worker's slice of a parallel update.
+	//It only depends on the seed and the stream number, never on which thread runs it or when.
+	public static SplittableRandom forStream(long stream) {
+		long s;
+		synchronized (SimRandom.class) {
+			s = seed;
+		}
+		return new SplittableRandom(s ^ (stream * 0x9E3779B97F4A7C15L));
+	}
+
+	//A random double from 0 (inclusive) to 1 (exclusive), like Math.random()
+	public static double nextDouble() {
+		return get().nextDouble();
+	}
+
+	//A random double from min (inclusive) to max (exclusive)
+	public static double nextDouble(double min, double max) {
+		return min + get().nextDouble() * (max - min);
+	}
+
+	//A random int from 0 (inclusive) to bound (exclusive)
+	public static int nextInt(int bound) {
+		return get().nextInt(bound);
+	}
+}
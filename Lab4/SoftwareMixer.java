@@ -0,0 +1,472 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * SoftwareMixer
+ *
+ * Mixes any number of sounds into one stereo output, so only a single audio line is ever open.
+ * Each voice has its own gain and pan, and can be scheduled to start on an exact sample of the mixer's clock.
+ * The cost of a mixed buffer depends on how many voices are playing, never on how many were ever started,
+ * and is capped by {@link getMaxVoices}: past that, the oldest non-looping voice is cut off.
+ *
+ * Either call {@link start} to mix on a thread of its own (paced by a blocking sink such as {@link AudioSink.LineSink}),
+ * or call {@link mix} directly to step it by hand, which is how it is driven headless.
+ *
+ * Voices are only ever touched by the mixing thread.  Other threads send it commands through a queue.
+ *
+ */
+public class SoftwareMixer implements Runnable {
+
+	/**
+	 * The sample rate of the mixed output.
+	 */
+	public static final float SAMPLE_RATE = 44100;
+	/**
+	 * The format of the mixed output: 16-bit signed little-endian stereo.
+	 */
+	public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+	/**
+	 * How many frames are mixed at a time when none is given.
+	 */
+	public static final int DEFAULT_BUFFER_FRAMES = 512;
+	/**
+	 * The number of voices used when none is given.
+	 */
+	public static final int DEFAULT_MAX_VOICES = 64;
+
+	private static final int CMD_START = 0;
+	private static final int CMD_STOP = 1;
+	private static final int CMD_GAIN_PAN = 2;
+	private static final int CMD_STOP_ALL = 3;
+
+	//A request from another thread, applied by the mixing thread before its next buffer
+	private static class Command {
+		int type;
+		int id;
+		Samples samples;
+		long startFrame;
+		float gain;
+		float pan;
+		boolean loop;
+	}
+
+	//A sound converted to float samples, one array per channel, at its own sample rate
+	private static class Samples {
+		final float[] left;
+		final float[] right;
+		final double step;
+
+		Samples(float[] left, float[] right, float rate) {
+			this.left = left;
+			this.right = right;
+			step = rate / SAMPLE_RATE;
+		}
+	}
+
+	private final AudioSink sink;
+	private final int bufferFrames;
+	private final float[] mixBuffer;
+	private final byte[] outBuffer;
+	private final ConcurrentLinkedQueue<Command> commands;
+	private final IdentityHashMap<SoundEngine.Sound, Samples> converted;
+	private final AtomicInteger nextId;
+
+	//Voice state, owned by the mixing thread
+	private final int[] voiceIds;
+	private final Samples[] voiceSamples;
+	private final double[] voicePositions;
+	private final long[] voiceStartFrames;
+	private final float[] voiceGainLeft;
+	private final float[] voiceGainRight;
+	private final boolean[] voiceLoops;
+	private int voiceCount;
+
+	private volatile long framesMixed;
+	private volatile int activeVoices;
+	private volatile boolean running;
+	private Thread thread;
+
+	/**
+	 * Creates a SoftwareMixer.
+	 * @param sink Where the mixed audio goes.
+	 * @param bufferFrames How many frames to mix at a time.
+	 * @param maxVoices The most voices that can play at once.
+	 */
+	public SoftwareMixer(AudioSink sink, int bufferFrames, int maxVoices) {
+		this.sink = sink;
+		this.bufferFrames = Math.max(1, bufferFrames);
+		maxVoices = Math.max(1, maxVoices);
+		mixBuffer = new float[this.bufferFrames * 2];
+		outBuffer = new byte[this.bufferFrames * 4];
+		commands = new ConcurrentLinkedQueue<Command>();
+		converted = new IdentityHashMap<SoundEngine.Sound, Samples>();
+		nextId = new AtomicInteger(1);
+		voiceIds = new int[maxVoices];
+		voiceSamples = new Samples[maxVoices];
+		voicePositions = new double[maxVoices];
+		voiceStartFrames = new long[maxVoices];
+		voiceGainLeft = new float[maxVoices];
+		voiceGainRight = new float[maxVoices];
+		voiceLoops = new boolean[maxVoices];
+		voiceCount = 0;
+		framesMixed = 0;
+	}
+
+	/**
+	 * Creates a SoftwareMixer writing to the given sink with the default buffer size and voice count.
+	 * @param sink Where the mixed audio goes.
+	 */
+	public SoftwareMixer(AudioSink sink) {
+		this(sink, DEFAULT_BUFFER_FRAMES, DEFAULT_MAX_VOICES);
+	}
+
+	/**
+	 * Creates a SoftwareMixer that plays through the default audio device, or discards its audio in real time if there is none.
+	 * @return The new SoftwareMixer.  It still needs to be started.
+	 */
+	public static SoftwareMixer createDefault() {
+		AudioSink sink;
+		try {
+			sink = new AudioSink.LineSink(FORMAT, DEFAULT_BUFFER_FRAMES * 4 * 4);
+		} catch (LineUnavailableException e) {
+			System.err.println("No audio device, sound is disabled");
+			sink = new AudioSink.NullSink(FORMAT);
+		} catch (IllegalArgumentException e) {
+			System.err.println("No audio device, sound is disabled");
+			sink = new AudioSink.NullSink(FORMAT);
+		}
+		return new SoftwareMixer(sink);
+	}
+
+	/**
+	 * Starts mixing on a thread of its own.
+	 */
+	public synchronized void start() {
+		if (running)
+			return;
+		running = true;
+		thread = new Thread(this, "SoftwareMixer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * FOR INTERNAL USE ONLY - The mixing thread.
+	 */
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				mix(bufferFrames);
+			} catch (IOException e) {
+				System.err.println("Failed to write sound");
+				e.printStackTrace();
+				running = false;
+			}
+		}
+	}
+
+	/**
+	 * Stops the mixing thread and closes the sink.
+	 */
+	public void close() {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			t = thread;
+			thread = null;
+		}
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			sink.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the time of the mixer clock: how much audio has been mixed so far.
+	 * @return The mixer time, in seconds.
+	 */
+	public double getTime() {
+		return framesMixed / (double) SAMPLE_RATE;
+	}
+
+	/**
+	 * Gets the mixer clock as a frame count.
+	 * @return How many frames have been mixed so far.
+	 */
+	public long getFramesMixed() {
+		return framesMixed;
+	}
+
+	/**
+	 * @return How many voices were playing after the last mixed buffer.
+	 */
+	public int getActiveVoices() {
+		return activeVoices;
+	}
+
+	/**
+	 * @return The most voices that can play at once.
+	 */
+	public int getMaxVoices() {
+		return voiceIds.length;
+	}
+
+	/**
+	 * Plays a sound right away.
+	 * @param sound The sound to play, from {@link SoundEngine#load}.
+	 * @param gain The volume, where 1 is unchanged.
+	 * @param pan Where the sound is, from -1 (left) to 1 (right).
+	 * @param loop If true, the sound repeats until it is stopped.
+	 * @return An id for the voice, for use with stop and setGainPan, or -1 if sound is null.
+	 */
+	public int play(SoundEngine.Sound sound, float gain, float pan, boolean loop) {
+		return schedule(sound, -1, gain, pan, loop);
+	}
+
+	/**
+	 * Plays a sound starting at an exact time on the mixer clock (see {@link getTime}).
+	 * Times that have already passed start on the next mixed buffer.
+	 * @param sound The sound to play, from {@link SoundEngine#load}.
+	 * @param time When to start, in seconds of mixer time.
+	 * @param gain The volume, where 1 is unchanged.
+	 * @param pan Where the sound is, from -1 (left) to 1 (right).
+	 * @param loop If true, the sound repeats until it is stopped.
+	 * @return An id for the voice, for use with stop and setGainPan, or -1 if sound is null.
+	 */
+	public int schedule(SoundEngine.Sound sound, double time, float gain, float pan, boolean loop) {
+		if (sound == null)
+			return -1;
+		Command c = new Command();
+		c.type = CMD_START;
+		c.id = nextId.getAndIncrement();
+		c.samples = convert(sound);
+		c.startFrame = time < 0 ? -1 : Math.round(time * SAMPLE_RATE);
+		c.gain = gain;
+		c.pan = pan;
+		c.loop = loop;
+		commands.add(c);
+		return c.id;
+	}
+
+	/**
+	 * Stops a voice.  Does nothing if it has already finished.
+	 * @param id The id given when the voice was started.
+	 */
+	public void stop(int id) {
+		Command c = new Command();
+		c.type = CMD_STOP;
+		c.id = id;
+		commands.add(c);
+	}
+
+	/**
+	 * Stops every voice.
+	 */
+	public void stopAll() {
+		Command c = new Command();
+		c.type = CMD_STOP_ALL;
+		commands.add(c);
+	}
+
+	/**
+	 * Changes the volume and pan of a playing voice.
+	 * @param id The id given when the voice was started.
+	 * @param gain The volume, where 1 is unchanged.
+	 * @param pan Where the sound is, from -1 (left) to 1 (right).
+	 */
+	public void setGainPan(int id, float gain, float pan) {
+		Command c = new Command();
+		c.type = CMD_GAIN_PAN;
+		c.id = id;
+		c.gain = gain;
+		c.pan = pan;
+		commands.add(c);
+	}
+
+	/**
+	 * Converts a decoded sound into float samples, once per sound.
+	 */
+	private Samples convert(SoundEngine.Sound sound) {
+		synchronized (converted) {
+			Samples samples = converted.get(sound);
+			if (samples == null) {
+				samples = toSamples(sound);
+				converted.put(sound, samples);
+			}
+			return samples;
+		}
+	}
+
+	private static Samples toSamples(SoundEngine.Sound sound) {
+		AudioFormat format = sound.getFormat();
+		byte[] data = sound.getData();
+		int channels = format.getChannels();
+		int bytesPerSample = format.getSampleSizeInBits() / 8;
+		boolean signed = format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+		boolean bigEndian = format.isBigEndian();
+		int frames = data.length / Math.max(1, format.getFrameSize());
+		float[] left = new float[frames];
+		float[] right = channels == 1 ? left : new float[frames];
+		for (int f = 0; f < frames; f++) {
+			int base = f * format.getFrameSize();
+			left[f] = readSample(data, base, bytesPerSample, signed, bigEndian);
+			if (channels > 1)
+				right[f] = readSample(data, base + bytesPerSample, bytesPerSample, signed, bigEndian);
+		}
+		return new Samples(left, right, format.getSampleRate());
+	}
+
+	private static float readSample(byte[] data, int index, int bytes, boolean signed, boolean bigEndian) {
+		if (bytes == 1) {
+			int v = signed ? data[index] : (data[index] & 0xFF) - 128;
+			return v / 128f;
+		}
+		//Samples up to 4 bytes wide are built from the most significant byte down
+		long v = 0;
+		for (int b = 0; b < bytes; b++)
+			v = (v << 8) | (data[bigEndian ? index + b : index + bytes - 1 - b] & 0xFF);
+		int bits = bytes * 8;
+		long half = 1L << (bits - 1);
+		if (signed)
+			v = (v ^ half) - half;
+		else
+			v -= half;
+		return (float) ((double) v / half);
+	}
+
+	/**
+	 * Mixes the next frames of audio and writes them to the sink.  Called by the mixing thread, or by hand when headless.
+	 * @param frames How many frames to mix.  Values larger than the buffer are mixed in several writes.
+	 * @throws IOException If the sink fails.
+	 */
+	public void mix(int frames) throws IOException {
+		while (frames > 0) {
+			int count = Math.min(frames, bufferFrames);
+			applyCommands();
+			mixBuffer(count);
+			sink.write(outBuffer, 0, count * 4);
+			framesMixed += count;
+			frames -= count;
+		}
+	}
+
+	private void applyCommands() {
+		Command c;
+		while ((c = commands.poll()) != null) {
+			if (c.type == CMD_START) {
+				int v = voiceCount < voiceIds.length ? voiceCount++ : stealVoice();
+				if (v < 0)
+					continue;
+				voiceIds[v] = c.id;
+				voiceSamples[v] = c.samples;
+				voicePositions[v] = 0;
+				voiceStartFrames[v] = Math.max(c.startFrame, framesMixed);
+				voiceLoops[v] = c.loop;
+				setVoiceGainPan(v, c.gain, c.pan);
+			} else if (c.type == CMD_STOP) {
+				for (int v = 0; v < voiceCount; v++)
+					if (voiceIds[v] == c.id) {
+						removeVoice(v);
+						break;
+					}
+			} else if (c.type == CMD_GAIN_PAN) {
+				for (int v = 0; v < voiceCount; v++)
+					if (voiceIds[v] == c.id)
+						setVoiceGainPan(v, c.gain, c.pan);
+			} else if (c.type == CMD_STOP_ALL) {
+				Arrays.fill(voiceSamples, 0, voiceCount, null);
+				voiceCount = 0;
+			}
+		}
+	}
+
+	//Frees the oldest non-looping voice and returns its slot, or -1 if every voice loops
+	private int stealVoice() {
+		int oldest = -1;
+		for (int v = 0; v < voiceCount; v++)
+			if (!voiceLoops[v] && (oldest < 0 || voiceIds[v] < voiceIds[oldest]))
+				oldest = v;
+		if (oldest < 0)
+			return -1;
+		removeVoice(oldest);
+		return voiceCount++;
+	}
+
+	private void setVoiceGainPan(int v, float gain, float pan) {
+		pan = Math.max(-1, Math.min(1, pan));
+		voiceGainLeft[v] = gain * Math.min(1, 1 - pan);
+		voiceGainRight[v] = gain * Math.min(1, 1 + pan);
+	}
+
+	//Removes a voice by moving the last voice into its slot
+	private void removeVoice(int v) {
+		int last = --voiceCount;
+		voiceIds[v] = voiceIds[last];
+		voiceSamples[v] = voiceSamples[last];
+		voicePositions[v] = voicePositions[last];
+		voiceStartFrames[v] = voiceStartFrames[last];
+		voiceGainLeft[v] = voiceGainLeft[last];
+		voiceGainRight[v] = voiceGainRight[last];
+		voiceLoops[v] = voiceLoops[last];
+		voiceSamples[last] = null;
+	}
+
+	private void mixBuffer(int frames) {
+		Arrays.fill(mixBuffer, 0, frames * 2, 0f);
+		long bufferStart = framesMixed;
+		for (int v = voiceCount - 1; v >= 0; v--) {
+			Samples s = voiceSamples[v];
+			int first = (int) Math.max(0, Math.min(frames, voiceStartFrames[v] - bufferStart));
+			double pos = voicePositions[v];
+			float gl = voiceGainLeft[v];
+			float gr = voiceGainRight[v];
+			int length = s.left.length;
+			boolean finished = length == 0;
+			for (int f = first; f < frames && !finished; f++) {
+				int i = (int) pos;
+				float t = (float) (pos - i);
+				int j = i + 1 < length ? i + 1 : (voiceLoops[v] ? 0 : i);
+				float l = s.left[i] + (s.left[j] - s.left[i]) * t;
+				float r = s.right[i] + (s.right[j] - s.right[i]) * t;
+				mixBuffer[f * 2] += l * gl;
+				mixBuffer[f * 2 + 1] += r * gr;
+				pos += s.step;
+				if (pos >= length) {
+					if (voiceLoops[v])
+						pos -= length;
+					else
+						finished = true;
+				}
+			}
+			voicePositions[v] = pos;
+			if (finished)
+				removeVoice(v);
+		}
+		for (int i = 0; i < frames * 2; i++) {
+			float sample = mixBuffer[i];
+			int value = (int) (sample * 32767f);
+			if (value > 32767)
+				value = 32767;
+			else if (value < -32768)
+				value = -32768;
+			outBuffer[i * 2] = (byte) value;
+			outBuffer[i * 2 + 1] = (byte) (value >> 8);
+		}
+		activeVoices = voiceCount;
+	}
+}
@@ -0,0 +1,334 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * SoundEngine
+ *
+ * Plays short sound effects for an {@link EasyWindow}.
+ * Each sound file is read and decoded to PCM once, then kept in memory.  Sounds are played on a fixed pool of Clips,
+ * so the number of voices (and audio lines) is capped no matter how often {@link play} is called.
+ * When every voice is busy, the voice that started longest ago is cut off and reused.
+ *
+ * A SoundEngine made with {@link createNull} never touches an audio device.  It still decodes and caches sounds and
+ * hands out voices, so it can be used where no sound card exists.
+ *
+ */
+public class SoundEngine {
+
+	/**
+	 * The number of voices used when none is given.
+	 */
+	public static final int DEFAULT_MAX_VOICES = 16;
+
+	/**
+	 * A sound file decoded to PCM.
+	 */
+	public static class Sound {
+		private final AudioFormat format;
+		private final byte[] data;
+		private final long lengthNano;
+
+		private Sound(AudioFormat format, byte[] data) {
+			this.format = format;
+			this.data = data;
+			long frames = data.length / Math.max(1, format.getFrameSize());
+			lengthNano = (long) (frames / (double) format.getFrameRate() * 1000000000.0);
+		}
+
+		/**
+		 * @return The PCM format of the decoded data.
+		 */
+		public AudioFormat getFormat() {
+			return format;
+		}
+
+		/**
+		 * @return The decoded PCM bytes.  Do not modify them, they are shared by every voice playing this sound.
+		 */
+		public byte[] getData() {
+			return data;
+		}
+
+		/**
+		 * @return How long the sound plays for, in nanoseconds.
+		 */
+		public long getLengthNano() {
+			return lengthNano;
+		}
+	}
+
+	private final HashMap<String, Sound> cache;
+	private final Mixer mixer;
+	private final boolean nullOutput;
+	private final Clip[] clips;
+	private final Sound[] voiceSounds;
+	private final long[] voiceStarted;
+	private final long[] voiceEnds;
+
+	/**
+	 * Creates a SoundEngine that plays through the default audio device with {@link DEFAULT_MAX_VOICES} voices.
+	 */
+	public SoundEngine() {
+		this(null, DEFAULT_MAX_VOICES, false);
+	}
+
+	/**
+	 * Creates a SoundEngine that plays through the given mixer.
+	 * @param mixer The mixer to get Clips from, or null for the default audio device.
+	 * @param maxVoices The most sounds that can play at once.
+	 */
+	public SoundEngine(Mixer mixer, int maxVoices) {
+		this(mixer, maxVoices, false);
+	}
+
+	private SoundEngine(Mixer mixer, int maxVoices, boolean nullOutput) {
+		this.mixer = mixer;
+		this.nullOutput = nullOutput;
+		maxVoices = Math.max(1, maxVoices);
+		cache = new HashMap<String, Sound>();
+		clips = new Clip[maxVoices];
+		voiceSounds = new Sound[maxVoices];
+		voiceStarted = new long[maxVoices];
+		voiceEnds = new long[maxVoices];
+	}
+
+	/**
+	 * Creates a SoundEngine that has no audio device.  Sounds are decoded and given voices, but nothing is heard.
+	 * @param maxVoices The most sounds that can "play" at once.
+	 * @return The new SoundEngine.
+	 */
+	public static SoundEngine createNull(int maxVoices) {
+		return new SoundEngine(null, maxVoices, true);
+	}
+
+	/**
+	 * Decodes a sound file, or gets it from the cache if it was decoded before.
+	 * @param filename The filename of the sound.
+	 * @return The decoded sound, or null if it could not be loaded.
+	 */
+	public Sound load(String filename) {
+		synchronized (cache) {
+			Sound sound = cache.get(filename);
+			if (sound != null)
+				return sound;
+		}
+		Sound sound = decode(filename);
+		if (sound == null)
+			return null;
+		synchronized (cache) {
+			Sound existing = cache.get(filename);
+			if (existing != null)
+				return existing;
+			cache.put(filename, sound);
+		}
+		return sound;
+	}
+
+	/**
+	 * Reads a whole sound file into memory as PCM.
+	 * @param filename The filename of the sound.
+	 * @return The decoded sound, or null if it could not be loaded.
+	 */
+	private static Sound decode(String filename) {
+		AudioInputStream aistream = null;
+		try {
+			aistream = AudioSystem.getAudioInputStream(new File(filename));
+			AudioFormat format = aistream.getFormat();
+			if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED && format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+				AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+						format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+				aistream = AudioSystem.getAudioInputStream(pcm, aistream);
+				format = pcm;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[16384];
+			int read;
+			while ((read = aistream.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+			return new Sound(format, bytes.toByteArray());
+		} catch (UnsupportedAudioFileException e) {
+			System.err.println("Failed to load sound: " + filename);
+			e.printStackTrace();
+		} catch (IOException e) {
+			System.err.println("Failed to load sound: " + filename);
+			e.printStackTrace();
+		} finally {
+			if (aistream != null) {
+				try {
+					aistream.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Plays a sound once on a free voice, cutting off the oldest voice if all are busy.
+	 * @param filename The filename of the sound to play.
+	 * @return True if the sound started, false if it could not be loaded or played.
+	 */
+	public boolean play(String filename) {
+		Sound sound = load(filename);
+		if (sound == null)
+			return false;
+		synchronized (clips) {
+			int voice = findVoice(System.nanoTime());
+			try {
+				startVoice(voice, sound);
+			} catch (LineUnavailableException e) {
+				System.err.println("Failed to play sound: " + filename);
+				e.printStackTrace();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Picks the voice to play the next sound on: an idle one if possible, otherwise the one that started first.
+	 * @param now The current System.nanoTime().
+	 * @return The index of the voice.
+	 */
+	private int findVoice(long now) {
+		int oldest = 0;
+		for (int i = 0; i < clips.length; i++) {
+			if (!isVoiceActive(i, now))
+				return i;
+			if (voiceStarted[i] < voiceStarted[oldest])
+				oldest = i;
+		}
+		return oldest;
+	}
+
+	private boolean isVoiceActive(int voice, long now) {
+		if (voiceSounds[voice] == null)
+			return false;
+		//A Clip only reports itself active some time after start(), so a voice counts as busy until its sound
+		//should have ended, as well as while its Clip says so
+		if (now < voiceEnds[voice])
+			return true;
+		return !nullOutput && clips[voice] != null && clips[voice].isActive();
+	}
+
+	/**
+	 * Starts a sound on a voice.  The voice's Clip is only reopened if it last played a different sound.
+	 */
+	private void startVoice(int voice, Sound sound) throws LineUnavailableException {
+		long now = System.nanoTime();
+		if (!nullOutput) {
+			Clip clip = clips[voice];
+			if (clip == null) {
+				clip = newClip();
+				clips[voice] = clip;
+			}
+			clip.stop();
+			if (voiceSounds[voice] != sound || !clip.isOpen()) {
+				clip.close();
+				voiceSounds[voice] = null;
+				clip.open(sound.format, sound.data, 0, sound.data.length);
+			}
+			clip.setFramePosition(0);
+			clip.start();
+		}
+		voiceSounds[voice] = sound;
+		voiceStarted[voice] = now;
+		voiceEnds[voice] = now + sound.lengthNano;
+	}
+
+	/**
+	 * Gets a new Clip from the mixer, or from the default audio device if there is no mixer.
+	 */
+	private Clip newClip() throws LineUnavailableException {
+		if (mixer == null)
+			return AudioSystem.getClip();
+		return (Clip) mixer.getLine(new DataLine.Info(Clip.class, null));
+	}
+
+	/**
+	 * Opens a Clip of its own for a sound, for sounds that should not share the voice pool (such as looping music).
+	 * The caller is responsible for closing it.
+	 * @param filename The filename of the sound.
+	 * @return The opened Clip, or null if it could not be loaded or if this SoundEngine has no audio device.
+	 */
+	public Clip openClip(String filename) {
+		Sound sound = load(filename);
+		if (sound == null || nullOutput)
+			return null;
+		try {
+			Clip clip = newClip();
+			clip.open(sound.format, sound.data, 0, sound.data.length);
+			return clip;
+		} catch (LineUnavailableException e) {
+			System.err.println("Failed to play sound: " + filename);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @return How many voices are currently playing a sound.
+	 */
+	public int getActiveVoices() {
+		synchronized (clips) {
+			long now = System.nanoTime();
+			int count = 0;
+			for (int i = 0; i < clips.length; i++)
+				if (isVoiceActive(i, now))
+					count++;
+			return count;
+		}
+	}
+
+	/**
+	 * @return The most sounds that can play at once.
+	 */
+	public int getMaxVoices() {
+		return clips.length;
+	}
+
+	/**
+	 * @return How many sound files are decoded and kept in memory.
+	 */
+	public int getCachedSounds() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Forgets every decoded sound.  Voices that are playing keep playing.
+	 */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Stops every voice and releases their audio lines.
+	 */
+	public void close() {
+		synchronized (clips) {
+			for (int i = 0; i < clips.length; i++) {
+				if (clips[i] != null) {
+					clips[i].stop();
+					clips[i].close();
+					clips[i] = null;
+				}
+				voiceSounds[i] = null;
+			}
+		}
+	}
+}
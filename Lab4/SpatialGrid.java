@@ -0,0 +1,92 @@
+import java.util.List;
+
+//Finds the entities whose centers are inside a rectangle, without looking at every entity.
+//The world is cut into square cells, and build sorts the entities into them (a counting sort, in flat arrays
+//reused from build to build), so a query only looks at the cells the rectangle covers.
+//Call build again after the entities move.  Queries return indexes into the list given to build.
+public class SpatialGrid {
+
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	private final int[] cellStarts;  //where each cell's entities start in items; the cell after it marks the end
+	private final int[] cursors;     //where the next entity goes in each cell, while building
+	private int[] cells = new int[256];  //the cell of each entity, in list order
+	private int[] items = new int[256];  //entity indexes, sorted by cell
+	private double[] xs = new double[256];
+	private double[] ys = new double[256];
+	private int count;
+
+	//Constructor.  Entities outside (0, 0) - (width, height) are counted in the nearest edge cell.
+	public SpatialGrid(double width, double height, double cellSize) {
+		this.cellSize = cellSize;
+		columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		cellStarts = new int[columns * rows + 1];
+		cursors = new int[columns * rows];
+	}
+
+	//Sorts the entities into cells by where their centers are now
+	public void build(List<? extends Entity> entities) {
+		count = entities.size();
+		if (items.length < count) {
+			int size = Math.max(count, items.length * 2);
+			cells = new int[size];
+			items = new int[size];
+			xs = new double[size];
+			ys = new double[size];
+		}
+		for (int c = 0; c < cellStarts.length; c++)
+			cellStarts[c] = 0;
+		for (int i = 0; i < count; i++) {
+			Entity e = entities.get(i);
+			xs[i] = e.getXCenter();
+			ys[i] = e.getYCenter();
+			int cell = cellRow(ys[i]) * columns + cellColumn(xs[i]);
+			cells[i] = cell;
+			cellStarts[cell + 1]++;
+		}
+		for (int c = 0; c < columns * rows; c++) {
+			cellStarts[c + 1] += cellStarts[c];
+			cursors[c] = cellStarts[c];
+		}
+		for (int i = 0; i < count; i++)
+			items[cursors[cells[i]]++] = i;
+	}
+
+	private int cellColumn(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+	}
+
+	private int cellRow(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+	}
+
+	//Puts the indexes of the entities with centers inside (left, top) - (right, bottom) into result,
+	//and returns how many there are.  If that is more than result can hold, only the first result.length are filled,
+	//so call again with a bigger array.
+	public int query(double left, double top, double right, double bottom, int[] result) {
+		int found = 0;
+		int firstColumn = cellColumn(left);
+		int lastColumn = cellColumn(right);
+		for (int row = cellRow(top), lastRow = cellRow(bottom); row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = row * columns + column;
+				for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+					int i = items[k];
+					if (xs[i] >= left && xs[i] <= right && ys[i] >= top && ys[i] <= bottom) {
+						if (found < result.length)
+							result[found] = i;
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	//How many entities the grid was last built with
+	public int size() {
+		return count;
+	}
+}
@@ -0,0 +1,241 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Runs a frame's worth of stages (spawning, moving, colliding, drawing, ...) on a pool of threads, as many at once as is safe.
+//Every stage says which data it reads and which it writes, as bits (the EcsWorld component bits, plus any others the game makes up,
+//such as one for the canvas).  A stage has to wait for each earlier stage that writes something it reads or writes,
+//or reads something it writes.  Everything else can run side by side, so the order stages are added in
+//is still the order they appear to happen in.
+//With tracing on, the start and end of every stage is recorded, and writeTrace saves them in the Chrome trace format
+//(open it at chrome://tracing or ui.perfetto.dev) to see which stages ran in parallel.
+public class StageScheduler {
+
+	public static final int ALL = -1;  //every bit, for a stage that can't share with anything
+	public static final int MAX_TRACE_FRAMES = 600;
+
+	//One stage: a system and the data it touches
+	private static class Stage {
+		final String name;
+		final int reads;
+		final int writes;
+		final EcsSystem system;
+		int[] dependents = new int[0];  //stages that wait for this one
+		int dependencies;               //how many stages this one waits for
+
+		Stage(String name, int reads, int writes, EcsSystem system) {
+			this.name = name;
+			this.reads = reads;
+			this.writes = writes;
+			this.system = system;
+		}
+	}
+
+	private final ArrayList<Stage> stages = new ArrayList<Stage>();
+	private final ExecutorService pool;
+	private final int threads;
+	private boolean graphBuilt;
+	private AtomicInteger[] waiting = new AtomicInteger[0];
+	private volatile Throwable failure;
+
+	private volatile boolean tracing;  //read by the pool's threads without a lock
+	private final ArrayDeque<long[]> trace = new ArrayDeque<long[]>();  //stage, start, end, thread id, frame; oldest first
+	private final long traceStart = System.nanoTime();
+	//The trace, frame and lastParallelism are all guarded by this scheduler's own lock
+	private long frame;
+	private double lastParallelism;
+
+	//Constructor, with a thread for every core
+	public StageScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	//Constructor
+	public StageScheduler(int threads) {
+		this.threads = threads;
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "StageScheduler-" + count++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	//Adds a stage after all the others.  reads and writes are bits of the data it touches.
+	public void addStage(String name, int reads, int writes, EcsSystem system) {
+		stages.add(new Stage(name, reads, writes, system));
+		graphBuilt = false;
+	}
+
+	//True if b has to wait for a, which comes before it
+	private static boolean conflicts(Stage a, Stage b) {
+		return (a.writes & (b.reads | b.writes)) != 0 || (a.reads & b.writes) != 0;
+	}
+
+	//Works out which stages wait for which.  Called by runFrame when the stages have changed.
+	//Only the closest conflicting stages are linked, since waiting for them already means waiting for the ones before.
+	public void buildGraph() {
+		int n = stages.size();
+		boolean[][] after = new boolean[n][n];  //after[b][a]: b runs after a, directly or not
+		ArrayList<ArrayList<Integer>> dependents = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < n; i++)
+			dependents.add(new ArrayList<Integer>());
+		for (int b = 0; b < n; b++) {
+			Stage stage = stages.get(b);
+			stage.dependencies = 0;
+			for (int a = b - 1; a >= 0; a--) {
+				if (after[b][a] || !conflicts(stages.get(a), stage))
+					continue;
+				dependents.get(a).add(b);
+				stage.dependencies++;
+				after[b][a] = true;
+				for (int c = 0; c < a; c++)
+					if (after[a][c])
+						after[b][c] = true;
+			}
+		}
+		waiting = new AtomicInteger[n];
+		for (int i = 0; i < n; i++) {
+			ArrayList<Integer> d = dependents.get(i);
+			Stage stage = stages.get(i);
+			stage.dependents = new int[d.size()];
+			for (int k = 0; k < d.size(); k++)
+				stage.dependents[k] = d.get(k);
+			waiting[i] = new AtomicInteger();
+		}
+		graphBuilt = true;
+	}
+
+	//Runs every stage once, each as soon as the stages it waits for are done, and returns when they all are.
+	//If a stage throws, the rest still run, and the first exception is thrown from here afterwards.
+	public void runFrame(final EcsWorld world, final double deltaTime) {
+		if (!graphBuilt)
+			buildGraph();
+		int n = stages.size();
+		final CountDownLatch done = new CountDownLatch(n);
+		failure = null;
+		final long frameStart = System.nanoTime();
+		final long[] busy = new long[1];
+		for (int i = 0; i < n; i++)
+			waiting[i].set(stages.get(i).dependencies);
+		for (int i = 0; i < n; i++)
+			if (stages.get(i).dependencies == 0)
+				submit(i, world, deltaTime, done, busy);
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running stages", e);
+		}
+		long wall = System.nanoTime() - frameStart;
+		long busyTime;
+		synchronized (busy) {
+			busyTime = busy[0];
+		}
+		synchronized (this) {
+			lastParallelism = wall == 0 ? 1 : busyTime / (double) wall;
+			frame++;
+		}
+		if (failure != null)
+			throw new RuntimeException("Stage failed", failure);
+	}
+
+	private void submit(final int index, final EcsWorld world, final double deltaTime, final CountDownLatch done, final long[] busy) {
+		pool.execute(new Runnable() {
+			@Override
+			public void run() {
+				Stage stage = stages.get(index);
+				long start = System.nanoTime();
+				try {
+					stage.system.run(world, deltaTime);
+				} catch (Throwable t) {
+					if (failure == null)
+						failure = t;
+				}
+				long end = System.nanoTime();
+				synchronized (busy) {
+					busy[0] += end - start;
+				}
+				if (tracing)
+					record(index, start, end);
+				for (int d : stage.dependents)
+					if (waiting[d].decrementAndGet() == 0)
+						submit(d, world, deltaTime, done, busy);
+				done.countDown();
+			}
+		});
+	}
+
+	private synchronized void record(int stage, long start, long end) {
+		trace.add(new long[] { stage, start, end, Thread.currentThread().getId(), frame });
+		//Forget the oldest frames once there are too many
+		while (trace.peekFirst()[4] < frame - MAX_TRACE_FRAMES)
+			trace.pollFirst();
+	}
+
+	//Starts or stops recording when each stage runs
+	public synchronized void setTracing(boolean tracing) {
+		this.tracing = tracing;
+		if (!tracing)
+			trace.clear();
+	}
+
+	//Saves what has been recorded, for chrome://tracing or ui.perfetto.dev.  Each stage is a slice on the thread that ran it.
+	public synchronized void writeTrace(String filename) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(filename));
+		try {
+			out.println("{\"traceEvents\":[");
+			int left = trace.size();
+			for (long[] e : trace)
+				out.printf("{\"name\":\"%s\",\"cat\":\"frame %d\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f}%s%n",
+						stages.get((int) e[0]).name.replace("\"", "'"), e[4], e[3], (e[1] - traceStart) / 1000.0,
+						(e[2] - e[1]) / 1000.0, --left > 0 ? "," : "");
+			out.println("]}");
+		} finally {
+			out.close();
+		}
+	}
+
+	//Describes which stages wait for which, one stage per line
+	public String describeGraph() {
+		if (!graphBuilt)
+			buildGraph();
+		StringBuilder sb = new StringBuilder();
+		for (int b = 0; b < stages.size(); b++) {
+			sb.append(stages.get(b).name).append(" after:");
+			for (int a = 0; a < b; a++)
+				for (int d : stages.get(a).dependents)
+					if (d == b)
+						sb.append(' ').append(stages.get(a).name);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	//The time spent in stages during the last frame, divided by how long the frame took.
+	//1 means nothing overlapped; 2 means two stages were running at once on average.
+	public synchronized double getLastParallelism() {
+		return lastParallelism;
+	}
+
+	//Simple get method
+	public int getThreads() {
+		return threads;
+	}
+
+	//Stops the threads.  Frames can't be run afterwards.
+	public void close() {
+		pool.shutdown();
+	}
+}
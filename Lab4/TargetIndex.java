@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.List;
+
+//Finds the nearest of many targets (such as wormholes) to a point.
+//The targets' positions are copied into a k-d tree, stored as flat arrays, every time build is called,
+//so call it once per frame after the targets move.  Building takes O(m log m) for m targets,
+//and each nearest-target question takes about O(log m), instead of checking every target.
+//Run it with "java TargetIndex [queries]" to compare it with checking every target, for more and more targets.
+public class TargetIndex {
+
+	private Entity[] targets = new Entity[0];  //targets in tree order: the middle of each range splits it
+	private double[] xs = new double[0];
+	private double[] ys = new double[0];
+	private int count;
+
+	//Rebuilds the tree from the targets' current positions
+	public void build(List<? extends Entity> list) {
+		count = list.size();
+		if (targets.length < count) {
+			targets = new Entity[count];
+			xs = new double[count];
+			ys = new double[count];
+		}
+		for (int i = 0; i < count; i++) {
+			Entity e = list.get(i);
+			targets[i] = e;
+			xs[i] = e.getXCenter();
+			ys[i] = e.getYCenter();
+		}
+		for (int i = count; i < targets.length; i++)
+			targets[i] = null;
+		build(0, count, 0);
+	}
+
+	//Puts the median of [from, to) along the axis in the middle, then does the same for both halves on the other axis
+	private void build(int from, int to, int axis) {
+		if (to - from <= 1)
+			return;
+		int mid = (from + to) >>> 1;
+		select(from, to - 1, mid, axis);
+		build(from, mid, 1 - axis);
+		build(mid + 1, to, 1 - axis);
+	}
+
+	//Quickselect: afterwards, position k holds the value it would have if [left, right] were sorted along the axis
+	private void select(int left, int right, int k, int axis) {
+		double[] keys = axis == 0 ? xs : ys;
+		while (right > left) {
+			double pivot = keys[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (keys[i] < pivot)
+					i++;
+				while (keys[j] > pivot)
+					j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Entity e = targets[i];
+		targets[i] = targets[j];
+		targets[j] = e;
+		double t = xs[i];
+		xs[i] = xs[j];
+		xs[j] = t;
+		t = ys[i];
+		ys[i] = ys[j];
+		ys[j] = t;
+	}
+
+	//Gets the target closest to (x, y), or null if there are no targets.
+	//Safe to call from many threads at once, as long as build isn't running.
+	public Entity nearest(double x, double y) {
+		if (count == 0)
+			return null;
+		return targets[search(0, count, 0, x, y, -1, Double.POSITIVE_INFINITY)];
+	}
+
+	//Returns the index of whichever is closer to (x, y): best, at squared distance bestDistance, or the closest in [from, to).
+	//Nothing is allocated, so asking for the nearest target for every asteroid every frame makes no garbage.
+	private int search(int from, int to, int axis, double x, double y, int best, double bestDistance) {
+		if (from >= to)
+			return best;
+		int mid = (from + to) >>> 1;
+		double dx = xs[mid] - x;
+		double dy = ys[mid] - y;
+		double d = dx * dx + dy * dy;
+		if (d < bestDistance) {
+			bestDistance = d;
+			best = mid;
+		}
+		double split = axis == 0 ? dx : dy;  //how far the splitting line is from the point
+		if (split > 0) {
+			best = search(from, mid, 1 - axis, x, y, best, bestDistance);
+			if (split * split < distance(best, x, y))
+				best = search(mid + 1, to, 1 - axis, x, y, best, distance(best, x, y));
+		} else {
+			best = search(mid + 1, to, 1 - axis, x, y, best, bestDistance);
+			if (split * split < distance(best, x, y))
+				best = search(from, mid, 1 - axis, x, y, best, distance(best, x, y));
+		}
+		return best;
+	}
+
+	//The squared distance from target i to (x, y)
+	private double distance(int i, double x, double y) {
+		double dx = xs[i] - x;
+		double dy = ys[i] - y;
+		return dx * dx + dy * dy;
+	}
+
+	//How many targets the tree was last built with
+	public int size() {
+		return count;
+	}
+
+	//Times 100,000 nearest-target questions against m wormholes, for m from 1 to 16,384,
+	//using the tree and checking every wormhole, and makes sure both find targets just as close
+	public static void main(String[] args) {
+		int queries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		double size = 10000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		for (int q = 0; q < queries; q++) {
+			qx[q] = SimRandom.nextDouble() * size;
+			qy[q] = SimRandom.nextDouble() * size;
+		}
+		System.out.printf("%,d queries, ms for all of them%n", queries);
+		System.out.printf("%9s %9s %9s %9s %8s%n", "wormholes", "build", "tree", "linear", "speedup");
+		for (int m = 1; m <= 16384; m *= 4) {
+			ArrayList<Entity> wormholes = new ArrayList<Entity>();
+			for (int i = 0; i < m; i++)
+				wormholes.add(new Wormhole(SimRandom.nextDouble() * size, SimRandom.nextDouble() * size, 0, 0));
+			TargetIndex index = new TargetIndex();
+			double build = Double.POSITIVE_INFINITY;
+			double tree = Double.POSITIVE_INFINITY;
+			double linear = Double.POSITIVE_INFINITY;
+			int wrong = 0;
+			for (int run = 0; run < 5; run++) {
+				long start = System.nanoTime();
+				index.build(wormholes);
+				build = Math.min(build, (System.nanoTime() - start) / 1e6);
+				start = System.nanoTime();
+				double treeSum = 0;
+				for (int q = 0; q < queries; q++)
+					treeSum += index.nearest(qx[q], qy[q]).getXCenter();
+				tree = Math.min(tree, (System.nanoTime() - start) / 1e6);
+				start = System.nanoTime();
+				double linearSum = 0;
+				for (int q = 0; q < queries; q++)
+					linearSum += linearNearest(wormholes, qx[q], qy[q]).getXCenter();
+				linear = Math.min(linear, (System.nanoTime() - start) / 1e6);
+				if (treeSum != linearSum)
+					wrong++;
+			}
+			System.out.printf("%,9d %9.3f %9.2f %9.2f %7.1fx%s%n", m, build, tree, linear, linear / tree, wrong > 0 ? "  MISMATCH" : "");
+		}
+	}
+
+	//The nearest target found by checking every one, to compare against
+	private static Entity linearNearest(List<Entity> list, double x, double y) {
+		Entity best = null;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < list.size(); i++) {
+			Entity e = list.get(i);
+			double dx = e.getXCenter() - x;
+			double dy = e.getYCenter() - y;
+			double d = dx * dx + dy * dy;
+			if (d < bestDistance) {
+				bestDistance = d;
+				best = e;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,225 @@
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//Runs the ticks of many independent worlds on one work-stealing pool of threads.
+//Each world has its own tick rate, and each tick has a deadline, when it should start.  Ticks are handed to the pool
+//in deadline order as soon as they are due, so when there is more work than threads, the most overdue world goes first.
+//A world's tick never runs twice at once, and if a world falls more than a whole tick behind, the ticks it missed are dropped
+//rather than run back to back.
+//Each world also has a budget, a share of its tick period it may spend per tick.  A world that keeps going over budget,
+//or keeps starting late while using a fair part of its budget, is shed load step by step:
+//first only every other tick renders, then its tick rate is halved, then halved again.
+//Once it has plenty of time to spare again it steps back up.
+//Every world's lag, tick time and shedding can be read from its Handle.
+public class TickScheduler {
+
+	public static final int MAX_SHED_LEVEL = 3;
+	private static final int OVERLOADED_TICKS = 10;  //ticks in a row over budget before shedding more
+	private static final int RECOVERED_TICKS = 60;   //ticks in a row well under budget before shedding less
+	private static final double SMOOTHING = 0.1;     //how much each tick moves the averages
+
+	private final ForkJoinPool pool;
+	private final DelayQueue<Handle> due = new DelayQueue<Handle>();
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+
+	//One world's place in the scheduler, and how it is keeping up
+	public class Handle implements Delayed, Runnable {
+
+		private final Tickable world;
+		private final long basePeriod;  //nanoseconds between ticks at the full tick rate
+		private final long budget;      //nanoseconds a tick may take
+		private volatile boolean cancelled;
+		private long deadline;          //System.nanoTime() when the next tick should start
+		private long lastStart;
+
+		private volatile int shedLevel;
+		private volatile double averageLag;     //nanoseconds
+		private volatile double averageTick;    //nanoseconds
+		private volatile long maxLag;
+		private volatile long ticks;
+		private volatile long droppedTicks;
+		private volatile long skippedRenders;
+		private int overloadedRun;
+		private int recoveredRun;
+
+		private Handle(Tickable world, double tickRate, double budgetFraction) {
+			this.world = world;
+			basePeriod = (long) (1000000000L / tickRate);
+			budget = (long) (basePeriod * budgetFraction);
+			deadline = System.nanoTime();
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other instanceof Handle)
+				return Long.compare(deadline, ((Handle) other).deadline);
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		//Runs one tick on the pool, then works out when the next one is due
+		@Override
+		public void run() {
+			if (cancelled)
+				return;
+			long start = System.nanoTime();
+			long lag = start - deadline;
+			double deltaTime = lastStart == 0 ? 0 : (start - lastStart) / 1000000000.0;
+			lastStart = start;
+			boolean render = shedLevel == 0 || ticks % 2 == 0;
+			if (!render)
+				skippedRenders++;
+			try {
+				world.tick(deltaTime, render);
+			} catch (RuntimeException e) {
+				//One world failing shouldn't stop it, or anyone else, from being ticked again
+				e.printStackTrace();
+			}
+			long end = System.nanoTime();
+			ticks++;
+			averageLag += (lag - averageLag) * SMOOTHING;
+			averageTick += ((end - start) - averageTick) * SMOOTHING;
+			maxLag = Math.max(maxLag, lag);
+			adjustShedding();
+
+			long period = getPeriod();
+			deadline += period;
+			if (end - deadline > period) {
+				long behind = (end - deadline) / period;
+				droppedTicks += behind;
+				deadline += behind * period;
+			}
+			if (!cancelled && running)
+				due.put(this);
+		}
+
+		//Lateness only counts against worlds whose own ticks are a real part of the load,
+		//since slowing down a cheap world that is late because of the others frees up almost nothing
+		private void adjustShedding() {
+			long period = getPeriod();
+			boolean cheap = averageTick < budget / 4;
+			if (averageTick > budget || (averageLag > period / 2 && !cheap)) {
+				recoveredRun = 0;
+				if (++overloadedRun >= OVERLOADED_TICKS && shedLevel < MAX_SHED_LEVEL) {
+					shedLevel++;
+					overloadedRun = 0;
+				}
+			} else if (averageTick < budget / 2 && (averageLag < period / 8 || cheap)) {
+				overloadedRun = 0;
+				if (++recoveredRun >= RECOVERED_TICKS && shedLevel > 0) {
+					shedLevel--;
+					recoveredRun = 0;
+				}
+			} else {
+				overloadedRun = 0;
+				recoveredRun = 0;
+			}
+		}
+
+		//Nanoseconds between ticks at the current shed level
+		private long getPeriod() {
+			return shedLevel <= 1 ? basePeriod : basePeriod << (shedLevel - 1);
+		}
+
+		//Stops ticking the world.  A tick that is already running still finishes.
+		public void cancel() {
+			cancelled = true;
+			due.remove(this);
+		}
+
+		//Ticks per second at the current shed level
+		public double getTickRate() {
+			return 1000000000.0 / getPeriod();
+		}
+
+		//How late ticks have been starting, on average, in milliseconds
+		public double getLagMillis() {
+			return averageLag / 1000000.0;
+		}
+
+		//The latest any tick has started, in milliseconds
+		public double getMaxLagMillis() {
+			return maxLag / 1000000.0;
+		}
+
+		//How long ticks have been taking, on average, in milliseconds
+		public double getTickMillis() {
+			return averageTick / 1000000.0;
+		}
+
+		//0 when the world has all it needs, up to MAX_SHED_LEVEL when it has been slowed down the most
+		public int getShedLevel() {
+			return shedLevel;
+		}
+
+		//Simple get method
+		public long getTicks() {
+			return ticks;
+		}
+
+		//Ticks that were skipped because the world fell more than a whole tick behind
+		public long getDroppedTicks() {
+			return droppedTicks;
+		}
+
+		//Ticks that ran with render false
+		public long getSkippedRenders() {
+			return skippedRenders;
+		}
+	}
+
+	//Constructor, with one thread per core
+	public TickScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	//Constructor
+	public TickScheduler(int threads) {
+		//asyncMode keeps ticks in the order they were handed over, which is deadline order
+		pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		dispatcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (running) {
+					try {
+						Handle h = due.take();
+						if (!h.cancelled)
+							pool.execute(h);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
+		}, "TickScheduler");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	//Starts ticking a world tickRate times per second.  Each tick may take budgetFraction of its period (0.5 is half) before it counts as over budget.
+	//The first tick starts after delaySeconds, so worlds added together can be spread out.
+	public Handle schedule(Tickable world, double tickRate, double budgetFraction, double delaySeconds) {
+		Handle h = new Handle(world, tickRate, budgetFraction);
+		h.deadline += (long) (delaySeconds * 1000000000L);
+		due.put(h);
+		return h;
+	}
+
+	//Stops ticking every world.  Ticks that are already running still finish.
+	public void shutdown() {
+		running = false;
+		dispatcher.interrupt();
+		pool.shutdown();
+	}
+
+	//Simple get method
+	public int getThreads() {
+		return pool.getParallelism();
+	}
+}
@@ -0,0 +1,7 @@
+//Something that a TickScheduler runs over and over, such as one game in Lab4Server
+public interface Tickable {
+
+	//Moves things on by deltaTime seconds, the time since this last started.
+	//When render is false the scheduler is short on time, so skip anything that can be skipped, such as drawing or sending state.
+	void tick(double deltaTime, boolean render);
+}
@@ -0,0 +1,215 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+//A background image, possibly far bigger than memory allows, drawn in square chunks.
+//Only the chunks near the camera are ever decoded, each straight from its own region of the file,
+//on a background thread so the game never waits on the disk.  Decoded chunks are kept in a
+//least-recently-used cache with a fixed memory budget, and the ones the camera left behind are
+//thrown away first.  The image repeats forever in every direction, so it can cover any size of world.
+public class TiledBackground {
+
+	private final String filename;
+	private final int chunkSize;
+	private final long memoryBudget;    //most bytes of decoded chunks to keep
+	private final int imageWidth;
+	private final int imageHeight;
+	private final int columns;          //chunks across the image
+	private final int rows;             //chunks down the image
+
+	private final LinkedHashMap<Integer, BufferedImage> cache;  //in least-recently-used order
+	private long cachedBytes;
+	private final HashSet<Integer> loading;
+	private final ExecutorService loader;
+
+	//Constructor.  Only reads the size of the image; chunks are decoded as they are needed.
+	public TiledBackground(String filename, int chunkSize, long memoryBudget) throws IOException {
+		this.filename = filename;
+		this.chunkSize = chunkSize;
+		this.memoryBudget = memoryBudget;
+		ImageInputStream in = ImageIO.createImageInputStream(new File(filename));
+		if (in == null)
+			throw new IOException("Can't read " + filename);
+		try {
+			ImageReader reader = readerFor(in);
+			imageWidth = reader.getWidth(0);
+			imageHeight = reader.getHeight(0);
+			reader.dispose();
+		} finally {
+			in.close();
+		}
+		columns = (imageWidth + chunkSize - 1) / chunkSize;
+		rows = (imageHeight + chunkSize - 1) / chunkSize;
+		cache = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true);
+		loading = new HashSet<Integer>();
+		loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "TiledBackground");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	private static ImageReader readerFor(ImageInputStream in) throws IOException {
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+		if (!readers.hasNext())
+			throw new IOException("No reader for image");
+		ImageReader reader = readers.next();
+		reader.setInput(in, true, true);
+		return reader;
+	}
+
+	//Draws the part of the background the camera can see, in world coordinates (call between camera.begin and camera.end).
+	//Chunks that aren't decoded yet are drawn black and asked for, along with a ring of chunks around the view.
+	public void draw(Graphics g, Camera camera) {
+		int left = (int) Math.floor(camera.getX());
+		int top = (int) Math.floor(camera.getY());
+		int right = left + (int) Math.ceil(camera.getWidth());
+		int bottom = top + (int) Math.ceil(camera.getHeight());
+		forEachChunk(left - chunkSize, top - chunkSize, right + chunkSize, bottom + chunkSize, g, left, top, right, bottom);
+	}
+
+	//Visits every chunk of every copy of the image that overlaps the area (x1, y1) - (x2, y2).
+	//Chunks that also overlap the view are drawn; the rest are only requested, ready for when the camera gets there.
+	private void forEachChunk(int x1, int y1, int x2, int y2, Graphics g, int left, int top, int right, int bottom) {
+		for (int copyY = Math.floorDiv(y1, imageHeight); copyY * imageHeight < y2; copyY++) {
+			for (int copyX = Math.floorDiv(x1, imageWidth); copyX * imageWidth < x2; copyX++) {
+				int originX = copyX * imageWidth;
+				int originY = copyY * imageHeight;
+				int firstColumn = Math.max(0, (x1 - originX) / chunkSize);
+				int lastColumn = Math.min(columns - 1, Math.floorDiv(x2 - 1 - originX, chunkSize));
+				int firstRow = Math.max(0, (y1 - originY) / chunkSize);
+				int lastRow = Math.min(rows - 1, Math.floorDiv(y2 - 1 - originY, chunkSize));
+				for (int row = firstRow; row <= lastRow; row++) {
+					for (int column = firstColumn; column <= lastColumn; column++) {
+						int x = originX + column * chunkSize;
+						int y = originY + row * chunkSize;
+						int w = Math.min(chunkSize, imageWidth - column * chunkSize);
+						int h = Math.min(chunkSize, imageHeight - row * chunkSize);
+						boolean visible = x < right && y < bottom && x + w > left && y + h > top;
+						BufferedImage chunk = getChunk(column, row, visible);
+						if (!visible)
+							continue;
+						if (chunk != null) {
+							g.drawImage(chunk, x, y, null);
+						} else {
+							g.setColor(Color.BLACK);
+							g.fillRect(x, y, w, h);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	//Gets a decoded chunk, asking the loader for it if it isn't ready.
+	//Only chunks that are drawn count as used, so chunks that are just nearby are the first to go.
+	private BufferedImage getChunk(int column, int row, boolean use) {
+		final int key = row * columns + column;
+		synchronized (cache) {
+			if (cache.containsKey(key))
+				return use ? cache.get(key) : null;
+			if (loading.contains(key))
+				return null;
+			loading.add(key);
+		}
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				BufferedImage chunk = decodeChunk(key % columns, key / columns);
+				synchronized (cache) {
+					loading.remove(key);
+					if (chunk == null)
+						return;
+					cache.put(key, chunk);
+					cachedBytes += bytesOf(chunk);
+					evict();
+				}
+			}
+		});
+		return null;
+	}
+
+	//Reads just one chunk's region out of the file
+	private BufferedImage decodeChunk(int column, int row) {
+		Rectangle region = new Rectangle(column * chunkSize, row * chunkSize,
+				Math.min(chunkSize, imageWidth - column * chunkSize), Math.min(chunkSize, imageHeight - row * chunkSize));
+		try {
+			ImageInputStream in = ImageIO.createImageInputStream(new File(filename));
+			try {
+				ImageReader reader = readerFor(in);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(region);
+				BufferedImage decoded = reader.read(0, param);
+				reader.dispose();
+				//Convert once here so drawing it every frame is a plain copy
+				BufferedImage chunk = new BufferedImage(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_RGB);
+				Graphics g = chunk.getGraphics();
+				g.drawImage(decoded, 0, 0, null);
+				g.dispose();
+				return chunk;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to load background chunk: " + filename + " " + region);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static long bytesOf(BufferedImage image) {
+		return (long) image.getWidth() * image.getHeight() * 4;
+	}
+
+	//Throws away the least recently drawn chunks until the cache fits in the budget
+	private void evict() {
+		Iterator<Map.Entry<Integer, BufferedImage>> it = cache.entrySet().iterator();
+		while (cachedBytes > memoryBudget && it.hasNext()) {
+			BufferedImage eldest = it.next().getValue();
+			it.remove();
+			cachedBytes -= bytesOf(eldest);
+		}
+	}
+
+	//How many chunks are decoded and in memory
+	public int getCachedChunks() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	//How many bytes the decoded chunks take up
+	public long getCachedBytes() {
+		synchronized (cache) {
+			return cachedBytes;
+		}
+	}
+
+	//Simple get method
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	//Simple get method
+	public int getImageHeight() {
+		return imageHeight;
+	}
+}
@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//The Lab4 game without a window: asteroids spawning and flying at the nearest wormhole, dying when they reach it,
+//and wormholes that are either drifting or moved by players.  Nothing here draws or reads the mouse,
+//so a server can run many Worlds at once and tell each player's wormhole where to go.
+//Every entity gets an id when it is added, and after every step the entities are sorted into a SpatialGrid,
+//so each player can be sent just the part of a big world around their own wormhole.
+public class World {
+
+	public static final double GRID_CELL_SIZE = 256;
+
+	private final double width;
+	private final double height;
+	private final ArrayList<Entity> entities = new ArrayList<Entity>();
+	private final ArrayList<Wormhole> wormholes = new ArrayList<Wormhole>();
+	private final Map<String, Wormhole> players = new LinkedHashMap<String, Wormhole>();
+	private final TargetIndex targets = new TargetIndex();
+	private final SpatialGrid grid;
+	private int nextId;
+	private double asteroidSpawnDelay;
+	private long tick;
+	private int kills;  //asteroids that have reached a wormhole
+
+	//Constructor.  The world goes from (0, 0) to (width, height), with some wormholes drifting around it.
+	public World(double width, double height, int driftingWormholes) {
+		this.width = width;
+		this.height = height;
+		grid = new SpatialGrid(width, height, GRID_CELL_SIZE);
+		for (int i = 0; i < driftingWormholes; i++) {
+			double angle = SimRandom.nextDouble(0, Math.PI * 2);
+			Wormhole w = new Wormhole(SimRandom.nextDouble() * width, SimRandom.nextDouble() * height, Lab4.WORMHOLE_SIZE,
+					Lab4.WORMHOLE_SIZE, Math.cos(angle) * Lab4.WORMHOLE_DRIFT_SPEED, Math.sin(angle) * Lab4.WORMHOLE_DRIFT_SPEED);
+			w.setBounds(width, height);
+			addWormhole(w);
+		}
+	}
+
+	private void addWormhole(Wormhole w) {
+		add(w);
+		wormholes.add(w);
+	}
+
+	private void add(Entity e) {
+		e.setId(nextId++);
+		entities.add(e);
+	}
+
+	//Adds asteroids all over the world at once, rather than waiting for them to fall in from the top
+	public void scatterAsteroids(int count) {
+		for (int i = 0; i < count; i++)
+			add(new Asteroid(SimRandom.nextDouble() * width, SimRandom.nextDouble() * height, Lab4.ASTEROID_SIZE,
+					Lab4.ASTEROID_SIZE, targets));
+		grid.build(entities);
+	}
+
+	//Adds a wormhole for a player, in the middle of the world until they say where it goes
+	public void addPlayer(String id) {
+		if (players.containsKey(id))
+			return;
+		Wormhole w = new Wormhole(width / 2, height / 2, Lab4.WORMHOLE_SIZE, Lab4.WORMHOLE_SIZE);
+		w.setParked(true);  //moved only by setPlayerTarget
+		players.put(id, w);
+		addWormhole(w);
+	}
+
+	//Removes a player's wormhole.  Asteroids headed for it go to the next nearest one.
+	public void removePlayer(String id) {
+		Wormhole w = players.remove(id);
+		if (w == null)
+			return;
+		entities.remove(w);
+		wormholes.remove(w);
+	}
+
+	//Moves a player's wormhole, like the mouse moves it in Lab4
+	public void setPlayerTarget(String id, double x, double y) {
+		Wormhole w = players.get(id);
+		if (w == null)
+			return;
+		w.setXCenter(Math.max(0, Math.min(width, x)));
+		w.setYCenter(Math.max(0, Math.min(height, y)));
+	}
+
+	//Advances the world deltaTime seconds: spawns asteroids, moves everything, and removes the asteroids that hit
+	public void step(double deltaTime) {
+		for (Entity e : entities)
+			e.beginStep();
+		asteroidSpawnDelay -= deltaTime;
+		if (asteroidSpawnDelay <= 0) {
+			asteroidSpawnDelay = SimRandom.nextDouble(1, 3);
+			add(new Asteroid(SimRandom.nextDouble() * width, Lab4.ASTEROID_Y_POSITION, Lab4.ASTEROID_SIZE,
+					Lab4.ASTEROID_SIZE, targets));
+		}
+		targets.build(wormholes);
+		for (int i = 0; i < entities.size(); i++)
+			entities.get(i).update(null, deltaTime);
+		//Slide the survivors down over the dead in one pass, since removing one at a time from a big list is slow
+		int kept = 0;
+		for (int i = 0; i < entities.size(); i++) {
+			Entity e = entities.get(i);
+			if (e.getKill())
+				kills++;
+			else
+				entities.set(kept++, e);
+		}
+		entities.subList(kept, entities.size()).clear();
+		grid.build(entities);
+		tick++;
+	}
+
+	//Copies where everything is into a WorldState that can be sent to players
+	public WorldState snapshot() {
+		return new WorldState(tick, kills, entities);
+	}
+
+	//Gets a player's wormhole, or null if there is no such player
+	public Wormhole getPlayer(String id) {
+		return players.get(id);
+	}
+
+	//The grid the entities were sorted into at the end of the last step.  Its indexes are into getEntities().
+	public SpatialGrid getGrid() {
+		return grid;
+	}
+
+	//Simple get method
+	public double getWidth() {
+		return width;
+	}
+
+	//Simple get method
+	public double getHeight() {
+		return height;
+	}
+
+	//Simple get method
+	public ArrayList<Entity> getEntities() {
+		return entities;
+	}
+
+	//How many players have a wormhole
+	public int getPlayerCount() {
+		return players.size();
+	}
+
+	//Simple get method
+	public long getTick() {
+		return tick;
+	}
+
+	//Simple get method
+	public int getKills() {
+		return kills;
+	}
+}
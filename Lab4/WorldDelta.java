@@ -0,0 +1,114 @@
+import java.io.Serializable;
+
+//What changed in one player's view of a World since the last tick: the entities that came into view,
+//where the ones still in view moved to, and the ids of the ones that left (or died).
+//Apply them in order, starting from an empty view, to know everything in view.
+public class WorldDelta implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long tick;
+	private final int kills;
+	private final float viewX;  //the world position of the top-left corner of the player's view
+	private final float viewY;
+	private final int[] enteredIds;
+	private final byte[] enteredKinds;  //WorldState.ASTEROID or WorldState.WORMHOLE
+	private final float[] enteredXs;
+	private final float[] enteredYs;
+	private final int[] movedIds;
+	private final float[] movedXs;
+	private final float[] movedYs;
+	private final int[] leftIds;
+
+	//Constructor.  Keeps the arrays as they are, so don't change them afterwards.
+	public WorldDelta(long tick, int kills, float viewX, float viewY, int[] enteredIds, byte[] enteredKinds, float[] enteredXs,
+			float[] enteredYs, int[] movedIds, float[] movedXs, float[] movedYs, int[] leftIds) {
+		this.tick = tick;
+		this.kills = kills;
+		this.viewX = viewX;
+		this.viewY = viewY;
+		this.enteredIds = enteredIds;
+		this.enteredKinds = enteredKinds;
+		this.enteredXs = enteredXs;
+		this.enteredYs = enteredYs;
+		this.movedIds = movedIds;
+		this.movedXs = movedXs;
+		this.movedYs = movedYs;
+		this.leftIds = leftIds;
+	}
+
+	//How many entities came into view
+	public int getEnteredCount() {
+		return enteredIds.length;
+	}
+
+	//Simple get method
+	public int getEnteredId(int i) {
+		return enteredIds[i];
+	}
+
+	//WorldState.ASTEROID or WorldState.WORMHOLE
+	public byte getEnteredKind(int i) {
+		return enteredKinds[i];
+	}
+
+	//Simple get method
+	public float getEnteredX(int i) {
+		return enteredXs[i];
+	}
+
+	//Simple get method
+	public float getEnteredY(int i) {
+		return enteredYs[i];
+	}
+
+	//How many entities stayed in view
+	public int getMovedCount() {
+		return movedIds.length;
+	}
+
+	//Simple get method
+	public int getMovedId(int i) {
+		return movedIds[i];
+	}
+
+	//Simple get method
+	public float getMovedX(int i) {
+		return movedXs[i];
+	}
+
+	//Simple get method
+	public float getMovedY(int i) {
+		return movedYs[i];
+	}
+
+	//How many entities left the view
+	public int getLeftCount() {
+		return leftIds.length;
+	}
+
+	//Simple get method
+	public int getLeftId(int i) {
+		return leftIds[i];
+	}
+
+	//Simple get method
+	public float getViewX() {
+		return viewX;
+	}
+
+	//Simple get method
+	public float getViewY() {
+		return viewY;
+	}
+
+	//Simple get method
+	public long getTick() {
+		return tick;
+	}
+
+	//Simple get method
+	public int getKills() {
+		return kills;
+	}
+}
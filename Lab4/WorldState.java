@@ -0,0 +1,63 @@
+import java.io.Serializable;
+import java.util.List;
+
+//Where everything in a World was after one tick, packed into arrays so it is small to send over a connection
+public class WorldState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final byte ASTEROID = 0;
+	public static final byte WORMHOLE = 1;
+
+	private final long tick;
+	private final int kills;
+	private final byte[] kinds;  //ASTEROID or WORMHOLE
+	private final float[] xs;
+	private final float[] ys;
+
+	//Constructor.  Copies the centers of the entities, so they can keep changing afterwards.
+	public WorldState(long tick, int kills, List<Entity> entities) {
+		this.tick = tick;
+		this.kills = kills;
+		int count = entities.size();
+		kinds = new byte[count];
+		xs = new float[count];
+		ys = new float[count];
+		for (int i = 0; i < count; i++) {
+			Entity e = entities.get(i);
+			kinds[i] = e instanceof Wormhole ? WORMHOLE : ASTEROID;
+			xs[i] = (float) e.getXCenter();
+			ys[i] = (float) e.getYCenter();
+		}
+	}
+
+	//How many entities there were
+	public int size() {
+		return kinds.length;
+	}
+
+	//ASTEROID or WORMHOLE
+	public byte getKind(int i) {
+		return kinds[i];
+	}
+
+	//Simple get method
+	public float getXCenter(int i) {
+		return xs[i];
+	}
+
+	//Simple get method
+	public float getYCenter(int i) {
+		return ys[i];
+	}
+
+	//Simple get method
+	public long getTick() {
+		return tick;
+	}
+
+	//Simple get method
+	public int getKills() {
+		return kills;
+	}
+}
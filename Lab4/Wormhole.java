@@ -2,14 +2,32 @@ import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.SplittableRandom;
 import javax.imageio.ImageIO;
 
 public class Wormhole extends Entity {
 	
 	//The image of a wormhole, loaded as a statically
 	private static BufferedImage wormholeImage; 
+	//The spinning wormhole, from wormhole1.png to wormhole6.png, shared by every wormhole, or null without them
+	private static Animation animation;
 	
-	//Loads the wormhole image.  Will only be called once by Lab4
+	//Random numbers only for where each wormhole's animation starts, so making wormholes never changes the simulation's random numbers
+	public static final long ANIMATION_STREAM = 0x574F524D484F4CL;
+	private static final double MAX_ANIMATION_OFFSET = 60;  //seconds; far longer than one loop, so any frame can come first
+	private static SplittableRandom animationRandom;
+	
+	private double animationStart = randomAnimationStart();  //when this wormhole's animation began, at random so they don't all spin in step
+	
+	private Camera camera;  //used to turn the mouse position into a world position, or null if the screen is the world
+	private boolean drifting;  //when true, the wormhole ignores the mouse and drifts around the world
+	private boolean parked;  //when true, the wormhole ignores the mouse and stays wherever it is put, such as by a server
+	private double xVel;
+	private double yVel;
+	private double boundsWidth = Lab4.WORLD_WIDTH;   //drifting wormholes bounce off the edges of this area
+	private double boundsHeight = Lab4.WORLD_HEIGHT;
+	
+	//Loads the wormhole image and animation.  Will only be called once by Lab4
 	public static void loadImages() {
 		wormholeImage = null;
 		try {
@@ -17,6 +35,14 @@ public class Wormhole extends Entity {
 		} catch (IOException e) {
 			
 		}
+		animation = Animation.load("wormhole.png", Lab4.WORMHOLE_ANIMATION_FPS);
+	}
+	
+	//Gets a random clock time up to a minute ago, for a wormhole's animation to have started at
+	public static synchronized double randomAnimationStart() {
+		if (animationRandom == null)
+			animationRandom = SimRandom.forStream(ANIMATION_STREAM);
+		return Animation.getTime() - animationRandom.nextDouble() * MAX_ANIMATION_OFFSET;
 	}
 	
 	//Constructor
@@ -25,17 +51,112 @@ public class Wormhole extends Entity {
 		
 	}
 	
+	//Constructor for a wormhole in a world that scrolls with the camera
+	public Wormhole(double xCenter, double yCenter, double width, double height, Camera camera) {
+		super(xCenter, yCenter, width, height);
+		this.camera = camera;
+	}
+	
+	//Constructor for a wormhole that drifts at a constant velocity, bouncing off the edges of the world
+	public Wormhole(double xCenter, double yCenter, double width, double height, double xVel, double yVel) {
+		super(xCenter, yCenter, width, height);
+		this.xVel = xVel;
+		this.yVel = yVel;
+		drifting = true;
+	}
+	
 	//Updates the position of the wormhole
 	public void update(EasyWindow ew) {
-		setXCenter(ew.getMouseX());
-		setYCenter(ew.getMouseY());
+		if (parked) {
+			return;
+		} else if (drifting) {
+			update(ew, ew.getDeltaTime());
+		} else if (camera == null) {
+			setXCenter(ew.getMouseX());
+			setYCenter(ew.getMouseY());
+		} else {
+			setXCenter(camera.toWorldX(ew.getMouseX()));
+			setYCenter(camera.toWorldY(ew.getMouseY()));
+		}
 		
 	}
 	
-	//Draws the wormhole using the g.drawImage method
+	//Drifting wormholes move as if deltaTime seconds had passed.  Wormholes that follow the mouse just go to it,
+	//and parked wormholes don't move at all, so ew may be null for them.
+	@Override
+	public void update(EasyWindow ew, double deltaTime) {
+		if (parked)
+			return;
+		if (!drifting) {
+			update(ew);
+			return;
+		}
+		double x = getXCenter() + xVel * deltaTime;
+		double y = getYCenter() + yVel * deltaTime;
+		if (x < 0 || x > boundsWidth)
+			xVel = -xVel;
+		if (y < 0 || y > boundsHeight)
+			yVel = -yVel;
+		setXCenter(Math.max(0, Math.min(boundsWidth, x)));
+		setYCenter(Math.max(0, Math.min(boundsHeight, y)));
+	}
+	
+	//Sets the area a drifting wormhole bounces around in, from (0, 0) to (width, height).  Lab4's world by default.
+	public void setBounds(double width, double height) {
+		boundsWidth = width;
+		boundsHeight = height;
+	}
+	
+	//Gets the wormhole image, once loadImages has been called
+	public static BufferedImage getImage() {
+		return wormholeImage;
+	}
+	
+	//Simple get method
+	public boolean getDrifting() {
+		return drifting;
+	}
+	
+	//Simple set method.  A parked wormhole is only moved by setXCenter and setYCenter, never by update.
+	public void setParked(boolean parked) {
+		this.parked = parked;
+	}
+	
+	//Simple get method
+	public boolean getParked() {
+		return parked;
+	}
+	
+	//Simple get method
+	public double getXVel() {
+		return xVel;
+	}
+	
+	//Simple get method
+	public double getYVel() {
+		return yVel;
+	}
+	
+	//Simple get method
+	public double getBoundsWidth() {
+		return boundsWidth;
+	}
+	
+	//Simple get method
+	public double getBoundsHeight() {
+		return boundsHeight;
+	}
+	
+	//Simple set method.  The animation shows the frame it would have reached if it started at this clock time.
+	public void setAnimationStart(double animationStart) {
+		this.animationStart = animationStart;
+	}
+	
+	//Draws the wormhole's current animation frame, or the still image without one, using the g.drawImage method
 	@Override
 	public void draw(Graphics g) {
-		g.drawImage(wormholeImage, (int) getHitbox().x, (int) getHitbox().y, (int) getHitbox().width,
+		BufferedImage image = animation == null ? wormholeImage : animation.getFrame(animationStart);
+		g.drawImage(image, (int) getHitbox().x, (int) getHitbox().y, (int) getHitbox().width,
 				(int) getHitbox().height, null);
 		
 	}